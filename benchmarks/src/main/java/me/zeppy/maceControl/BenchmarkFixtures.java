@@ -0,0 +1,119 @@
+package me.zeppy.maceControl;
+
+import io.papermc.paper.persistence.PersistentDataContainerView;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataContainer;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Fake Paper objects for the benchmarks. Mocks are stub-only, so they do not
+ * record invocations and memory stays flat over long runs. Absolute numbers
+ * include mock dispatch; compare runs against each other, not against a server.
+ */
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    static <T> T stub(Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+
+    /**
+     * A mocked plugin wired into MaceControl's statics, with default config
+     */
+    static MaceControl installPlugin() throws IOException {
+        MaceControl.MACE_ID_KEY = new NamespacedKey("macecontrol", "mace_id");
+
+        File dataFolder = Files.createTempDirectory("macecontrol-bench").toFile();
+        YamlConfiguration config = new YamlConfiguration();
+        MaceControl plugin = stub(MaceControl.class);
+        when(plugin.getConfig()).thenReturn(config);
+        when(plugin.getDataFolder()).thenReturn(dataFolder);
+        // Reconciliation and save messages would otherwise flood the benchmark output
+        Logger logger = Logger.getLogger("MaceControl-Bench");
+        logger.setLevel(Level.WARNING);
+        when(plugin.getLogger()).thenReturn(logger);
+
+        setStatic("policy", RestrictionPolicy.compile(config, List.of()));
+        setStatic("permissions", new PermissionCache(plugin));
+        setStatic("metrics", new MaceMetrics(plugin));
+        setStatic("dropIndex", new DroppedMaceIndex());
+        setStatic("tracker", new MaceTracker(plugin));
+        setStatic("ledger", new StandaloneLedger());
+        setStatic("manager", new MaceManager(plugin));
+        return plugin;
+    }
+
+    static void setStatic(String name, Object value) {
+        try {
+            Field field = MaceControl.class.getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(null, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot set MaceControl." + name, e);
+        }
+    }
+
+    static Player player(boolean bypass) {
+        Player player = stub(Player.class);
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(player.getName()).thenReturn("bench");
+        when(player.isOnline()).thenReturn(true);
+        when(player.hasPermission(anyString())).thenReturn(bypass);
+        return player;
+    }
+
+    /**
+     * A tracked mace as the inspector sees it: binary ID in the read-only view
+     */
+    static ItemStack mace(UUID maceId) {
+        PersistentDataContainerView view = stub(PersistentDataContainerView.class);
+        when(view.get(MaceControl.MACE_ID_KEY, MaceIdDataType.INSTANCE)).thenReturn(maceId);
+
+        ItemStack item = stub(ItemStack.class);
+        when(item.getType()).thenReturn(Material.MACE);
+        when(item.getPersistentDataContainer()).thenReturn(view);
+        return item;
+    }
+
+    /**
+     * A freshly crafted, untagged mace whose meta accepts an ID
+     */
+    static ItemStack untaggedMace() {
+        PersistentDataContainer container = stub(PersistentDataContainer.class);
+        when(container.has(any(NamespacedKey.class))).thenReturn(false);
+        ItemMeta meta = stub(ItemMeta.class);
+        when(meta.getPersistentDataContainer()).thenReturn(container);
+
+        ItemStack item = stub(ItemStack.class);
+        when(item.getType()).thenReturn(Material.MACE);
+        when(item.getItemMeta()).thenReturn(meta);
+        return item;
+    }
+
+    static ItemStack item(Material material) {
+        ItemStack item = stub(ItemStack.class);
+        when(item.getType()).thenReturn(material);
+        return item;
+    }
+}
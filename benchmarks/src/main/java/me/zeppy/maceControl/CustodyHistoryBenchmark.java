@@ -0,0 +1,84 @@
+package me.zeppy.maceControl;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@code /mace history} lookups against a history of many segments: the
+ * newest events of one mace and of one player. Maces and players are picked
+ * at random from a fixed population, so each ID shows up in only a small part
+ * of the blocks. Events are written as fast as possible, so every block is
+ * full; a live server flushes smaller blocks, which are cheaper to inflate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CustodyHistoryBenchmark {
+    private static final int MACES = 5_000;
+    private static final int PLAYERS = 2_000;
+
+    @Param({"100000", "1000000"})
+    public int events;
+
+    private final UUID[] maces = new UUID[MACES];
+    private final UUID[] players = new UUID[PLAYERS];
+    private CustodyHistory history;
+    private Random random;
+
+    @Setup
+    public void setup() throws IOException {
+        Random seed = new Random(42);
+        for (int i = 0; i < MACES; i++) {
+            maces[i] = new UUID(seed.nextLong(), seed.nextLong());
+        }
+        for (int i = 0; i < PLAYERS; i++) {
+            players[i] = new UUID(seed.nextLong(), seed.nextLong());
+        }
+
+        Logger logger = Logger.getLogger("CustodyHistoryBenchmark");
+        logger.setLevel(Level.WARNING);
+        Path directory = Files.createTempDirectory("macecontrol-history-bench");
+        CustodyHistory writer = new CustodyHistory(directory, 1024 * 1024, logger);
+        writer.start();
+        CustodyHistory.Type[] types = CustodyHistory.Type.values();
+        for (int i = 0; i < events; i++) {
+            writer.record(new CustodyHistory.Event(maces[seed.nextInt(MACES)], players[seed.nextInt(PLAYERS)],
+                    types[i % types.length], i, "world", i, 64, -i, null));
+        }
+        // Queued behind every record, so this returns once they are all appended
+        writer.forMace(maces[0], 1).join();
+        writer.close();
+
+        // Lookups run against indexes loaded from disk, as after a restart
+        history = new CustodyHistory(directory, 1024 * 1024, logger);
+        history.start();
+        random = new Random(7);
+    }
+
+    @TearDown
+    public void tearDown() {
+        history.close();
+    }
+
+    @Benchmark
+    public List<CustodyHistory.Event> maceHistory() {
+        return history.forMace(maces[random.nextInt(MACES)], 15).join();
+    }
+
+    @Benchmark
+    public List<CustodyHistory.Event> playerHistory() {
+        return history.forPlayer(players[random.nextInt(PLAYERS)], 15).join();
+    }
+}
@@ -0,0 +1,141 @@
+package me.zeppy.maceControl;
+
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.*;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryView;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.when;
+
+/**
+ * Click, drag and hopper-move handlers over a pre-built ring of events.
+ * {@code mix} sets how many of them involve restricted items:
+ * <ul>
+ *     <li>vanilla: no maces, heavy cores or bundles</li>
+ *     <li>mixed: 90% ordinary, 5% bundles, 5% maces</li>
+ *     <li>mace-heavy: 50% maces, 10% heavy cores, 40% ordinary</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InventoryEventBenchmark {
+    private static final int EVENTS = 1024;
+
+    @Param({"vanilla", "mixed", "mace-heavy"})
+    public String mix;
+
+    private MaceEventHandler handler;
+    private InventoryClickEvent[] clicks;
+    private InventoryDragEvent[] drags;
+    private InventoryMoveItemEvent[] moves;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        MaceControl plugin = BenchmarkFixtures.installPlugin();
+        handler = new MaceEventHandler(plugin);
+
+        Random random = new Random(42);
+        Player player = BenchmarkFixtures.player(false);
+        Inventory playerInventory = inventory(InventoryType.PLAYER);
+        Inventory chest = inventory(InventoryType.CHEST);
+        InventoryView view = BenchmarkFixtures.stub(InventoryView.class);
+        when(view.getTopInventory()).thenReturn(chest);
+        when(view.getBottomInventory()).thenReturn(playerInventory);
+
+        clicks = new InventoryClickEvent[EVENTS];
+        drags = new InventoryDragEvent[EVENTS];
+        moves = new InventoryMoveItemEvent[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            ItemStack cursor = pick(random);
+            ItemStack current = pick(random);
+            Inventory clicked = random.nextBoolean() ? chest : playerInventory;
+
+            InventoryClickEvent click = BenchmarkFixtures.stub(InventoryClickEvent.class);
+            when(click.getClick()).thenReturn(random.nextInt(4) == 0 ? ClickType.SHIFT_LEFT : ClickType.LEFT);
+            when(click.getCursor()).thenReturn(cursor);
+            when(click.getCurrentItem()).thenReturn(current);
+            when(click.getClickedInventory()).thenReturn(clicked);
+            when(click.getWhoClicked()).thenReturn(player);
+            when(click.getView()).thenReturn(view);
+            when(click.getSlot()).thenReturn(random.nextInt(27));
+            clicks[i] = click;
+
+            InventoryDragEvent drag = BenchmarkFixtures.stub(InventoryDragEvent.class);
+            when(drag.getOldCursor()).thenReturn(cursor);
+            when(drag.getInventory()).thenReturn(chest);
+            when(drag.getWhoClicked()).thenReturn(player);
+            when(drag.getView()).thenReturn(view);
+            when(drag.getRawSlots()).thenReturn(Set.of(random.nextInt(63)));
+            drags[i] = drag;
+
+            InventoryMoveItemEvent move = BenchmarkFixtures.stub(InventoryMoveItemEvent.class);
+            when(move.getItem()).thenReturn(current);
+            moves[i] = move;
+        }
+    }
+
+    private static Inventory inventory(InventoryType type) {
+        Inventory inventory = BenchmarkFixtures.stub(Inventory.class);
+        when(inventory.getType()).thenReturn(type);
+        when(inventory.getSize()).thenReturn(type == InventoryType.PLAYER ? 41 : 27);
+        when(inventory.getContents()).thenReturn(new ItemStack[27]);
+        return inventory;
+    }
+
+    private ItemStack pick(Random random) {
+        int roll = random.nextInt(100);
+        return switch (mix) {
+            case "mixed" -> roll < 5 ? BenchmarkFixtures.mace(UUID.randomUUID())
+                    : roll < 10 ? BenchmarkFixtures.item(Material.BUNDLE)
+                    : ordinary(random);
+            case "mace-heavy" -> roll < 50 ? BenchmarkFixtures.mace(UUID.randomUUID())
+                    : roll < 60 ? BenchmarkFixtures.item(Material.HEAVY_CORE)
+                    : ordinary(random);
+            default -> ordinary(random);
+        };
+    }
+
+    private static ItemStack ordinary(Random random) {
+        return switch (random.nextInt(4)) {
+            case 0 -> null;
+            case 1 -> BenchmarkFixtures.item(Material.AIR);
+            case 2 -> BenchmarkFixtures.item(Material.COBBLESTONE);
+            default -> BenchmarkFixtures.item(Material.DIAMOND_SWORD);
+        };
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = (index + 1) & (EVENTS - 1);
+        return index;
+    }
+
+    @Benchmark
+    public void click() {
+        handler.onInventoryClick(clicks[nextIndex()]);
+    }
+
+    @Benchmark
+    public void drag() {
+        handler.onInventoryDrag(drags[nextIndex()]);
+    }
+
+    @Benchmark
+    public void hopperMove() {
+        handler.onInventoryMoveItem(moves[nextIndex()]);
+    }
+}
@@ -0,0 +1,57 @@
+package me.zeppy.maceControl;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-item checks every inventory and entity handler runs
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ItemInspectionBenchmark {
+    private MaceManager manager;
+    private ItemStack mace;
+    private ItemStack stone;
+    private ItemStack untagged;
+    private UUID maceId;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkFixtures.installPlugin();
+        manager = MaceControl.getManager();
+        maceId = UUID.randomUUID();
+        mace = BenchmarkFixtures.mace(maceId);
+        stone = BenchmarkFixtures.item(Material.STONE);
+        untagged = BenchmarkFixtures.untaggedMace();
+    }
+
+    @Benchmark
+    public boolean isUniqueMaceOnMace() {
+        return manager.isUniqueMace(mace);
+    }
+
+    @Benchmark
+    public boolean isUniqueMaceOnOtherItem() {
+        return manager.isUniqueMace(stone);
+    }
+
+    @Benchmark
+    public UUID getMaceId() {
+        return MaceManager.getMaceID(mace);
+    }
+
+    @Benchmark
+    public void tagMace(Blackhole blackhole) {
+        blackhole.consume(manager.tagMace(untagged, maceId));
+    }
+}
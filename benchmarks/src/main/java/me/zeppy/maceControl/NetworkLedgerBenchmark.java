@@ -0,0 +1,75 @@
+package me.zeppy.maceControl;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Several servers sharing one network ledger file, one per benchmark thread.
+ * Each operation crafts if the server has a spare slot (otherwise destroys one
+ * of its maces) and then syncs, so the file sees constant contention. Tear
+ * down fails if the network ever held more maces than the limit.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class NetworkLedgerBenchmark {
+    private static final int LIMIT = 10;
+
+    @State(Scope.Benchmark)
+    public static class Network {
+        Path file;
+        final AtomicInteger maces = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+        final AtomicInteger servers = new AtomicInteger();
+
+        @Setup
+        public void setup() throws IOException {
+            file = Files.createTempDirectory("macecontrol-network").resolve("network.dat");
+        }
+
+        @TearDown
+        public void check() {
+            if (peak.get() > LIMIT) {
+                throw new IllegalStateException("Network held " + peak.get() + " maces, limit " + LIMIT);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Server {
+        final AtomicInteger maces = new AtomicInteger();
+        FileGlobalLedger ledger;
+
+        @Setup
+        public void setup(Network network) {
+            ledger = new FileGlobalLedger(network.file, "server-" + network.servers.incrementAndGet(), 2,
+                    30_000, 60_000, maces::get, () -> LIMIT, Logger.getLogger("MaceControl-Bench"));
+        }
+
+        @TearDown
+        public void tearDown() {
+            ledger.close();
+        }
+    }
+
+    @Benchmark
+    public void craftOrDestroyThenSync(Network network, Server server) throws IOException {
+        if (server.maces.get() < server.ledger.capacity(LIMIT)) {
+            server.maces.incrementAndGet();
+            network.peak.accumulateAndGet(network.maces.incrementAndGet(), Math::max);
+        } else if (server.maces.get() > 0) {
+            server.maces.decrementAndGet();
+            network.maces.decrementAndGet();
+        }
+        server.ledger.update(2);
+    }
+}
@@ -0,0 +1,93 @@
+package me.zeppy.maceControl;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving and loading the ledger at different sizes: the binary data file the
+ * plugin writes today, and the YAML ledger format older versions wrote and
+ * that is still imported on upgrade. The binary write includes its fsync.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersistenceBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int trackedMaces;
+
+    private TrackerSnapshot snapshot;
+    private Path dataFile;
+    private String yaml;
+
+    @Setup
+    public void setup() throws IOException {
+        Map<UUID, MaceTracker.MaceRecord> records = new HashMap<>();
+        long now = System.currentTimeMillis();
+        MaceTracker.MaceLocation[] locations = MaceTracker.MaceLocation.values();
+        for (int i = 0; i < trackedMaces; i++) {
+            UUID maceId = UUID.randomUUID();
+            records.put(maceId, new MaceTracker.MaceRecord(maceId, UUID.randomUUID(),
+                    locations[i % locations.length], null, now - i));
+        }
+        snapshot = new TrackerSnapshot(1, records, Map.of());
+
+        dataFile = Files.createTempDirectory("macecontrol-bench").resolve("maceData.dat");
+        MaceDataFile.write(dataFile, snapshot, 0);
+        yaml = toYaml(snapshot).saveToString();
+    }
+
+    @Benchmark
+    public void writeDataFile() throws IOException {
+        MaceDataFile.write(dataFile, snapshot, 0);
+    }
+
+    @Benchmark
+    public MaceDataFile.Contents readDataFile() throws IOException {
+        return MaceDataFile.read(dataFile);
+    }
+
+    @Benchmark
+    public String saveYaml() {
+        return toYaml(snapshot).saveToString();
+    }
+
+    @Benchmark
+    public List<MaceTracker.MaceRecord> loadYaml() throws InvalidConfigurationException {
+        YamlConfiguration config = new YamlConfiguration();
+        config.loadFromString(yaml);
+
+        // Same parsing as MaceManager's legacy import
+        List<MaceTracker.MaceRecord> records = new ArrayList<>();
+        ConfigurationSection maces = config.getConfigurationSection("maces");
+        for (String maceId : maces.getKeys(false)) {
+            ConfigurationSection entry = maces.getConfigurationSection(maceId);
+            String holder = entry.getString("holder");
+            records.add(new MaceTracker.MaceRecord(UUID.fromString(maceId), holder != null ? UUID.fromString(holder) : null,
+                    MaceTracker.MaceLocation.valueOf(entry.getString("location")), null, entry.getLong("lastSeen")));
+        }
+        return records;
+    }
+
+    private static YamlConfiguration toYaml(TrackerSnapshot snapshot) {
+        YamlConfiguration config = new YamlConfiguration();
+        for (MaceTracker.MaceRecord record : snapshot.records.values()) {
+            String path = "maces." + record.maceId;
+            config.set(path + ".holder", record.holder != null ? record.holder.toString() : null);
+            config.set(path + ".location", record.location.name());
+            config.set(path + ".lastSeen", record.lastSeen);
+        }
+        return config;
+    }
+}
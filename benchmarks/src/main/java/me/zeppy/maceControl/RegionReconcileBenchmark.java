@@ -0,0 +1,93 @@
+package me.zeppy.maceControl;
+
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.when;
+
+/**
+ * Full reconciliation with inventory scans spread over simulated regions, so
+ * the tracker merges results from several threads at once. Setup checks that
+ * no scan is lost in the merge before anything is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RegionReconcileBenchmark {
+    private static final int MACES_PER_PLAYER = 2;
+
+    @Param({"1", "4", "8"})
+    public int regions;
+
+    @Param({"200"})
+    public int players;
+
+    private MaceTracker tracker;
+    private SimulatedRegionScheduler scheduler;
+
+    @Setup
+    public void setup() throws IOException {
+        MaceControl plugin = BenchmarkFixtures.installPlugin();
+        scheduler = new SimulatedRegionScheduler(regions);
+        BenchmarkFixtures.setStatic("scheduler", scheduler);
+        BenchmarkFixtures.setStatic("scanner", new DroppedMaceScanner(plugin));
+        BenchmarkFixtures.setStatic("offlineAuditor", new OfflineInventoryAuditor(plugin));
+        tracker = MaceControl.getTracker();
+
+        List<Player> online = new ArrayList<>(players);
+        for (int i = 0; i < players; i++) {
+            ItemStack[] contents = new ItemStack[36];
+            for (int slot = 0; slot < contents.length; slot++) {
+                contents[slot] = slot < MACES_PER_PLAYER
+                        ? BenchmarkFixtures.mace(UUID.randomUUID())
+                        : BenchmarkFixtures.item(Material.COBBLESTONE);
+            }
+            PlayerInventory inventory = BenchmarkFixtures.stub(PlayerInventory.class);
+            when(inventory.getContents()).thenReturn(contents);
+            when(inventory.getItemInOffHand()).thenReturn(BenchmarkFixtures.item(Material.AIR));
+
+            Player player = BenchmarkFixtures.player(false);
+            when(player.getInventory()).thenReturn(inventory);
+            online.add(player);
+        }
+
+        Server server = BenchmarkFixtures.stub(Server.class);
+        doReturn(online).when(server).getOnlinePlayers();
+        when(server.getWorlds()).thenReturn(List.of());
+        when(plugin.getServer()).thenReturn(server);
+        when(plugin.isEnabled()).thenReturn(true);
+
+        reconcile();
+        int expected = players * MACES_PER_PLAYER;
+        if (tracker.getMaceCount() != expected) {
+            throw new IllegalStateException("Merged " + tracker.getMaceCount() + " maces, expected " + expected);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        scheduler.shutdown();
+        MaceControl.getOfflineAuditor().shutdown();
+    }
+
+    @Benchmark
+    public int reconcile() {
+        tracker.refreshMaceTracking();
+        scheduler.awaitIdle();
+        return tracker.getMaceCount();
+    }
+}
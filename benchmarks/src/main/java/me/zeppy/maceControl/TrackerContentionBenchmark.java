@@ -0,0 +1,69 @@
+package me.zeppy.maceControl;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracker mutation throughput with several threads submitting at once, as
+ * happens when event handlers, the save thread and the sweep overlap.
+ * {@code ledgerSize} matters because each batch publishes a new snapshot.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class TrackerContentionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Ledger {
+        @Param({"10", "1000"})
+        public int ledgerSize;
+
+        MaceTracker tracker;
+
+        @Setup
+        public void setup() throws IOException {
+            BenchmarkFixtures.installPlugin();
+            tracker = MaceControl.getTracker();
+            List<MaceTracker.MaceRecord> records = new ArrayList<>(ledgerSize);
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < ledgerSize; i++) {
+                records.add(new MaceTracker.MaceRecord(UUID.randomUUID(), UUID.randomUUID(),
+                        MaceTracker.MaceLocation.INVENTORY, null, now));
+            }
+            tracker.loadRecords(records);
+        }
+    }
+
+    // Each thread moves its own mace back and forth
+    @State(Scope.Thread)
+    public static class Hands {
+        final UUID maceId = UUID.randomUUID();
+        final UUID playerId = UUID.randomUUID();
+        final UUID itemEntityId = UUID.randomUUID();
+    }
+
+    @Benchmark
+    public void dropAndPickup(Ledger ledger, Hands hands) {
+        ledger.tracker.registerMaceDrop(hands.itemEntityId, hands.playerId, hands.maceId);
+        ledger.tracker.handleMacePickup(hands.itemEntityId, hands.playerId, hands.maceId);
+    }
+
+    @Benchmark
+    public void reserveAndRelease(Ledger ledger, Hands hands) {
+        MaceTracker.SlotLease lease = ledger.tracker.tryReserveSlot(hands.playerId, Integer.MAX_VALUE);
+        ledger.tracker.releaseLease(lease);
+    }
+
+    @Benchmark
+    public int readCount(Ledger ledger) {
+        return ledger.tracker.getMaceCount();
+    }
+}
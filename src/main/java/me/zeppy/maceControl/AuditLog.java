@@ -0,0 +1,395 @@
+package me.zeppy.maceControl;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured audit trail of mace custody changes.
+ * <p>
+ * Event handlers publish records into a bounded lock-free ring buffer and
+ * return immediately. A single audit thread drains the buffer in batches,
+ * appends them as JSON lines to {@code audit/audit-<date>.jsonl} (rolling
+ * daily and by size) and echoes them to the console at the configured
+ * verbosity. If the buffer is full, records are dropped and counted rather
+ * than blocking the caller.
+ */
+public final class AuditLog {
+    private static final String FILE_PREFIX = "audit-";
+    private static final String FILE_SUFFIX = ".jsonl";
+
+    public enum Type {
+        CRAFT,
+        DROP,
+        PICKUP,
+        DESTROY
+    }
+
+    public enum Console {
+        NONE,
+        SUMMARY,
+        ALL;
+
+        boolean shows(Type type) {
+            return switch (this) {
+                case NONE -> false;
+                case SUMMARY -> type == Type.CRAFT || type == Type.DESTROY;
+                case ALL -> true;
+            };
+        }
+    }
+
+    public static final class Record {
+        public final Type type;
+        public final UUID maceId;
+        public final UUID playerId;
+        public final String world;
+        public final double x;
+        public final double y;
+        public final double z;
+        public final long timestamp;
+        public final String detail;
+
+        Record(Type type, UUID maceId, UUID playerId, String world,
+               double x, double y, double z, long timestamp, String detail) {
+            this.type = type;
+            this.maceId = maceId;
+            this.playerId = playerId;
+            this.world = world;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.timestamp = timestamp;
+            this.detail = detail;
+        }
+    }
+
+    private final MaceControl plugin;
+    private final File directory;
+
+    // Bounded multi-producer ring: each slot's sequence says whether it is free
+    // for the producer at that position or holds a record for the consumer
+    private final int mask;
+    private final AtomicReferenceArray<Record> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong producerIndex = new AtomicLong();
+    private long consumerIndex; // audit thread only
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile boolean enabled;
+    private volatile Console console;
+    private volatile long flushIntervalNanos;
+    private volatile long maxFileBytes;
+
+    private Thread flushThread;
+    private volatile boolean running;
+
+    // Current output file, audit thread only
+    private Writer writer;
+    private LocalDate fileDate;
+    private int fileIndex;
+    private long fileBytes;
+
+    public AuditLog(MaceControl plugin) {
+        this.plugin = plugin;
+        this.directory = new File(plugin.getDataFolder(), "audit");
+
+        int requested = Math.max(64, plugin.getConfig().getInt("audit.buffer-size", 8192));
+        int capacity = Integer.highestOneBit(requested - 1) << 1;
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+
+        reloadConfig();
+    }
+
+    public void reloadConfig() {
+        this.enabled = plugin.getConfig().getBoolean("audit.enabled", true);
+        this.console = parseConsole(plugin.getConfig().getString("audit.console", "summary"));
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(
+                Math.max(50, plugin.getConfig().getLong("audit.flush-interval-ms", 1000)));
+        this.maxFileBytes = Math.max(1, plugin.getConfig().getLong("audit.max-file-size-mb", 16)) * 1024L * 1024L;
+    }
+
+    private Console parseConsole(String value) {
+        try {
+            return Console.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            plugin.getLogger().warning("Unknown audit.console value '" + value + "', using SUMMARY");
+            return Console.SUMMARY;
+        }
+    }
+
+    void start() {
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        running = true;
+        flushThread = new Thread(this::flushLoop, "MaceControl-Audit");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    /**
+     * Flush what is buffered and stop the audit thread
+     */
+    void close() {
+        if (flushThread == null) return;
+        running = false;
+        LockSupport.unpark(flushThread);
+        try {
+            flushThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushThread = null;
+    }
+
+    /**
+     * Record an event. {@code location} may be null when the position is unknown.
+     * Never blocks; safe from any thread.
+     */
+    public void record(Type type, UUID maceId, UUID playerId, Location location, String detail) {
+        if (!enabled) return;
+
+        String world = null;
+        double x = 0, y = 0, z = 0;
+        if (location != null) {
+            World locationWorld = location.getWorld();
+            world = locationWorld != null ? locationWorld.getName() : null;
+            x = location.getX();
+            y = location.getY();
+            z = location.getZ();
+        }
+
+        if (!offer(new Record(type, maceId, playerId, world, x, y, z, System.currentTimeMillis(), detail))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private boolean offer(Record record) {
+        long position = producerIndex.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (producerIndex.compareAndSet(position, position + 1)) {
+                    slots.set(index, record);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = producerIndex.get();
+            } else if (difference < 0) {
+                // The consumer has not freed this slot yet: buffer full
+                return false;
+            } else {
+                position = producerIndex.get();
+            }
+        }
+    }
+
+    private Record poll() {
+        int index = (int) (consumerIndex & mask);
+        if (sequences.get(index) != consumerIndex + 1) {
+            return null;
+        }
+        Record record = slots.get(index);
+        slots.set(index, null);
+        sequences.set(index, consumerIndex + mask + 1);
+        consumerIndex++;
+        return record;
+    }
+
+    private void flushLoop() {
+        StringBuilder line = new StringBuilder(256);
+        try {
+            while (true) {
+                boolean stopping = !running;
+                int written = 0;
+                Record record;
+                while ((record = poll()) != null) {
+                    write(record, line);
+                    written++;
+                }
+                if (written > 0 && writer != null) {
+                    writer.flush();
+                }
+
+                long lost = dropped.getAndSet(0);
+                if (lost > 0) {
+                    plugin.getLogger().warning("Audit buffer full, dropped " + lost + " records");
+                }
+
+                if (stopping) break;
+                if (written == 0) {
+                    LockSupport.parkNanos(this, flushIntervalNanos);
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("Mace audit log writer failed, audit records are no longer saved: " + e.getMessage());
+            enabled = false;
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException ignored) {
+                }
+                writer = null;
+            }
+        }
+    }
+
+    private void write(Record record, StringBuilder line) throws IOException {
+        line.setLength(0);
+        toJson(record, line);
+        line.append('\n');
+
+        int bytes = utf8Length(line);
+        rollIfNeeded(record.timestamp, bytes);
+        writer.append(line);
+        fileBytes += bytes;
+
+        if (console.shows(record.type)) {
+            plugin.getLogger().info(describe(record));
+        }
+    }
+
+    private void rollIfNeeded(long timestamp, int pending) throws IOException {
+        LocalDate date = Instant.ofEpochMilli(timestamp).atZone(ZoneId.systemDefault()).toLocalDate();
+        if (writer != null && date.equals(fileDate) && fileBytes + pending <= maxFileBytes) {
+            return;
+        }
+
+        if (writer != null) {
+            writer.close();
+        }
+        if (!date.equals(fileDate)) {
+            fileDate = date;
+            fileIndex = 0;
+        } else {
+            fileIndex++;
+        }
+
+        // Continue an existing file for the day unless it is already full
+        File file = auditFile(fileDate, fileIndex);
+        while (file.length() >= maxFileBytes) {
+            file = auditFile(fileDate, ++fileIndex);
+        }
+        fileBytes = file.length();
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+    }
+
+    private File auditFile(LocalDate date, int index) {
+        String name = FILE_PREFIX + date + (index > 0 ? "-" + index : "") + FILE_SUFFIX;
+        return new File(directory, name);
+    }
+
+    private static void toJson(Record record, StringBuilder out) {
+        out.append("{\"time\":\"").append(Instant.ofEpochMilli(record.timestamp)).append('"');
+        out.append(",\"type\":\"").append(record.type).append('"');
+        out.append(",\"mace\":");
+        appendString(out, record.maceId != null ? record.maceId.toString() : null);
+        out.append(",\"player\":");
+        appendString(out, record.playerId != null ? record.playerId.toString() : null);
+        out.append(",\"world\":");
+        appendString(out, record.world);
+        if (record.world != null) {
+            out.append(",\"x\":").append(round(record.x));
+            out.append(",\"y\":").append(round(record.y));
+            out.append(",\"z\":").append(round(record.z));
+        }
+        if (record.detail != null) {
+            out.append(",\"detail\":");
+            appendString(out, record.detail);
+        }
+        out.append('}');
+    }
+
+    // Size of the line once the writer encodes it, without encoding it twice
+    private static int utf8Length(CharSequence text) {
+        int bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (!Character.isSurrogate(c)) {
+                bytes += 3;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes++; // Unpaired surrogate, written as '?'
+            }
+        }
+        return bytes;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+
+    private static void appendString(StringBuilder out, String value) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    // Console line, built on the audit thread
+    private String describe(Record record) {
+        StringBuilder out = new StringBuilder("[Audit] ").append(record.type);
+        if (record.playerId != null) {
+            out.append(' ').append(MaceControl.getNames().name(record.playerId));
+        }
+        if (record.maceId != null) {
+            out.append(" (Mace ID: ").append(record.maceId).append(')');
+        }
+        if (record.world != null) {
+            out.append(" at ").append(record.world).append(' ')
+                    .append((int) Math.floor(record.x)).append(", ")
+                    .append((int) Math.floor(record.y)).append(", ")
+                    .append((int) Math.floor(record.z));
+        }
+        if (record.detail != null) {
+            out.append(" - ").append(record.detail);
+        }
+        return out.toString();
+    }
+}
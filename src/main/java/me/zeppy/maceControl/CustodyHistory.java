@@ -0,0 +1,674 @@
+package me.zeppy.maceControl;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Chain of custody of every mace: crafts, pickups, drops, death drops,
+ * destructions and despawns, kept in {@code history/} for as long as the
+ * files are.
+ * <p>
+ * Events are appended to numbered segment files in deflate-compressed
+ * blocks, one block per flush. When a segment is full it gets a sidecar
+ * index listing, for every mace and player, the blocks that mention it, so
+ * a lookup only ever inflates blocks that contain a matching event.
+ * <p>
+ * Only the open segment's index is held in memory; it is rebuilt on startup
+ * by reading that one segment. Sealed indexes are sorted by ID and binary
+ * searched on disk, so memory does not grow with the history.
+ * <pre>
+ * block: int magic, int compressedLength, int eventCount, int crc32(compressed), compressed events
+ * event: long maceMsb, long maceLsb, bool hasPlayer, [long playerMsb, long playerLsb],
+ *        byte type, long time, utf world, int x, int y, int z, utf detail  (absent string = "")
+ * index: int magic, short version, int idCount,
+ *        id (ascending): long msb, long lsb, int firstOffset, int blockCount
+ *        int[] blockOffsets (grouped by id, in id order)
+ *        int crc32(everything before)
+ * </pre>
+ * A single history thread owns the files and the in-memory index. Recording
+ * and queries are handed to it, so callers never touch the disk.
+ */
+public final class CustodyHistory {
+    private static final int BLOCK_MAGIC = 0x4D434842; // "MCHB"
+    private static final int INDEX_MAGIC = 0x4D434849; // "MCHI"
+    private static final short INDEX_VERSION = 2;
+    private static final int INDEX_HEADER_BYTES = 10;
+    private static final int INDEX_ENTRY_BYTES = 24;
+    private static final int BLOCK_HEADER_BYTES = 16;
+    private static final int MAX_BLOCK_EVENTS = 128;
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+    private static final String SEGMENT_PREFIX = "history-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    // Stored by ordinal: only ever append
+    public enum Type {
+        CRAFT,
+        PICKUP,
+        DROP,
+        DEATH_DROP,
+        DESTROY,
+        DESPAWN;
+
+        static Type of(AuditLog.Type type, String detail) {
+            return switch (type) {
+                case CRAFT -> CRAFT;
+                case PICKUP -> PICKUP;
+                case DROP -> "death".equals(detail) ? DEATH_DROP : DROP;
+                case DESTROY -> "despawn".equals(detail) ? DESPAWN : DESTROY;
+            };
+        }
+    }
+
+    public static final class Event {
+        public final UUID maceId;
+        public final UUID playerId;
+        public final Type type;
+        public final long timestamp;
+        public final String world;
+        public final int x;
+        public final int y;
+        public final int z;
+        public final String detail;
+
+        Event(UUID maceId, UUID playerId, Type type, long timestamp, String world, int x, int y, int z, String detail) {
+            this.maceId = maceId;
+            this.playerId = playerId;
+            this.type = type;
+            this.timestamp = timestamp;
+            this.world = world;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.detail = detail;
+        }
+    }
+
+    // Blocks mentioning one ID as segment << 32 | offset, oldest first
+    private static final class Postings {
+        long[] refs = new long[2];
+        int size;
+
+        void add(long ref) {
+            if (size > 0 && refs[size - 1] == ref) return;
+            if (size == refs.length) {
+                refs = Arrays.copyOf(refs, size * 2);
+            }
+            refs[size++] = ref;
+        }
+    }
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final Logger logger;
+    private final ScheduledExecutorService historyThread;
+    private volatile boolean enabled;
+
+    // History thread only. Mace and player IDs share one index; lookups filter on the field.
+    // Postings of the open segment; sealed segments are looked up in their index files.
+    private final Map<UUID, Postings> index = new HashMap<>();
+    private final List<Integer> sealed = new ArrayList<>();
+    private final List<Event> pending = new ArrayList<>();
+    private int segment;
+    private FileChannel output;
+    private long outputSize;
+
+    public CustodyHistory(MaceControl plugin) {
+        this(new File(plugin.getDataFolder(), "history").toPath(),
+                Math.max(1, plugin.getConfig().getLong("history.segment-size-mb", 4)) * 1024L * 1024L,
+                plugin.getLogger());
+        this.enabled = plugin.getConfig().getBoolean("history.enabled", true);
+    }
+
+    CustodyHistory(Path directory, long segmentBytes, Logger logger) {
+        this.directory = directory;
+        this.segmentBytes = Math.min(segmentBytes, Integer.MAX_VALUE);
+        this.logger = logger;
+        this.enabled = true;
+        this.historyThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MaceControl-History");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Load the segment indexes and start flushing in the background
+     */
+    void start() {
+        if (!enabled) return;
+        historyThread.execute(this::open);
+        historyThread.scheduleWithFixedDelay(this::flushQuietly,
+                FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Write what is pending and stop the history thread
+     */
+    void close() {
+        if (historyThread.isShutdown()) return;
+        historyThread.execute(() -> {
+            flushQuietly();
+            closeOutput();
+        });
+        historyThread.shutdown();
+        try {
+            historyThread.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Record a custody event. {@code location} may be null when the position
+     * is unknown. Returns at once: lookups see the event straight away, but it
+     * only reaches the disk with the next block, written every second or
+     * once 128 events are waiting. Events not yet written are lost in a crash.
+     */
+    public void record(Type type, UUID maceId, UUID playerId, Location location, String detail) {
+        if (!enabled || maceId == null) return;
+
+        String world = null;
+        int x = 0, y = 0, z = 0;
+        if (location != null) {
+            World locationWorld = location.getWorld();
+            world = locationWorld != null ? locationWorld.getName() : null;
+            x = location.getBlockX();
+            y = location.getBlockY();
+            z = location.getBlockZ();
+        }
+        record(new Event(maceId, playerId, type, System.currentTimeMillis(), world, x, y, z, detail));
+    }
+
+    void record(Event event) {
+        if (!historyThread.isShutdown()) {
+            historyThread.execute(() -> append(event));
+        }
+    }
+
+    /**
+     * The newest {@code limit} events of one mace, oldest first
+     */
+    public CompletableFuture<List<Event>> forMace(UUID maceId, int limit) {
+        return query(maceId, false, limit);
+    }
+
+    /**
+     * The newest {@code limit} events involving one player, oldest first
+     */
+    public CompletableFuture<List<Event>> forPlayer(UUID playerId, int limit) {
+        return query(playerId, true, limit);
+    }
+
+    private CompletableFuture<List<Event>> query(UUID id, boolean byPlayer, int limit) {
+        if (!enabled || historyThread.isShutdown()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            // Newest first while collecting
+            List<Event> found = new ArrayList<>();
+            for (int i = pending.size() - 1; i >= 0 && found.size() < limit; i--) {
+                Event event = pending.get(i);
+                if (id.equals(byPlayer ? event.playerId : event.maceId)) {
+                    found.add(event);
+                }
+            }
+
+            Map<Integer, FileChannel> channels = new HashMap<>();
+            try {
+                Postings postings = index.get(id);
+                if (postings != null) {
+                    collect(channels, postings.refs, postings.size, id, byPlayer, limit, found);
+                }
+                for (int i = sealed.size() - 1; i >= 0 && found.size() < limit; i--) {
+                    long[] refs = lookup(sealed.get(i), id);
+                    collect(channels, refs, refs.length, id, byPlayer, limit, found);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                for (FileChannel channel : channels.values()) {
+                    try {
+                        channel.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+            Collections.reverse(found);
+            return found;
+        }, historyThread);
+    }
+
+    // Add the matching events of the given blocks to found, newest first
+    private void collect(Map<Integer, FileChannel> channels, long[] refs, int size, UUID id, boolean byPlayer,
+                         int limit, List<Event> found) throws IOException {
+        for (int i = size - 1; i >= 0 && found.size() < limit; i--) {
+            List<Event> block = readBlock(channels, refs[i], id, byPlayer);
+            for (int j = block.size() - 1; j >= 0 && found.size() < limit; j--) {
+                found.add(block.get(j));
+            }
+        }
+    }
+
+    private void open() {
+        try {
+            Files.createDirectories(directory);
+            List<Integer> segments = listSegments();
+            long activeSize = 0;
+            for (int number : segments) {
+                boolean last = number == segments.get(segments.size() - 1);
+                if (checkIndex(number)) {
+                    sealed.add(number);
+                    segment = number + 1;
+                    continue;
+                }
+
+                // The open segment, or one whose index was lost before it was written
+                long valid = scanSegment(number);
+                if (last) {
+                    segment = number;
+                    activeSize = valid;
+                } else {
+                    writeIndex(number);
+                    index.clear();
+                    sealed.add(number);
+                }
+            }
+            if (segment == 0) {
+                segment = 1;
+            }
+
+            output = FileChannel.open(segmentFile(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            // Drop a block torn by a crash; everything before it is intact
+            output.truncate(activeSize);
+            outputSize = activeSize;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void append(Event event) {
+        if (output == null) return;
+        pending.add(event);
+        if (pending.size() >= MAX_BLOCK_EVENTS) {
+            flushQuietly();
+        }
+    }
+
+    private void flushQuietly() {
+        if (pending.isEmpty() || output == null) return;
+        try {
+            flush();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void flush() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(pending.size() * 48);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new DeflaterOutputStream(compressed, deflater), 8192))) {
+            for (Event event : pending) {
+                writeEvent(out, event);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        byte[] payload = compressed.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer block = ByteBuffer.allocate(BLOCK_HEADER_BYTES + payload.length);
+        block.putInt(BLOCK_MAGIC).putInt(payload.length).putInt(pending.size()).putInt((int) crc.getValue());
+        block.put(payload).flip();
+
+        long offset = outputSize;
+        while (block.hasRemaining()) {
+            output.write(block, offset + block.position());
+        }
+        output.force(false);
+        outputSize += BLOCK_HEADER_BYTES + payload.length;
+
+        long ref = ref(segment, offset);
+        for (Event event : pending) {
+            post(event, ref);
+        }
+        pending.clear();
+
+        if (outputSize >= segmentBytes) {
+            seal();
+        }
+    }
+
+    // Write the full segment's index and continue in a new segment
+    private void seal() throws IOException {
+        writeIndex(segment);
+        index.clear();
+        sealed.add(segment);
+        closeOutput();
+        segment++;
+        output = FileChannel.open(segmentFile(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        outputSize = 0;
+    }
+
+    private void post(Event event, long ref) {
+        index.computeIfAbsent(event.maceId, id -> new Postings()).add(ref);
+        if (event.playerId != null) {
+            index.computeIfAbsent(event.playerId, id -> new Postings()).add(ref);
+        }
+    }
+
+    private void fail(IOException e) {
+        logger.severe("Mace custody history failed, new events are no longer saved: " + e.getMessage());
+        enabled = false;
+        pending.clear();
+        closeOutput();
+    }
+
+    private void closeOutput() {
+        if (output == null) return;
+        try {
+            output.close();
+        } catch (IOException ignored) {
+        }
+        output = null;
+    }
+
+    /**
+     * Index every valid block of a segment, returning where the valid blocks end
+     */
+    private long scanSegment(int number) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentFile(number), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long offset = 0;
+            while (offset + BLOCK_HEADER_BYTES <= size) {
+                List<Event> events;
+                try {
+                    events = decodeBlock(channel, offset, null, false);
+                } catch (IOException e) {
+                    break;
+                }
+                long ref = ref(number, offset);
+                for (Event event : events) {
+                    post(event, ref);
+                }
+                offset = nextBlock(channel, offset);
+            }
+            if (offset < size) {
+                logger.warning("Ignoring " + (size - offset) + " unreadable bytes at the end of custody history segment "
+                        + number);
+            }
+            return offset;
+        }
+    }
+
+    private static long nextBlock(FileChannel channel, long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(8);
+        readFully(channel, header, offset);
+        return offset + BLOCK_HEADER_BYTES + header.getInt(4);
+    }
+
+    private List<Event> readBlock(Map<Integer, FileChannel> channels, long ref, UUID id, boolean byPlayer)
+            throws IOException {
+        int number = (int) (ref >>> 32);
+        FileChannel channel = channels.get(number);
+        if (channel == null) {
+            channel = FileChannel.open(segmentFile(number), StandardOpenOption.READ);
+            channels.put(number, channel);
+        }
+        return decodeBlock(channel, ref & 0xFFFFFFFFL, id, byPlayer);
+    }
+
+    /**
+     * The events of one block that mention {@code id} (as the mace, or as the
+     * player if {@code byPlayer}); a null id returns all of them. Other events
+     * are skipped without being decoded.
+     */
+    private static List<Event> decodeBlock(FileChannel channel, long offset, UUID id, boolean byPlayer)
+            throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_BYTES);
+        readFully(channel, header, offset);
+        if (header.getInt(0) != BLOCK_MAGIC) {
+            throw new IOException("not a custody history block");
+        }
+        int length = header.getInt(4);
+        int count = header.getInt(8);
+        if (length < 0 || count < 0 || offset + BLOCK_HEADER_BYTES + length > channel.size()) {
+            throw new IOException("truncated custody history block");
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(channel, payload, offset + BLOCK_HEADER_BYTES);
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+        if (header.getInt(12) != (int) crc.getValue()) {
+            throw new IOException("custody history block checksum mismatch");
+        }
+
+        List<Event> events = new ArrayList<>(id == null ? count : 4);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(
+                new ByteArrayInputStream(payload.array())), 8192))) {
+            for (int i = 0; i < count; i++) {
+                Event event = readEvent(in, id, byPlayer);
+                if (event != null) {
+                    events.add(event);
+                }
+            }
+        }
+        return events;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static void writeEvent(DataOutputStream out, Event event) throws IOException {
+        out.writeLong(event.maceId.getMostSignificantBits());
+        out.writeLong(event.maceId.getLeastSignificantBits());
+        out.writeBoolean(event.playerId != null);
+        if (event.playerId != null) {
+            out.writeLong(event.playerId.getMostSignificantBits());
+            out.writeLong(event.playerId.getLeastSignificantBits());
+        }
+        out.writeByte(event.type.ordinal());
+        out.writeLong(event.timestamp);
+        out.writeUTF(event.world != null ? event.world : "");
+        out.writeInt(event.x);
+        out.writeInt(event.y);
+        out.writeInt(event.z);
+        out.writeUTF(event.detail != null ? event.detail : "");
+    }
+
+    // Null if the event does not mention the wanted ID
+    private static Event readEvent(DataInputStream in, UUID id, boolean byPlayer) throws IOException {
+        long maceMsb = in.readLong();
+        long maceLsb = in.readLong();
+        boolean hasPlayer = in.readBoolean();
+        long playerMsb = hasPlayer ? in.readLong() : 0;
+        long playerLsb = hasPlayer ? in.readLong() : 0;
+        if (id != null && !(byPlayer
+                ? hasPlayer && playerMsb == id.getMostSignificantBits() && playerLsb == id.getLeastSignificantBits()
+                : maceMsb == id.getMostSignificantBits() && maceLsb == id.getLeastSignificantBits())) {
+            // type, time, world, x, y, z, detail
+            skip(in, 1 + 8);
+            skip(in, in.readUnsignedShort());
+            skip(in, 12);
+            skip(in, in.readUnsignedShort());
+            return null;
+        }
+
+        UUID maceId = new UUID(maceMsb, maceLsb);
+        UUID playerId = hasPlayer ? new UUID(playerMsb, playerLsb) : null;
+        int type = in.readUnsignedByte();
+        if (type >= Type.values().length) {
+            throw new IOException("unknown custody event type " + type);
+        }
+        long timestamp = in.readLong();
+        String world = in.readUTF();
+        int x = in.readInt();
+        int y = in.readInt();
+        int z = in.readInt();
+        String detail = in.readUTF();
+        return new Event(maceId, playerId, Type.values()[type], timestamp, world.isEmpty() ? null : world,
+                x, y, z, detail.isEmpty() ? null : detail);
+    }
+
+    private static void skip(DataInputStream in, int bytes) throws IOException {
+        if (in.skipBytes(bytes) != bytes) {
+            throw new EOFException();
+        }
+    }
+
+    // Index of a sealed segment: the blocks of that segment mentioning each ID, sorted by ID
+    private void writeIndex(int number) throws IOException {
+        List<UUID> ids = new ArrayList<>(index.keySet());
+        ids.sort(null);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + ids.size() * 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(INDEX_MAGIC);
+        out.writeShort(INDEX_VERSION);
+        out.writeInt(ids.size());
+        int first = 0;
+        for (UUID id : ids) {
+            Postings postings = index.get(id);
+            out.writeLong(id.getMostSignificantBits());
+            out.writeLong(id.getLeastSignificantBits());
+            out.writeInt(first);
+            out.writeInt(postings.size);
+            first += postings.size;
+        }
+        for (UUID id : ids) {
+            Postings postings = index.get(id);
+            for (int i = 0; i < postings.size; i++) {
+                out.writeInt((int) postings.refs[i]);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+
+        Path file = indexFile(number);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, bytes.toByteArray());
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Check a sealed segment's index, or return false if it has none (or a
+     * bad one). Nothing is kept in memory.
+     */
+    private boolean checkIndex(int number) {
+        Path file = indexFile(number);
+        if (!Files.exists(file)) return false;
+        try {
+            byte[] bytes = Files.readAllBytes(file);
+            if (bytes.length < INDEX_HEADER_BYTES + 4) {
+                throw new IOException("truncated");
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length - 4);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            if (buffer.getInt(bytes.length - 4) != (int) crc.getValue()) {
+                throw new IOException("checksum mismatch");
+            }
+            if (buffer.getInt(0) != INDEX_MAGIC || buffer.getShort(4) != INDEX_VERSION) {
+                throw new IOException("unsupported format");
+            }
+            long count = buffer.getInt(6);
+            if (count < 0 || INDEX_HEADER_BYTES + count * INDEX_ENTRY_BYTES > bytes.length - 4) {
+                throw new IOException("truncated");
+            }
+            return true;
+        } catch (IOException e) {
+            logger.warning("Rebuilding custody history index " + file.getFileName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * The blocks of a sealed segment that mention {@code id}, found by binary
+     * search in its index file
+     */
+    private long[] lookup(int number, UUID id) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile(number), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_BYTES);
+            readFully(channel, header, 0);
+            int count = header.getInt(6);
+
+            ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                entry.clear();
+                readFully(channel, entry, INDEX_HEADER_BYTES + (long) middle * INDEX_ENTRY_BYTES);
+                int order = new UUID(entry.getLong(0), entry.getLong(8)).compareTo(id);
+                if (order < 0) {
+                    low = middle + 1;
+                } else if (order > 0) {
+                    high = middle - 1;
+                } else {
+                    ByteBuffer offsets = ByteBuffer.allocate(entry.getInt(20) * 4);
+                    readFully(channel, offsets,
+                            INDEX_HEADER_BYTES + (long) count * INDEX_ENTRY_BYTES + entry.getInt(16) * 4L);
+                    long[] refs = new long[offsets.capacity() / 4];
+                    for (int i = 0; i < refs.length; i++) {
+                        refs[i] = ref(number, offsets.getInt(i * 4) & 0xFFFFFFFFL);
+                    }
+                    return refs;
+                }
+            }
+            return new long[0];
+        }
+    }
+
+    private List<Integer> listSegments() {
+        List<Integer> segments = new ArrayList<>();
+        File[] files = directory.toFile().listFiles();
+        if (files == null) return segments;
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) continue;
+            try {
+                segments.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    private Path segmentFile(int number) {
+        return directory.resolve(SEGMENT_PREFIX + number + SEGMENT_SUFFIX);
+    }
+
+    private Path indexFile(int number) {
+        return directory.resolve(SEGMENT_PREFIX + number + INDEX_SUFFIX);
+    }
+
+    private static long ref(int segment, long offset) {
+        return ((long) segment << 32) | offset;
+    }
+}
@@ -0,0 +1,287 @@
+package me.zeppy.maceControl;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Item;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live index of dropped mace item entities, bucketed by world and chunk.
+ * Kept up to date from spawn, chunk entity load/unload, pickup and removal
+ * events, so lookups cost in proportion to the number of dropped maces rather
+ * than the number of entities on the server.
+ * <p>
+ * Buckets may be read from any thread, but live positions are only read on
+ * the thread that owns each entity, so lookups complete asynchronously.
+ */
+public class DroppedMaceIndex {
+
+    public static final class IndexedDrop {
+        public final UUID entityId;
+        public final UUID maceId;
+        public final UUID worldId;
+        public final String worldName;
+        public final double x;
+        public final double y;
+        public final double z;
+        public final long indexedAt;
+
+        IndexedDrop(UUID entityId, UUID maceId, UUID worldId, String worldName,
+                    double x, double y, double z, long indexedAt) {
+            this.entityId = entityId;
+            this.maceId = maceId;
+            this.worldId = worldId;
+            this.worldName = worldName;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.indexedAt = indexedAt;
+        }
+
+        public int getBlockX() {
+            return (int) Math.floor(x);
+        }
+
+        public int getBlockY() {
+            return (int) Math.floor(y);
+        }
+
+        public int getBlockZ() {
+            return (int) Math.floor(z);
+        }
+    }
+
+    // Live entity plus the bucket it is currently filed under
+    private static final class Slot {
+        final Item entity;
+        final UUID maceId;
+        final long indexedAt;
+        UUID worldId;
+        long chunkKey;
+
+        Slot(Item entity, UUID maceId, long indexedAt) {
+            this.entity = entity;
+            this.maceId = maceId;
+            this.indexedAt = indexedAt;
+        }
+    }
+
+    private final Map<UUID, Map<Long, Map<UUID, Slot>>> byWorldAndChunk = new ConcurrentHashMap<>();
+    private final Map<UUID, Slot> byEntity = new ConcurrentHashMap<>();
+    private final Map<UUID, Slot> byMace = new ConcurrentHashMap<>();
+
+    static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkZ << 32) | (chunkX & 0xFFFFFFFFL);
+    }
+
+    public int size() {
+        return byEntity.size();
+    }
+
+    public boolean contains(UUID entityId) {
+        return byEntity.containsKey(entityId);
+    }
+
+    /**
+     * Index a dropped mace entity (or refresh its position)
+     */
+    public void add(Item item, UUID maceId) {
+        if (item == null || maceId == null) return;
+
+        Slot slot = byEntity.get(item.getUniqueId());
+        if (slot == null) {
+            slot = new Slot(item, maceId, System.currentTimeMillis());
+            byEntity.put(item.getUniqueId(), slot);
+            byMace.put(maceId, slot);
+        }
+        refile(slot, item.getLocation());
+    }
+
+    public void remove(UUID entityId) {
+        Slot slot = byEntity.remove(entityId);
+        if (slot != null) {
+            byMace.remove(slot.maceId, slot);
+            synchronized (slot) {
+                unfile(slot, entityId);
+            }
+        }
+    }
+
+    public void removeWorld(World world) {
+        Map<Long, Map<UUID, Slot>> chunks = byWorldAndChunk.remove(world.getUID());
+        if (chunks == null) return;
+        for (Map<UUID, Slot> bucket : chunks.values()) {
+            for (Slot slot : bucket.values()) {
+                byEntity.remove(slot.entity.getUniqueId());
+                byMace.remove(slot.maceId, slot);
+            }
+        }
+    }
+
+    /**
+     * All indexed drops with current positions
+     */
+    public CompletableFuture<List<IndexedDrop>> collectDrops() {
+        return resolveAll(new ArrayList<>(byEntity.values()));
+    }
+
+    /**
+     * The drop of one mace with its current position, or null if it is not
+     * lying in a loaded chunk
+     */
+    public CompletableFuture<IndexedDrop> findDrop(UUID maceId) {
+        Slot slot = byMace.get(maceId);
+        if (slot == null) return CompletableFuture.completedFuture(null);
+        return resolveAll(List.of(slot)).thenApply(drops -> drops.isEmpty() ? null : drops.get(0));
+    }
+
+    /**
+     * Drops within {@code radius} blocks of {@code center}, nearest first.
+     * Only buckets overlapping the radius (plus one chunk of slack for items
+     * that drifted since they were filed) are visited.
+     */
+    public CompletableFuture<List<IndexedDrop>> collectDropsNear(Location center, double radius) {
+        World world = center.getWorld();
+        if (world == null) return CompletableFuture.completedFuture(new ArrayList<>());
+
+        Map<Long, Map<UUID, Slot>> chunks = byWorldAndChunk.get(world.getUID());
+        if (chunks == null) return CompletableFuture.completedFuture(new ArrayList<>());
+
+        int minChunkX = ((int) Math.floor(center.getX() - radius) >> 4) - 1;
+        int maxChunkX = ((int) Math.floor(center.getX() + radius) >> 4) + 1;
+        int minChunkZ = ((int) Math.floor(center.getZ() - radius) >> 4) - 1;
+        int maxChunkZ = ((int) Math.floor(center.getZ() + radius) >> 4) + 1;
+        double radiusSquared = radius * radius;
+        UUID worldId = world.getUID();
+        double centerX = center.getX();
+        double centerY = center.getY();
+        double centerZ = center.getZ();
+
+        List<Slot> candidates = new ArrayList<>();
+        long area = (long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+        if (area > chunks.size()) {
+            // Large radius: cheaper to walk the occupied buckets than the area
+            for (Map<UUID, Slot> bucket : chunks.values()) {
+                candidates.addAll(bucket.values());
+            }
+        } else {
+            for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                    Map<UUID, Slot> bucket = chunks.get(chunkKey(chunkX, chunkZ));
+                    if (bucket != null) {
+                        candidates.addAll(bucket.values());
+                    }
+                }
+            }
+        }
+
+        return resolveAll(candidates).thenApply(resolved -> {
+            List<IndexedDrop> drops = new ArrayList<>();
+            for (IndexedDrop drop : resolved) {
+                if (!drop.worldId.equals(worldId)) continue;
+                double dx = drop.x - centerX;
+                double dy = drop.y - centerY;
+                double dz = drop.z - centerZ;
+                if (dx * dx + dy * dy + dz * dz <= radiusSquared) {
+                    drops.add(drop);
+                }
+            }
+
+            drops.sort(Comparator.comparingDouble(drop -> {
+                double dx = drop.x - centerX;
+                double dz = drop.z - centerZ;
+                return dx * dx + dz * dz;
+            }));
+            return drops;
+        });
+    }
+
+    // Resolve each slot on the thread that owns its entity; completes once all have answered
+    private CompletableFuture<List<IndexedDrop>> resolveAll(List<Slot> slots) {
+        if (slots.isEmpty()) return CompletableFuture.completedFuture(new ArrayList<>());
+
+        MaceScheduler scheduler = MaceControl.getScheduler();
+        List<CompletableFuture<IndexedDrop>> pending = new ArrayList<>(slots.size());
+        for (Slot slot : slots) {
+            CompletableFuture<IndexedDrop> future = new CompletableFuture<>();
+            pending.add(future);
+            scheduler.runForEntity(slot.entity, () -> {
+                try {
+                    future.complete(resolve(slot));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }, () -> {
+                remove(slot.entity.getUniqueId());
+                future.complete(null);
+            }, 0);
+        }
+
+        return CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).thenApply(done -> {
+            List<IndexedDrop> drops = new ArrayList<>(pending.size());
+            for (CompletableFuture<IndexedDrop> future : pending) {
+                IndexedDrop drop = future.join();
+                if (drop != null) {
+                    drops.add(drop);
+                }
+            }
+            return drops;
+        });
+    }
+
+    // Read the entity's live position, re-filing it if it drifted into another chunk. Owning thread only.
+    private IndexedDrop resolve(Slot slot) {
+        if (!slot.entity.isValid()) {
+            remove(slot.entity.getUniqueId());
+            return null;
+        }
+
+        Location location = slot.entity.getLocation();
+        refile(slot, location);
+        World world = location.getWorld();
+        return new IndexedDrop(slot.entity.getUniqueId(), slot.maceId, world.getUID(), world.getName(),
+                location.getX(), location.getY(), location.getZ(), slot.indexedAt);
+    }
+
+    // Synchronized per slot: on Folia the same drop can be refiled from its region and a command at once
+    private void refile(Slot slot, Location location) {
+        World world = location.getWorld();
+        if (world == null) return;
+
+        UUID worldId = world.getUID();
+        long key = chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+        UUID entityId = slot.entity.getUniqueId();
+        synchronized (slot) {
+            if (worldId.equals(slot.worldId) && key == slot.chunkKey) {
+                return;
+            }
+
+            if (slot.worldId != null) {
+                unfile(slot, entityId);
+            }
+            slot.worldId = worldId;
+            slot.chunkKey = key;
+            bucket(worldId, key).put(entityId, slot);
+        }
+    }
+
+    private void unfile(Slot slot, UUID entityId) {
+        Map<Long, Map<UUID, Slot>> chunks = byWorldAndChunk.get(slot.worldId);
+        if (chunks == null) return;
+        Map<UUID, Slot> bucket = chunks.get(slot.chunkKey);
+        if (bucket == null) return;
+        bucket.remove(entityId);
+        if (bucket.isEmpty()) {
+            chunks.remove(slot.chunkKey, bucket);
+        }
+    }
+
+    private Map<UUID, Slot> bucket(UUID worldId, long key) {
+        return byWorldAndChunk
+                .computeIfAbsent(worldId, id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+    }
+}
@@ -0,0 +1,248 @@
+package me.zeppy.maceControl;
+
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Item;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Incremental scanner for dropped maces. Runs every tick, but only does work
+ * while a sweep is in progress. A sweep visits every loaded chunk of every
+ * world, keeping its position between ticks and stopping each tick once the
+ * chunk or time budget is used up.
+ * <p>
+ * On Folia no single thread may list a world's chunks, so the scanner keeps
+ * its own set of chunks with loaded entities, fed by the entity load and
+ * unload events. A sweep groups that set by region section and scans each
+ * group on the region thread that owns it, with the same per-tick budget
+ * applied per region. The sweep finishes once every group is done.
+ */
+public class DroppedMaceScanner implements Runnable {
+    // Folia never splits a 16x16-chunk section between regions
+    private static final int SECTION_SHIFT = 4;
+
+    private final MaceControl plugin;
+
+    private int chunksPerTick;
+    private long budgetNanos;
+    private long sweepIntervalTicks;
+
+    // Sweep cursor; the flag is read from region threads on Folia
+    private volatile boolean sweeping;
+    private int worldIndex;
+    private Chunk[] worldChunks;
+    private int chunkIndex;
+
+    // Progress of the current sweep
+    private final Map<UUID, UUID> foundDrops = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingSections = new AtomicInteger();
+    private final AtomicInteger sweptChunks = new AtomicInteger();
+    private long sweepStartNanos;
+    private long sweepStartTime;
+    private int sweepTicks;
+    private int sweepChunks;
+    private long ticksUntilNextSweep;
+
+    // Folia only: chunk keys with loaded entities, by world
+    private final Map<UUID, Set<Long>> entityChunks = new ConcurrentHashMap<>();
+
+    public DroppedMaceScanner(MaceControl plugin) {
+        this.plugin = plugin;
+        reloadConfig();
+    }
+
+    public void reloadConfig() {
+        this.chunksPerTick = Math.max(1, plugin.getConfig().getInt("performance.scan-chunks-per-tick", 50));
+        this.budgetNanos = Math.max(50, plugin.getConfig().getLong("performance.scan-budget-micros", 500)) * 1000L;
+        this.sweepIntervalTicks = plugin.getConfig().getLong("performance.scan-sweep-interval-minutes", 10) * 60 * 20;
+        this.ticksUntilNextSweep = sweepIntervalTicks;
+    }
+
+    /**
+     * Record that a chunk's entities were loaded. Called from the chunk's
+     * own region; a no-op outside Folia, where the world can be asked directly.
+     */
+    public void chunkEntitiesLoaded(World world, int chunkX, int chunkZ) {
+        if (!MaceControl.getScheduler().isRegionized()) return;
+        entityChunks.computeIfAbsent(world.getUID(), id -> ConcurrentHashMap.newKeySet())
+                .add(DroppedMaceIndex.chunkKey(chunkX, chunkZ));
+    }
+
+    public void chunkEntitiesUnloaded(World world, int chunkX, int chunkZ) {
+        Set<Long> chunks = entityChunks.get(world.getUID());
+        if (chunks != null) {
+            chunks.remove(DroppedMaceIndex.chunkKey(chunkX, chunkZ));
+        }
+    }
+
+    public void worldUnloaded(World world) {
+        entityChunks.remove(world.getUID());
+    }
+
+    public boolean isSweeping() {
+        return sweeping;
+    }
+
+    /**
+     * Start a new sweep, unless one is already running
+     */
+    public void startSweep() {
+        if (sweeping) return;
+        sweeping = true;
+        worldIndex = 0;
+        worldChunks = null;
+        chunkIndex = 0;
+        foundDrops.clear();
+        sweepStartNanos = System.nanoTime();
+        sweepStartTime = System.currentTimeMillis();
+        sweepTicks = 0;
+        sweepChunks = 0;
+        sweptChunks.set(0);
+
+        if (MaceControl.getScheduler().isRegionized()) {
+            dispatchSections();
+        }
+    }
+
+    @Override
+    public void run() {
+        if (!sweeping) {
+            // Periodic sweeps keep drop locations fresh; 0 disables them
+            if (sweepIntervalTicks > 0 && --ticksUntilNextSweep <= 0) {
+                ticksUntilNextSweep = sweepIntervalTicks;
+                startSweep();
+            }
+            return;
+        }
+
+        sweepTicks++;
+        if (MaceControl.getScheduler().isRegionized()) {
+            // The region threads do the scanning
+            return;
+        }
+
+        long deadline = System.nanoTime() + budgetNanos;
+        int chunksThisTick = 0;
+        List<World> worlds = plugin.getServer().getWorlds();
+
+        while (chunksThisTick < chunksPerTick && System.nanoTime() < deadline) {
+            if (worldChunks == null || chunkIndex >= worldChunks.length) {
+                if (worldChunks != null) {
+                    worldIndex++;
+                }
+                if (worldIndex >= worlds.size()) {
+                    finishSweep();
+                    return;
+                }
+                worldChunks = worlds.get(worldIndex).getLoadedChunks();
+                chunkIndex = 0;
+                continue;
+            }
+
+            Chunk chunk = worldChunks[chunkIndex++];
+            chunksThisTick++;
+            sweepChunks++;
+            scanChunk(chunk);
+        }
+    }
+
+    // Folia: hand each region section's tracked chunks to the region that owns them
+    private void dispatchSections() {
+        List<Runnable> sections = new ArrayList<>();
+        for (World world : plugin.getServer().getWorlds()) {
+            Set<Long> chunks = entityChunks.get(world.getUID());
+            if (chunks == null) continue;
+
+            Map<Long, List<Long>> bySection = new HashMap<>();
+            for (long key : chunks) {
+                long section = DroppedMaceIndex.chunkKey(chunkX(key) >> SECTION_SHIFT, chunkZ(key) >> SECTION_SHIFT);
+                bySection.computeIfAbsent(section, k -> new ArrayList<>()).add(key);
+            }
+            for (List<Long> section : bySection.values()) {
+                sections.add(() -> scanSection(world, section, 0, 0));
+            }
+        }
+
+        if (sections.isEmpty()) {
+            finishSweep();
+            return;
+        }
+        pendingSections.set(sections.size());
+        sections.forEach(Runnable::run);
+    }
+
+    // Scan one section on its region thread, continuing on the next tick once the budget is used up
+    private void scanSection(World world, List<Long> section, int from, long delayTicks) {
+        long first = section.get(0);
+        MaceScheduler scheduler = MaceControl.getScheduler();
+        scheduler.runAtChunk(world, chunkX(first), chunkZ(first), () -> {
+            long deadline = System.nanoTime() + budgetNanos;
+            int end = Math.min(section.size(), from + chunksPerTick);
+            int index = from;
+            int scanned = 0;
+            do {
+                long key = section.get(index++);
+                // Only the owning region may touch the chunk, and it may have unloaded since the sweep began
+                if (world.isChunkLoaded(chunkX(key), chunkZ(key))) {
+                    scanChunk(world.getChunkAt(chunkX(key), chunkZ(key)));
+                    scanned++;
+                }
+            } while (index < end && System.nanoTime() < deadline);
+            sweptChunks.addAndGet(scanned);
+
+            if (index < section.size()) {
+                scanSection(world, section, index, 1);
+            } else if (pendingSections.decrementAndGet() == 0) {
+                scheduler.runGlobal(this::finishSweep);
+            }
+        }, delayTicks);
+    }
+
+    private static int chunkX(long key) {
+        return (int) key;
+    }
+
+    private static int chunkZ(long key) {
+        return (int) (key >> 32);
+    }
+
+    private void scanChunk(Chunk chunk) {
+        // The chunk may have unloaded since the world's chunk list was taken
+        if (!chunk.isLoaded() || !chunk.isEntitiesLoaded()) return;
+
+        try {
+            for (Entity entity : chunk.getEntities()) {
+                if (entity instanceof Item droppedItem) {
+                    UUID maceId = MaceInspector.maceId(droppedItem.getItemStack());
+                    if (maceId != null) {
+                        MaceManager.migrateMaceId(droppedItem);
+                        foundDrops.put(maceId, entity.getUniqueId());
+                        // Picks up drops that were already loaded before the plugin enabled
+                        MaceControl.getDropIndex().add(droppedItem, maceId);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            plugin.getLogger().warning("Error scanning chunk " + chunk.getX() + "," + chunk.getZ() +
+                    " in world " + chunk.getWorld().getName() + ": " + e.getMessage());
+        }
+    }
+
+    private void finishSweep() {
+        sweeping = false;
+        worldChunks = null;
+
+        // Region threads count their own chunks on Folia
+        sweepChunks += sweptChunks.get();
+        long elapsedMillis = (System.nanoTime() - sweepStartNanos) / 1_000_000;
+        plugin.getLogger().info("Dropped mace sweep complete: " + sweepChunks + " chunks over " + sweepTicks +
+                " ticks (" + elapsedMillis + "ms), found " + foundDrops.size() + " dropped maces");
+
+        MaceControl.getTracker().completeDropSweep(new HashMap<>(foundDrops), sweepStartTime);
+        foundDrops.clear();
+    }
+}
@@ -0,0 +1,325 @@
+package me.zeppy.maceControl;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Network-wide mace limit kept in one file that every backend server can
+ * reach (for example on a shared disk).
+ * <pre>
+ * int magic, short formatVersion, long version, int entryCount,
+ * entry: utf serverId, int maces, int reserved, long reservedUntil, long updatedAt
+ * int crc32(everything before)
+ * </pre>
+ * Each server owns one entry: its maces plus a few spare slots reserved ahead
+ * of time. Crafting only uses this server's spare slots, so the limit check in
+ * the craft handler never touches the file. A sync thread publishes the local
+ * count and tops the reservation back up while the network has room.
+ * <p>
+ * Updates are optimistic: the file is read and the new entry computed without
+ * a lock, then written only if the version is unchanged, under a lock on a
+ * sibling {@code .lock} file. The data file itself is replaced atomically, so
+ * unlocked readers always see a whole generation. Reservations of a server
+ * that stops syncing expire; its maces stay counted, since they still exist.
+ * The server itself stops using its spare slots at the same moment, so while
+ * syncs keep failing it crafts nothing the others could not see.
+ */
+final class FileGlobalLedger implements GlobalLedger {
+    private static final int MAGIC = 0x4D434E4C; // "MCNL"
+    private static final short FORMAT_VERSION = 1;
+    private static final int OPTIMISTIC_ATTEMPTS = 5;
+
+    // FileLock is per JVM, not per channel: instances in one process take turns here first
+    private static final Map<Path, Object> PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+    static final class Entry {
+        final int maces;
+        final int reserved;
+        final long reservedUntil;
+        final long updatedAt;
+
+        Entry(int maces, int reserved, long reservedUntil, long updatedAt) {
+            this.maces = maces;
+            this.reserved = reserved;
+            this.reservedUntil = reservedUntil;
+            this.updatedAt = updatedAt;
+        }
+
+        int slots(long now) {
+            return maces + (reservedUntil > now ? reserved : 0);
+        }
+    }
+
+    static final class State {
+        static final State EMPTY = new State(0, Map.of());
+
+        final long version;
+        final Map<String, Entry> entries;
+
+        State(long version, Map<String, Entry> entries) {
+            this.version = version;
+            this.entries = entries;
+        }
+    }
+
+    private final Path file;
+    private final Path lockFile;
+    private final String serverId;
+    private final int reserveSlots;
+    private final long reservationMillis;
+    private final long syncIntervalMillis;
+    private final IntSupplier slotsInUse;
+    private final IntSupplier limit;
+    private final Logger logger;
+    private final ScheduledExecutorService syncThread;
+
+    // Results of the last successful sync; no spare slots until the first one
+    private volatile int ownMaces;
+    private volatile int ownReserved;
+    private volatile long reservedUntil;
+    private volatile int otherMaces;
+    private volatile boolean failing;
+
+    FileGlobalLedger(Path file, String serverId, int reserveSlots, long reservationMillis, long syncIntervalMillis,
+                     IntSupplier slotsInUse, IntSupplier limit, Logger logger) {
+        this.file = file.toAbsolutePath().normalize();
+        this.lockFile = this.file.resolveSibling(this.file.getFileName() + ".lock");
+        this.serverId = serverId;
+        this.reserveSlots = reserveSlots;
+        this.reservationMillis = reservationMillis;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.slotsInUse = slotsInUse;
+        this.limit = limit;
+        this.logger = logger;
+        this.syncThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MaceControl-Ledger");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public int capacity(int limit) {
+        // The other servers stop counting the spare slots once they expire, so do we
+        return System.currentTimeMillis() < reservedUntil ? ownMaces + ownReserved : ownMaces;
+    }
+
+    @Override
+    public int networkCount(int localMaces) {
+        return otherMaces + localMaces;
+    }
+
+    @Override
+    public void requestSync() {
+        if (!syncThread.isShutdown()) {
+            syncThread.execute(this::syncQuietly);
+        }
+    }
+
+    /**
+     * Sync once right away, so crafting works as soon as the plugin is enabled,
+     * then keep syncing in the background
+     */
+    @Override
+    public void start() {
+        syncQuietly();
+        syncThread.scheduleWithFixedDelay(this::syncQuietly, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop syncing and give this server's spare slots back to the network
+     */
+    @Override
+    public void close() {
+        syncThread.shutdownNow();
+        try {
+            syncThread.awaitTermination(5, TimeUnit.SECONDS);
+            update(0);
+        } catch (IOException e) {
+            logger.warning("Could not release network mace reservations: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            update(reserveSlots);
+            if (failing) {
+                failing = false;
+                logger.info("Network mace ledger reachable again: " + file);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Keep whatever was reserved last until it expires, as the other servers do
+            if (!failing) {
+                failing = true;
+                logger.warning("Network mace ledger sync failed, new crafts are limited to slots already reserved"
+                        + " until they expire: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Publish this server's count and reserve up to {@code wantReserved} spare
+     * slots. Visible for benchmarks driving several servers at once.
+     */
+    void update(int wantReserved) throws IOException {
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            State seen = read(file);
+            State next = plan(seen, wantReserved);
+            if (writeIfUnchanged(seen.version, next)) {
+                apply(next);
+                return;
+            }
+        }
+
+        // Heavily contended: compute and write while holding the lock
+        synchronized (processLock()) {
+            try (FileChannel channel = openLock(); FileLock ignored = channel.lock()) {
+                State next = plan(read(file), wantReserved);
+                write(file, next);
+                apply(next);
+            }
+        }
+    }
+
+    private State plan(State seen, int wantReserved) {
+        long now = System.currentTimeMillis();
+        int others = 0;
+        Map<String, Entry> entries = new LinkedHashMap<>(seen.entries);
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (!entry.getKey().equals(serverId)) {
+                others += entry.getValue().slots(now);
+            }
+        }
+
+        int used = slotsInUse.getAsInt();
+        int reserved = Math.max(0, Math.min(wantReserved, limit.getAsInt() - others - used));
+        entries.put(serverId, new Entry(used, reserved, now + reservationMillis, now));
+        return new State(seen.version + 1, entries);
+    }
+
+    private void apply(State state) {
+        int others = 0;
+        for (Map.Entry<String, Entry> entry : state.entries.entrySet()) {
+            if (!entry.getKey().equals(serverId)) {
+                others += entry.getValue().maces;
+            }
+        }
+        Entry own = state.entries.get(serverId);
+        otherMaces = others;
+        // Expiry first, so a reader never pairs the new reservation with the old deadline
+        reservedUntil = 0;
+        ownMaces = own.maces;
+        ownReserved = own.reserved;
+        reservedUntil = own.reservedUntil;
+    }
+
+    private boolean writeIfUnchanged(long expectedVersion, State next) throws IOException {
+        synchronized (processLock()) {
+            try (FileChannel channel = openLock(); FileLock ignored = channel.lock()) {
+                if (read(file).version != expectedVersion) {
+                    return false;
+                }
+                write(file, next);
+                return true;
+            }
+        }
+    }
+
+    private Object processLock() {
+        return PROCESS_LOCKS.computeIfAbsent(lockFile, path -> new Object());
+    }
+
+    private FileChannel openLock() throws IOException {
+        Path parent = lockFile.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        return FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    static State read(Path file) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return State.EMPTY;
+        }
+        if (bytes.length < 4) {
+            throw new IOException("network ledger is truncated");
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.getInt(bytes.length - 4) != (int) crc.getValue()) {
+            throw new IOException("network ledger checksum mismatch");
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 4))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a MaceControl network ledger");
+            }
+            short formatVersion = in.readShort();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("unsupported network ledger version " + formatVersion);
+            }
+            long version = in.readLong();
+            int count = in.readInt();
+            Map<String, Entry> entries = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                String serverId = in.readUTF();
+                entries.put(serverId, new Entry(in.readInt(), in.readInt(), in.readLong(), in.readLong()));
+            }
+            return new State(version, entries);
+        }
+    }
+
+    private static void write(Path file, State state) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + state.entries.size() * 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeShort(FORMAT_VERSION);
+        out.writeLong(state.version);
+        out.writeInt(state.entries.size());
+        for (Map.Entry<String, Entry> entry : state.entries.entrySet()) {
+            Entry value = entry.getValue();
+            out.writeUTF(entry.getKey());
+            out.writeInt(value.maces);
+            out.writeInt(value.reserved);
+            out.writeLong(value.reservedUntil);
+            out.writeLong(value.updatedAt);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package me.zeppy.maceControl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * maceData.dat, rewritten in full on every save with the previous
+ * generation kept as a fallback
+ */
+final class FileMaceStorage implements MaceStorage {
+    static final String DATA_FILE = "maceData.dat";
+
+    private final MaceControl plugin;
+    private final Path dataFile;
+
+    FileMaceStorage(MaceControl plugin) {
+        this.plugin = plugin;
+        this.dataFile = new File(plugin.getDataFolder(), DATA_FILE).toPath();
+    }
+
+    @Override
+    public String name() {
+        return FILE;
+    }
+
+    /**
+     * Read the newest valid generation of the data file, or null if there is
+     * none. Throws if a generation exists but none of them can be read.
+     */
+    @Override
+    public MaceDataFile.Contents load() throws IOException {
+        IOException failure = null;
+        for (Path candidate : List.of(dataFile, MaceDataFile.previousGeneration(dataFile))) {
+            if (!Files.exists(candidate)) continue;
+            try {
+                MaceDataFile.Contents contents = MaceDataFile.read(candidate);
+                if (!candidate.equals(dataFile)) {
+                    plugin.getLogger().warning("Recovered mace data from previous generation " + candidate.getFileName());
+                }
+                return contents;
+            } catch (IOException e) {
+                plugin.getLogger().severe("Mace data file " + candidate.getFileName() + " is corrupt: " + e.getMessage());
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw new IOException("no readable generation of " + DATA_FILE, failure);
+        }
+        return null;
+    }
+
+    @Override
+    public void write(TrackerSnapshot snapshot, long journalSegment) throws IOException {
+        MaceDataFile.write(dataFile, snapshot, journalSegment);
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,78 @@
+package me.zeppy.maceControl;
+
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Region-threaded scheduling through Folia's global, region, entity and
+ * async schedulers
+ */
+final class FoliaMaceScheduler implements MaceScheduler {
+    private static final long MILLIS_PER_TICK = 50;
+
+    private final MaceControl plugin;
+
+    FoliaMaceScheduler(MaceControl plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean isRegionized() {
+        return true;
+    }
+
+    @Override
+    public void runGlobal(Runnable task) {
+        if (plugin.getServer().isGlobalTickThread()) {
+            task.run();
+        } else {
+            plugin.getServer().getGlobalRegionScheduler().execute(plugin, task);
+        }
+    }
+
+    @Override
+    public void runGlobalTimer(Runnable task, long delayTicks, long periodTicks) {
+        // Folia timers need a delay of at least one tick
+        plugin.getServer().getGlobalRegionScheduler().runAtFixedRate(plugin, scheduled -> task.run(),
+                Math.max(1, delayTicks), periodTicks);
+    }
+
+    @Override
+    public void runAsyncTimer(Runnable task, long delayTicks, long periodTicks) {
+        plugin.getServer().getAsyncScheduler().runAtFixedRate(plugin, scheduled -> task.run(),
+                Math.max(1, delayTicks) * MILLIS_PER_TICK, periodTicks * MILLIS_PER_TICK, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void runForEntity(Entity entity, Runnable task, Runnable retired, long delayTicks) {
+        if (delayTicks <= 0 && plugin.getServer().isOwnedByCurrentRegion(entity)) {
+            task.run();
+            return;
+        }
+        boolean scheduled = entity.getScheduler().execute(plugin, task, retired, Math.max(1, delayTicks));
+        if (!scheduled && retired != null) {
+            // Already removed: execute() rejects the task without calling retired
+            retired.run();
+        }
+    }
+
+    @Override
+    public void runAtChunk(World world, int chunkX, int chunkZ, Runnable task, long delayTicks) {
+        if (delayTicks <= 0 && plugin.getServer().isOwnedByCurrentRegion(world, chunkX, chunkZ)) {
+            task.run();
+        } else if (delayTicks <= 0) {
+            plugin.getServer().getRegionScheduler().execute(plugin, world, chunkX, chunkZ, task);
+        } else {
+            plugin.getServer().getRegionScheduler().runDelayed(plugin, world, chunkX, chunkZ,
+                    scheduled -> task.run(), delayTicks);
+        }
+    }
+
+    @Override
+    public void cancelAll() {
+        plugin.getServer().getGlobalRegionScheduler().cancelTasks(plugin);
+        plugin.getServer().getAsyncScheduler().cancelTasks(plugin);
+    }
+}
@@ -0,0 +1,65 @@
+package me.zeppy.maceControl;
+
+import java.nio.file.Path;
+
+/**
+ * Where the mace limit is enforced. Standalone servers count only their own
+ * maces; a network backend shares the limit between several servers.
+ * <p>
+ * Limit checks never wait on the backend: {@link #capacity} answers from what
+ * the last sync left behind, and syncs run on the backend's own thread.
+ */
+public interface GlobalLedger {
+
+    static GlobalLedger create(MaceControl plugin) {
+        String backend = plugin.getConfig().getString("network.backend", "none");
+        if (!"file".equalsIgnoreCase(backend)) {
+            if (!"none".equalsIgnoreCase(backend)) {
+                plugin.getLogger().warning("Unknown network.backend '" + backend + "', enforcing the limit per server");
+            }
+            return new StandaloneLedger();
+        }
+
+        String file = plugin.getConfig().getString("network.file", "");
+        if (file == null || file.isBlank()) {
+            plugin.getLogger().warning("network.backend is 'file' but network.file is not set, enforcing the limit per server");
+            return new StandaloneLedger();
+        }
+
+        String serverId = plugin.getConfig().getString("network.server-id", "");
+        if (serverId == null || serverId.isBlank()) {
+            // Each backend needs a stable name in the shared file
+            serverId = java.util.UUID.randomUUID().toString();
+            plugin.getConfig().set("network.server-id", serverId);
+            plugin.saveConfig();
+        }
+
+        Path path = plugin.getDataFolder().toPath().resolve(file);
+        MaceTracker tracker = MaceControl.getTracker();
+        return new FileGlobalLedger(path, serverId,
+                Math.max(1, plugin.getConfig().getInt("network.reserve-slots", 1)),
+                Math.max(5, plugin.getConfig().getLong("network.reservation-seconds", 30)) * 1000L,
+                Math.max(1, plugin.getConfig().getLong("network.sync-interval-seconds", 5)) * 1000L,
+                tracker::getSlotsInUse, () -> MaceControl.getManager().getMaxMaceCount(), plugin.getLogger());
+    }
+
+    /**
+     * How many maces (crafted or in the middle of being crafted) this server
+     * may have right now. Never blocks.
+     */
+    int capacity(int limit);
+
+    /**
+     * Maces across the whole network, given this server's current count
+     */
+    int networkCount(int localMaces);
+
+    /**
+     * Sync with the backend soon, e.g. after a craft used up a spare slot
+     */
+    void requestSync();
+
+    void start();
+
+    void close();
+}
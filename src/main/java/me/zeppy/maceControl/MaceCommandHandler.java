@@ -1,21 +1,55 @@
 package me.zeppy.maceControl;
 
-import org.bukkit.Bukkit;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
 import org.bukkit.ChatColor;
+import org.bukkit.Location;
 import org.bukkit.OfflinePlayer;
+import org.bukkit.World;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
-import java.util.HashMap;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class MaceCommandHandler implements CommandExecutor {
     private final MaceControl plugin;
-    private final Map<UUID, Long> maceCommandCooldowns = new HashMap<>();
+    private final Map<UUID, Long> maceCommandCooldowns = new ConcurrentHashMap<>();
+    // Token in the page links of each player's latest /mace listing; following one skips the cooldown once
+    private final Map<UUID, String> pageTokens = new ConcurrentHashMap<>();
+    // Listings are built off the main thread, a few at a time; a burst beyond the queue is turned away
+    private static final int LISTING_THREADS = 2;
+    private static final int LISTING_QUEUE = 32;
+    private final ThreadPoolExecutor listingExecutor = new ThreadPoolExecutor(LISTING_THREADS, LISTING_THREADS,
+            30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(LISTING_QUEUE), runnable -> {
+        Thread thread = new Thread(runnable, "MaceControl-Listings");
+        thread.setDaemon(true);
+        return thread;
+    });
     private long MACE_COMMAND_COOLDOWN;
+    // Census findings listed in chat; the full list goes to the console
+    private static final int CENSUS_LINES = 20;
+    // Most recent custody events listed by /mace history
+    private static final int HISTORY_LINES = 15;
+    private static final DateTimeFormatter HISTORY_TIME =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
 
     public Map<UUID, Long> getMaceCommandCooldowns() {
         return maceCommandCooldowns;
@@ -32,53 +66,151 @@ public class MaceCommandHandler implements CommandExecutor {
     public MaceCommandHandler(MaceControl plugin) {
         this.plugin = plugin;
         this.MACE_COMMAND_COOLDOWN = plugin.getConfig().getLong("mace-command-cooldown", 5);
+        listingExecutor.allowCoreThreadTimeOut(true);
     }
 
     private boolean hasPermission(CommandSender sender, String permission) {
         return sender.hasPermission(permission);
     }
 
+    private boolean isAdmin(CommandSender sender) {
+        if (sender instanceof Player player) {
+            return MaceControl.getPermissions().isAdmin(player);
+        }
+        return hasPermission(sender, MaceControl.getPolicy().adminPermission);
+    }
+
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        long start = System.nanoTime();
+        try {
+            return dispatch(sender, command, label, args);
+        } finally {
+            MaceControl.getMetrics().record("command." + command.getName().toLowerCase(Locale.ROOT), start);
+        }
+    }
+
+    private boolean dispatch(CommandSender sender, Command command, String label, String[] args) {
+        // Admin-only command: /macecontrol stats [reset]
+        if (command.getName().equalsIgnoreCase("macecontrol")) {
+            if (!isAdmin(sender)) {
+                sender.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
+                return true;
+            }
+            if (args.length == 0 || !args[0].equalsIgnoreCase("stats")) {
+                sender.sendMessage(ChatColor.RED + "Usage: /" + label + " stats [reset]");
+                return true;
+            }
+            if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+                MaceControl.getMetrics().reset();
+                sender.sendMessage(ChatColor.GREEN + "MaceControl stats reset.");
+                return true;
+            }
+            sendStats(sender);
+            return true;
+        }
+
         // Admin-only command: /droppedmace
         if (command.getName().equalsIgnoreCase("droppedmace")) {
-            if (!hasPermission(sender, plugin.getConfig().getString("admin-permission", "macecontrol.admin"))) {
+            if (!isAdmin(sender)) {
                 sender.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
                 return true;
             }
 
-            sender.sendMessage(ChatColor.AQUA + "[MaceAdmin] Currently dropped (temp) maces:");
+            if (args.length > 0 && args[0].equalsIgnoreCase("census")) {
+                startCensus(sender);
+                return true;
+            }
+            if (args.length > 0 && args[0].equalsIgnoreCase("tp")) {
+                teleportToDrop(sender, label, args);
+                return true;
+            }
 
-            // Use the new pending drops method
-            Map<UUID, MaceTracker.MaceDropInfo> pendingDrops = plugin.getTracker().getPendingDropsNew();
+            DroppedMaceIndex dropIndex = MaceControl.getDropIndex();
+            boolean near = args.length > 0 && args[0].equalsIgnoreCase("near");
+            MaceListings.Query query;
+            CompletableFuture<List<DroppedMaceIndex.IndexedDrop>> drops;
+            String title;
 
-            if (pendingDrops.isEmpty()) {
-                sender.sendMessage(ChatColor.GRAY + "- None");
-            } else {
-                for (Map.Entry<UUID, MaceTracker.MaceDropInfo> entry : pendingDrops.entrySet()) {
-                    UUID itemUUID = entry.getKey();
-                    MaceTracker.MaceDropInfo dropInfo = entry.getValue();
-                    String playerName = Bukkit.getOfflinePlayer(dropInfo.originalHolder).getName();
-                    long dropTime = dropInfo.dropTime;
-                    long timeElapsed = (System.currentTimeMillis() - dropTime) / 1000; // seconds
+            try {
+                if (near) {
+                    // /droppedmace near <radius> [options]
+                    if (!(sender instanceof Player player)) {
+                        sender.sendMessage(ChatColor.RED + "Only players can search for nearby maces.");
+                        return true;
+                    }
+                    String radiusArg = args.length > 1 ? args[1] : "100";
+                    double radius;
+                    try {
+                        radius = Double.parseDouble(radiusArg);
+                    } catch (NumberFormatException e) {
+                        sender.sendMessage(ChatColor.RED + "Usage: /" + label + " near <radius>");
+                        return true;
+                    }
+                    if (radius <= 0) {
+                        sender.sendMessage(ChatColor.RED + "Radius must be greater than 0.");
+                        return true;
+                    }
 
-                    sender.sendMessage(ChatColor.GRAY + "- Item: " + itemUUID +
-                            " | Dropped by: " + playerName +
-                            " | Mace ID: " + dropInfo.maceId +
-                            " | Time elapsed: " + timeElapsed + "s");
+                    query = MaceListings.parse("/" + label + " near " + radiusArg, args, 2,
+                            EnumSet.of(MaceListings.Sort.DISTANCE, MaceListings.Sort.AGE, MaceListings.Sort.HOLDER),
+                            false, this::resolvePlayer);
+                    drops = dropIndex.collectDropsNear(player.getLocation(), radius);
+                    title = "[MaceAdmin] Dropped maces within " + (int) radius + " blocks";
+                } else {
+                    query = MaceListings.parse("/" + label, args, 0,
+                            EnumSet.of(MaceListings.Sort.AGE, MaceListings.Sort.HOLDER, MaceListings.Sort.WORLD),
+                            true, this::resolvePlayer);
+                    drops = dropIndex.collectDrops();
+                    title = "[MaceAdmin] Currently dropped (temp) maces";
                 }
+            } catch (IllegalArgumentException e) {
+                sender.sendMessage(ChatColor.RED + e.getMessage());
+                sender.sendMessage(ChatColor.RED + "Usage: /" + label + (near ? " near <radius> [sort distance|age|holder]"
+                        : " [sort age|holder|world] [world <name>]") + " [player <name>] [page <n>]");
+                return true;
             }
+
+            // Live positions are read on each drop's own thread; the listing is built off the main thread
+            TrackerSnapshot snapshot = plugin.getTracker().snapshot();
+            MaceListings.Sort defaultSort = near ? MaceListings.Sort.DISTANCE : MaceListings.Sort.AGE;
+            boolean countUnloaded = !near && !query.isFiltered();
+            sendAsync(sender, "droppedmace", drops,
+                    found -> MaceListings.drops(title, found, snapshot, query, defaultSort, countUnloaded));
             return true;
         }
 
-        // Player-accessible command: /mace
+        // Player-accessible command: /mace [options]
         if (command.getName().equalsIgnoreCase("mace")) {
+            // Admin-only: /mace history <id> | /mace history player <name>
+            if (args.length > 0 && args[0].equalsIgnoreCase("history")) {
+                if (!isAdmin(sender)) {
+                    sender.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
+                    return true;
+                }
+                showHistory(sender, label, args);
+                return true;
+            }
+
+            MaceListings.Query query;
+            try {
+                query = MaceListings.parse("/" + label, args, 0,
+                        EnumSet.of(MaceListings.Sort.HOLDER, MaceListings.Sort.COUNT, MaceListings.Sort.AGE),
+                        false, this::resolvePlayer);
+            } catch (IllegalArgumentException e) {
+                sender.sendMessage(ChatColor.RED + e.getMessage());
+                sender.sendMessage(ChatColor.RED + "Usage: /" + label + " [sort holder|count|age] [player <name>] [page <n>]");
+                return true;
+            }
+
+            // Following a page link of the player's latest listing is not rate limited; typing a page is
             if (sender instanceof Player player) {
                 UUID uuid = player.getUniqueId();
                 long currentTime = System.currentTimeMillis();
                 long cooldownMillis = getMaceCommandCooldownMillis();
+                boolean pageLink = query.token != null && pageTokens.remove(uuid, query.token);
 
-                if (maceCommandCooldowns.containsKey(uuid)) {
+                if (!pageLink && maceCommandCooldowns.containsKey(uuid)) {
                     long lastUsed = maceCommandCooldowns.get(uuid);
                     if ((currentTime - lastUsed) < cooldownMillis) {
                         long secondsLeft = (cooldownMillis - (currentTime - lastUsed)) / 1000;
@@ -87,37 +219,294 @@ public class MaceCommandHandler implements CommandExecutor {
                     }
                 }
 
-                maceCommandCooldowns.put(uuid, currentTime);
+                if (!pageLink) {
+                    maceCommandCooldowns.put(uuid, currentTime);
+                }
+                query.token = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+                pageTokens.put(uuid, query.token);
+            }
+
+            // Holders come from the tracker snapshot (kept current by the event handlers)
+            TrackerSnapshot snapshot = plugin.getTracker().snapshot();
+            boolean admin = isAdmin(sender);
+            sendAsync(sender, "mace", () -> MaceListings.holders(snapshot, query, admin));
+            return true;
+        }
+
+        return false;
+    }
+
+    private void sendStats(CommandSender sender) {
+        MaceMetrics metrics = MaceControl.getMetrics();
+        long window = metrics.getWindowNanos();
+        long mainThreadNanos = 0;
+        List<MaceMetrics.Timer> timers = metrics.getTimers();
+        for (MaceMetrics.Timer timer : timers) {
+            if (!timer.name.startsWith("async.")) {
+                mainThreadNanos += timer.getTotalNanos();
             }
+        }
+
+        // Share of the 50ms tick budget, averaged over the window
+        double ticks = Math.max(1.0, window / 50_000_000.0);
+        double microsPerTick = mainThreadNanos / 1000.0 / ticks;
+        sender.sendMessage(ChatColor.AQUA + "[MaceAdmin] Stats over the last " + (window / 1_000_000_000L) + "s: "
+                + String.format(Locale.ROOT, "%.1f", microsPerTick) + "µs per tick on the main thread ("
+                + String.format(Locale.ROOT, "%.3f", microsPerTick / 500.0) + "% of 50ms)");
 
-            plugin.getTracker().refreshMaceTracking();
+        MaceJournal journal = MaceControl.getManager().getJournal();
+        if (journal.isFailed()) {
+            sender.sendMessage(ChatColor.RED + "Journal: writer failed, changes are only saved with snapshots");
+        } else {
+            long lastSync = journal.getLastSyncMillis();
+            sender.sendMessage(ChatColor.GRAY + "Journal: " + journal.unsyncedEntries() + " entries awaiting fsync"
+                    + (lastSync > 0 ? ", last fsync " + (System.currentTimeMillis() - lastSync) + "ms ago" : ""));
+        }
+        sender.sendMessage(ChatColor.GRAY + "name: count | p50 / p99 / max | total (µs)");
 
-            // Use thread-safe copy of holders
-            Map<UUID, Integer> currentHolders = plugin.getTracker().getCurrentHoldersCopy();
+        for (MaceMetrics.Timer timer : timers) {
+            long count = timer.getCount();
+            if (count == 0) continue;
+            sender.sendMessage(ChatColor.GRAY + "- " + timer.name + ": " + count + " | "
+                    + micros(timer.percentileNanos(0.5)) + " / " + micros(timer.percentileNanos(0.99)) + " / "
+                    + micros(timer.getMaxNanos()) + " | " + micros(timer.getTotalNanos()));
+        }
+    }
 
-            if (currentHolders.isEmpty()) {
-                sender.sendMessage(ChatColor.RED + "The mace is not currently held by anyone.");
-            } else {
-                StringBuilder holders = new StringBuilder();
-                for (Map.Entry<UUID, Integer> entry : currentHolders.entrySet()) {
-                    UUID uuid = entry.getKey();
-                    int count = entry.getValue();
-                    OfflinePlayer player = Bukkit.getOfflinePlayer(uuid);
-                    String name = player.getName() != null ? player.getName() : "Unknown Player";
-                    holders.append(name).append(" (").append(count).append("), ");
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1000.0);
+    }
+
+    // /droppedmace census: read every saved chunk off the main thread and report where maces are
+    private void startCensus(CommandSender sender) {
+        CompletableFuture<RegionCensus.Report> census = MaceControl.getCensus().start();
+        if (census == null) {
+            sender.sendMessage(ChatColor.RED + "A mace census is already running.");
+            return;
+        }
+
+        sender.sendMessage(ChatColor.AQUA + "[MaceAdmin] Census started, reading saved chunks of all worlds...");
+        census.whenComplete((report, error) -> {
+            if (!plugin.isEnabled()) return;
+            MaceControl.getScheduler().runFor(sender, () -> {
+                if (error != null) {
+                    sender.sendMessage(ChatColor.RED + "Mace census failed: " + error.getMessage());
+                    plugin.getLogger().severe("Mace census failed: " + error.getMessage());
+                    return;
                 }
+                sendCensusReport(sender, report);
+            });
+        });
+    }
+
+    private void sendCensusReport(CommandSender sender, RegionCensus.Report report) {
+        MaceTracker tracker = plugin.getTracker();
+        sender.sendMessage(ChatColor.AQUA + "[MaceAdmin] Census of " + report.chunks + " saved chunks in "
+                + report.regionFiles + " region files (" + report.durationMillis + "ms):");
+
+        if (report.findings.isEmpty()) {
+            sender.sendMessage(ChatColor.GRAY + "- No maces in saved chunks");
+        }
+        int shown = 0;
+        for (RegionCensus.Finding finding : report.findings) {
+            if (shown++ == CENSUS_LINES) {
+                sender.sendMessage(ChatColor.GRAY + "(" + (report.findings.size() - CENSUS_LINES) + " more, see console)");
+            }
+            String where = (finding.source == RegionCensus.Source.BLOCK_ENTITY ? "block" : "entity")
+                    + " at " + finding.world + " " + finding.x + ", " + finding.y + ", " + finding.z;
+            String line = "- " + where + " | Mace ID: " + finding.maceId
+                    + (tracker.getRecord(finding.maceId) == null ? " (untracked)" : "");
+            if (shown <= CENSUS_LINES) {
+                sender.sendMessage(ChatColor.GRAY + line);
+            }
+            plugin.getLogger().info("[Census] " + line);
+        }
+
+        String summary = report.findings.size() + " maces in " + report.chunks + " saved chunks of "
+                + report.regionFiles + " region files (" + report.durationMillis + "ms)";
+        if (report.failedChunks > 0 || report.lz4Chunks > 0 || report.unsupportedChunks > 0) {
+            String skipped = "Skipped " + report.failedChunks + " unreadable, " + report.lz4Chunks
+                    + " LZ4-compressed and " + report.unsupportedChunks + " otherwise compressed chunks;"
+                    + " maces in them were not counted.";
+            sender.sendMessage(ChatColor.YELLOW + skipped);
+            plugin.getLogger().warning("[Census] " + summary + ". " + skipped);
+        } else {
+            plugin.getLogger().info("[Census] " + summary);
+        }
+        sender.sendMessage(ChatColor.GRAY + "Loaded chunks may have changed since they were last saved.");
+    }
+
+    // Build the reply off the main thread and send it on the sender's thread
+    private void sendAsync(CommandSender sender, String name, Supplier<Component> build) {
+        sendAsync(sender, name, CompletableFuture.completedFuture(null), ignored -> build.get());
+    }
+
+    // As above, once {@code input} is ready
+    private <T> void sendAsync(CommandSender sender, String name, CompletableFuture<T> input,
+                               Function<T, Component> build) {
+        input.whenComplete((value, error) -> {
+            if (error != null) {
+                reply(sender, name, null, error);
+                return;
+            }
+            try {
+                listingExecutor.execute(() -> {
+                    long start = System.nanoTime();
+                    try {
+                        reply(sender, name, build.apply(value), null);
+                    } catch (RuntimeException e) {
+                        reply(sender, name, null, e);
+                    } finally {
+                        MaceControl.getMetrics().record("async.command." + name, start);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                reply(sender, name, Component.text("The server is busy listing maces, try again in a moment.",
+                        NamedTextColor.RED), null);
+            }
+        });
+    }
+
+    private void reply(CommandSender sender, String name, Component message, Throwable error) {
+        if (!plugin.isEnabled()) return;
+        MaceControl.getScheduler().runFor(sender, () -> {
+            if (error != null) {
+                sender.sendMessage(ChatColor.RED + "Could not list maces: " + error.getMessage());
+                plugin.getLogger().warning("Could not build /" + name + " output: " + error.getMessage());
+                return;
+            }
+            sender.sendMessage(message);
+        });
+    }
 
-                if (holders.length() > 2) {
-                    holders.setLength(holders.length() - 2);
+    /**
+     * Stop building listings; replies still queued are dropped
+     */
+    void shutdown() {
+        listingExecutor.shutdownNow();
+    }
+
+    // /droppedmace tp <id>: the target of the clickable positions in /droppedmace
+    private void teleportToDrop(CommandSender sender, String label, String[] args) {
+        if (!(sender instanceof Player player)) {
+            sender.sendMessage(ChatColor.RED + "Only players can teleport to a mace.");
+            return;
+        }
+        UUID maceId;
+        try {
+            maceId = args.length == 2 ? UUID.fromString(args[1]) : null;
+        } catch (IllegalArgumentException e) {
+            maceId = null;
+        }
+        if (maceId == null) {
+            sender.sendMessage(ChatColor.RED + "Usage: /" + label + " tp <mace id>");
+            return;
+        }
+
+        UUID target = maceId;
+        MaceControl.getDropIndex().findDrop(target).whenComplete((drop, error) -> {
+            if (!plugin.isEnabled()) return;
+            // Back on the player's own thread to move them
+            MaceControl.getScheduler().runFor(player, () -> {
+                World world = drop != null ? plugin.getServer().getWorld(drop.worldId) : null;
+                if (world == null) {
+                    player.sendMessage(ChatColor.RED + "That mace is not lying in a loaded chunk.");
+                    return;
                 }
+                player.teleportAsync(new Location(world, drop.x, drop.y, drop.z));
+                player.sendMessage(ChatColor.GREEN + "Teleporting to Mace " + target + ".");
+            });
+        });
+    }
+
+    // Custody events are read on the history thread; the reply is sent back on the sender's thread
+    private void showHistory(CommandSender sender, String label, String[] args) {
+        CustodyHistory history = MaceControl.getHistory();
+        CompletableFuture<List<CustodyHistory.Event>> events;
+        String subject;
+        boolean byPlayer;
 
-                sender.sendMessage(ChatColor.GREEN + "The mace is currently held by: " + holders);
+        if (args.length == 3 && args[1].equalsIgnoreCase("player")) {
+            UUID playerId = resolvePlayer(args[2]);
+            if (playerId == null) {
+                sender.sendMessage(ChatColor.RED + "Unknown player: " + args[2]);
+                return;
+            }
+            events = history.forPlayer(playerId, HISTORY_LINES);
+            subject = "player " + args[2];
+            byPlayer = true;
+        } else if (args.length == 2) {
+            UUID maceId;
+            try {
+                maceId = UUID.fromString(args[1]);
+            } catch (IllegalArgumentException e) {
+                sender.sendMessage(ChatColor.RED + "Invalid Mace ID: " + args[1]);
+                return;
             }
+            events = history.forMace(maceId, HISTORY_LINES);
+            subject = "Mace ID " + maceId;
+            byPlayer = false;
+        } else {
+            sender.sendMessage(ChatColor.RED + "Usage: /" + label + " history <mace id> | history player <name>");
+            return;
+        }
 
-            return true;
+        events.whenComplete((found, error) -> {
+            if (!plugin.isEnabled()) return;
+            MaceControl.getScheduler().runFor(sender, () -> {
+                if (error != null) {
+                    sender.sendMessage(ChatColor.RED + "Could not read custody history: " + error.getMessage());
+                    plugin.getLogger().warning("Could not read custody history: " + error.getMessage());
+                    return;
+                }
+                sendHistory(sender, subject, found, byPlayer);
+            });
+        });
+    }
+
+    private void sendHistory(CommandSender sender, String subject, List<CustodyHistory.Event> events, boolean byPlayer) {
+        sender.sendMessage(ChatColor.AQUA + "[MaceAdmin] Custody history of " + subject
+                + (events.size() == HISTORY_LINES ? " (last " + HISTORY_LINES + " events)" : "") + ":");
+        if (events.isEmpty()) {
+            sender.sendMessage(ChatColor.GRAY + "- No recorded events");
+            return;
         }
 
-        return false;
+        for (CustodyHistory.Event event : events) {
+            StringBuilder line = new StringBuilder("- ").append(HISTORY_TIME.format(Instant.ofEpochMilli(event.timestamp)))
+                    .append(" | ").append(event.type);
+            // Death drops and despawns already say what the detail would
+            if (event.detail != null && event.type != CustodyHistory.Type.DEATH_DROP
+                    && event.type != CustodyHistory.Type.DESPAWN) {
+                line.append(" (").append(event.detail).append(')');
+            }
+            line.append(" | ").append(event.playerId != null ? MaceControl.getNames().name(event.playerId) : "No player");
+            if (event.world != null) {
+                line.append(" | ").append(event.world).append(' ')
+                        .append(event.x).append(", ").append(event.y).append(", ").append(event.z);
+            }
+            if (byPlayer) {
+                line.append(" | Mace ID: ").append(event.maceId);
+            }
+            sender.sendMessage(ChatColor.GRAY + line.toString());
+        }
+    }
+
+    // Online players first, then the server's profile cache; a UUID is accepted as is
+    private UUID resolvePlayer(String name) {
+        Player online = plugin.getServer().getPlayerExact(name);
+        if (online != null) {
+            return online.getUniqueId();
+        }
+        OfflinePlayer cached = plugin.getServer().getOfflinePlayerIfCached(name);
+        if (cached != null) {
+            return cached.getUniqueId();
+        }
+        try {
+            return UUID.fromString(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
     }
 
     private long getMaceCommandCooldownMillis() {
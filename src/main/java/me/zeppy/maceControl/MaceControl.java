@@ -13,6 +13,18 @@ public final class MaceControl extends JavaPlugin implements Listener {
     private static MaceManager manager;
     private static MaceEventHandler eventHandler;
     private static MaceCommandHandler commandHandler;
+    private static DroppedMaceScanner scanner;
+    private static DroppedMaceIndex dropIndex;
+    private static volatile RestrictionPolicy policy;
+    private static PermissionCache permissions;
+    private static AuditLog audit;
+    private static CustodyHistory history;
+    private static NameCache names;
+    private static OfflineInventoryAuditor offlineAuditor;
+    private static RegionCensus census;
+    private static MaceMetrics metrics;
+    private static MaceScheduler scheduler;
+    private static GlobalLedger ledger;
 
     public static NamespacedKey MACE_ID_KEY;
 
@@ -39,23 +51,99 @@ public final class MaceControl extends JavaPlugin implements Listener {
         return commandHandler;
     }
 
+    public static DroppedMaceScanner getScanner() {
+        return scanner;
+    }
+
+    public static DroppedMaceIndex getDropIndex() {
+        return dropIndex;
+    }
+
+    public static PermissionCache getPermissions() {
+        return permissions;
+    }
+
+    public static MaceMetrics getMetrics() {
+        return metrics;
+    }
+
+    public static RegionCensus getCensus() {
+        return census;
+    }
+
+    public static OfflineInventoryAuditor getOfflineAuditor() {
+        return offlineAuditor;
+    }
+
+    public static NameCache getNames() {
+        return names;
+    }
+
+    public static GlobalLedger getLedger() {
+        return ledger;
+    }
+
+    public static MaceScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public static AuditLog getAudit() {
+        return audit;
+    }
+
+    public static CustodyHistory getHistory() {
+        return history;
+    }
+
+    public static RestrictionPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Rebuild the restriction policy from the current config and loaded worlds
+     */
+    void compilePolicy() {
+        policy = RestrictionPolicy.compile(getConfig(), getServer().getWorlds());
+    }
+
     @Override
     public void onEnable() {
         instance = this;
         MACE_ID_KEY = new NamespacedKey(this, "mace_id");
+        scheduler = MaceScheduler.create(this);
+        if (scheduler.isRegionized()) {
+            getLogger().info("Running on Folia: scans are dispatched to region and entity schedulers.");
+        }
 
 
         saveDefaultConfig();
         validateConfig();
+        compilePolicy();
+        permissions = new PermissionCache(this);
+        metrics = new MaceMetrics(this);
+        names = new NameCache(this);
+        names.loadUserCache();
+        for (org.bukkit.entity.Player online : getServer().getOnlinePlayers()) {
+            names.remember(online);
+        }
+        audit = new AuditLog(this);
+        audit.start();
+        history = new CustodyHistory(this);
+        history.start();
 
         try {
             // Initialize
             tracker = new MaceTracker(this);
             manager = new MaceManager(this);
+            dropIndex = new DroppedMaceIndex();
             eventHandler = new MaceEventHandler(this);
             commandHandler = new MaceCommandHandler(this);
+            scanner = new DroppedMaceScanner(this);
+            offlineAuditor = new OfflineInventoryAuditor(this);
+            census = new RegionCensus(this);
 
-            getServer().getPluginManager().registerEvents(eventHandler, this);
+            // Each handler is timed for /macecontrol stats
+            metrics.registerTimed(eventHandler);
 
             // Register commands
             if (getCommand("mace") != null) {
@@ -70,6 +158,12 @@ public final class MaceControl extends JavaPlugin implements Listener {
                 getLogger().warning("Command 'droppedmace' not found in plugin.yml");
             }
 
+            if (getCommand("macecontrol") != null) {
+                getCommand("macecontrol").setExecutor(commandHandler);
+            } else {
+                getLogger().warning("Command 'macecontrol' not found in plugin.yml");
+            }
+
             if (getCommand("macereload") != null) {
                 getCommand("macereload").setExecutor(this);
             } else {
@@ -78,6 +172,15 @@ public final class MaceControl extends JavaPlugin implements Listener {
 
 
             manager.loadMaceData();
+            ledger = GlobalLedger.create(this);
+            ledger.start();
+            MaceMetrics.Timer scannerTimer = metrics.timer("task.scanner");
+            scheduler.runGlobalTimer(() -> {
+                long start = System.nanoTime();
+                scanner.run();
+                scannerTimer.record(start);
+            }, 1L, 1L);
+            startMetricsExport();
             tracker.refreshMaceTracking();
 
             getLogger().info("MaceControl Enabled! Total maces: "
@@ -89,14 +192,14 @@ public final class MaceControl extends JavaPlugin implements Listener {
             long saveIntervalMinutes = getConfig().getLong("auto-save-interval-minutes", DEFAULT_SAVE_INTERVAL_MINUTES);
             long saveIntervalTicks = saveIntervalMinutes * 60 * 20;
 
-            getServer().getScheduler().runTaskTimer(this, () -> {
-                try {
-                    manager.saveMaceData();
+            // Snapshot is taken on the global thread, serialization and disk I/O run on the save thread
+            scheduler.runGlobalTimer(() -> manager.saveMaceDataAsync(false).whenComplete((saved, error) -> {
+                if (error != null) {
+                    getLogger().severe("Failed to autosave mace data: " + error.getMessage());
+                } else if (saved) {
                     getLogger().info("Autosaved mace data.");
-                } catch (Exception e) {
-                    getLogger().severe("Failed to autosave mace data: " + e.getMessage());
                 }
-            }, saveIntervalTicks, saveIntervalTicks);
+            }), saveIntervalTicks, saveIntervalTicks);
 
         } catch (Exception e) {
             getLogger().severe("Failed to enable MaceControl: " + e.getMessage());
@@ -105,11 +208,48 @@ public final class MaceControl extends JavaPlugin implements Listener {
         }
     }
 
+    // Periodically write the timers for node_exporter's textfile collector, if configured
+    private void startMetricsExport() {
+        String file = getConfig().getString("metrics.prometheus-file", "");
+        if (file == null || file.isBlank()) return;
+
+        java.nio.file.Path path = getDataFolder().toPath().resolve(file);
+        long intervalTicks = Math.max(1, getConfig().getLong("metrics.export-interval-seconds", 30)) * 20;
+        scheduler.runAsyncTimer(() -> {
+            try {
+                metrics.exportPrometheus(path);
+            } catch (java.io.IOException e) {
+                getLogger().warning("Failed to export metrics to " + path + ": " + e.getMessage());
+            }
+        }, intervalTicks, intervalTicks);
+    }
+
     @Override
     public void onDisable() {
         try {
+            if (scheduler != null) {
+                scheduler.cancelAll();
+            }
+            if (commandHandler != null) {
+                commandHandler.shutdown();
+            }
             if (manager != null) {
-                manager.saveMaceData();
+                manager.shutdown();
+            }
+            if (ledger != null) {
+                ledger.close();
+            }
+            if (audit != null) {
+                audit.close();
+            }
+            if (history != null) {
+                history.close();
+            }
+            if (names != null) {
+                names.shutdown();
+            }
+            if (offlineAuditor != null) {
+                offlineAuditor.shutdown();
             }
             getLogger().info("MaceControl Disabled!");
         } catch (Exception e) {
@@ -120,25 +260,39 @@ public final class MaceControl extends JavaPlugin implements Listener {
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
         if (command.getName().equalsIgnoreCase("macereload")) {
-            if (!sender.hasPermission(getConfig().getString("admin-permission", DEFAULT_ADMIN_PERMISSION))) {
-                sender.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
-                return true;
-            }
-
+            long start = System.nanoTime();
             try {
-                reloadConfig();
-                manager.reloadConfig();
-                sender.sendMessage(ChatColor.GREEN + "MaceControl configuration reloaded!");
-                getLogger().info("Configuration reloaded by " + sender.getName());
-            } catch (Exception e) {
-                sender.sendMessage(ChatColor.RED + "Error reloading configuration: " + e.getMessage());
-                getLogger().severe("Error reloading configuration: " + e.getMessage());
+                reloadCommand(sender);
+            } finally {
+                metrics.record("command.macereload", start);
             }
             return true;
         }
         return false;
     }
 
+    private void reloadCommand(CommandSender sender) {
+        if (!sender.hasPermission(policy.adminPermission)) {
+            sender.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
+            return;
+        }
+
+        try {
+            reloadConfig();
+            manager.reloadConfig();
+            scanner.reloadConfig();
+            compilePolicy();
+            permissions.reloadConfig();
+            audit.reloadConfig();
+            tracker.refreshMaceTracking();
+            sender.sendMessage(ChatColor.GREEN + "MaceControl configuration reloaded!");
+            getLogger().info("Configuration reloaded by " + sender.getName());
+        } catch (Exception e) {
+            sender.sendMessage(ChatColor.RED + "Error reloading configuration: " + e.getMessage());
+            getLogger().severe("Error reloading configuration: " + e.getMessage());
+        }
+    }
+
     private void validateConfig() {
         boolean configChanged = false;
 
@@ -166,6 +320,114 @@ public final class MaceControl extends JavaPlugin implements Listener {
             configChanged = true;
         }
 
+        // Dropped mace scanner
+        if (!getConfig().contains("performance.scan-chunks-per-tick")) {
+            getConfig().set("performance.scan-chunks-per-tick", 50);
+            configChanged = true;
+        }
+        if (!getConfig().contains("performance.scan-budget-micros")) {
+            getConfig().set("performance.scan-budget-micros", 500);
+            configChanged = true;
+        }
+        if (!getConfig().contains("performance.scan-sweep-interval-minutes")) {
+            getConfig().set("performance.scan-sweep-interval-minutes", 10);
+            configChanged = true;
+        }
+        if (!getConfig().contains("performance.permission-cache-seconds")) {
+            getConfig().set("performance.permission-cache-seconds", 30);
+            configChanged = true;
+        }
+        if (!getConfig().contains("performance.name-cache-size")) {
+            getConfig().set("performance.name-cache-size", 1000);
+            configChanged = true;
+        }
+        if (!getConfig().contains("performance.offline-scan-threads")) {
+            getConfig().set("performance.offline-scan-threads", 2);
+            configChanged = true;
+        }
+        if (!getConfig().contains("performance.census-threads")) {
+            getConfig().set("performance.census-threads", 2);
+            configChanged = true;
+        }
+
+        // Audit log
+        if (!getConfig().contains("audit.enabled")) {
+            getConfig().set("audit.enabled", true);
+            configChanged = true;
+        }
+        if (!getConfig().contains("audit.console")) {
+            getConfig().set("audit.console", "summary");
+            configChanged = true;
+        }
+        if (!getConfig().contains("audit.flush-interval-ms")) {
+            getConfig().set("audit.flush-interval-ms", 1000);
+            configChanged = true;
+        }
+        if (!getConfig().contains("audit.buffer-size")) {
+            getConfig().set("audit.buffer-size", 8192);
+            configChanged = true;
+        }
+        if (!getConfig().contains("audit.max-file-size-mb")) {
+            getConfig().set("audit.max-file-size-mb", 16);
+            configChanged = true;
+        }
+
+        // Metrics export
+        if (!getConfig().contains("metrics.prometheus-file")) {
+            getConfig().set("metrics.prometheus-file", "");
+            configChanged = true;
+        }
+        if (!getConfig().contains("metrics.export-interval-seconds")) {
+            getConfig().set("metrics.export-interval-seconds", 30);
+            configChanged = true;
+        }
+
+        // Network ledger
+        if (!getConfig().contains("network.backend")) {
+            getConfig().set("network.backend", "none");
+            configChanged = true;
+        }
+        if (!getConfig().contains("network.file")) {
+            getConfig().set("network.file", "");
+            configChanged = true;
+        }
+        if (!getConfig().contains("network.server-id")) {
+            getConfig().set("network.server-id", "");
+            configChanged = true;
+        }
+        if (!getConfig().contains("network.reserve-slots")) {
+            getConfig().set("network.reserve-slots", 1);
+            configChanged = true;
+        }
+        if (!getConfig().contains("network.reservation-seconds")) {
+            getConfig().set("network.reservation-seconds", 30);
+            configChanged = true;
+        }
+        if (!getConfig().contains("network.sync-interval-seconds")) {
+            getConfig().set("network.sync-interval-seconds", 5);
+            configChanged = true;
+        }
+
+        // Custody history
+        if (!getConfig().contains("history.enabled")) {
+            getConfig().set("history.enabled", true);
+            configChanged = true;
+        }
+        if (!getConfig().contains("history.segment-size-mb")) {
+            getConfig().set("history.segment-size-mb", 4);
+            configChanged = true;
+        }
+
+        // Storage
+        if (!getConfig().contains("storage.backend")) {
+            getConfig().set("storage.backend", "file");
+            configChanged = true;
+        }
+        if (!getConfig().contains("storage.sqlite-file")) {
+            getConfig().set("storage.sqlite-file", "maces.db");
+            configChanged = true;
+        }
+
         // World restrictions
         if (!getConfig().contains("worlds.allowed-craft-worlds")) {
             getConfig().set("worlds.allowed-craft-worlds", new ArrayList<String>());
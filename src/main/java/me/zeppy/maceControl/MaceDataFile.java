@@ -0,0 +1,263 @@
+package me.zeppy.maceControl;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned binary format for maceData.dat.
+ * <pre>
+ * header:  int magic, short version, short sectionCount
+ * section: int type, int length, byte[length] payload, int crc32(payload)
+ * </pre>
+ * Mace records are fixed width (57 bytes) so load and save cost grow only with
+ * the number of live maces. Crafted maces also get a 40-byte entry in the
+ * provenance section (crafter and craft time), which readers that predate it
+ * skip. Every save keeps the previous file as a fallback generation in case
+ * the newest one turns out to be corrupt.
+ */
+final class MaceDataFile {
+    private static final int MAGIC = 0x4D434454; // "MCDT"
+    private static final short VERSION = 1;
+
+    private static final int SECTION_META = 1;
+    private static final int SECTION_MACES = 2;
+    private static final int SECTION_PROVENANCE = 3;
+
+    private static final int RECORD_SIZE = 16 + 16 + 16 + 8 + 1;
+    private static final int FLAG_HOLDER = 1;
+    private static final int FLAG_ITEM_ENTITY = 2;
+    private static final int PROVENANCE_SIZE = 16 + 16 + 8;
+
+    static final class Contents {
+        final long journalSegment;
+        final List<MaceTracker.MaceRecord> records;
+
+        Contents(long journalSegment, List<MaceTracker.MaceRecord> records) {
+            this.journalSegment = journalSegment;
+            this.records = records;
+        }
+    }
+
+    private MaceDataFile() {
+    }
+
+    static Path previousGeneration(Path file) {
+        return file.resolveSibling(file.getFileName() + ".prev");
+    }
+
+    /**
+     * Write the snapshot next to {@code file}, fsync it, keep the current file
+     * as the previous generation and move the new one into place.
+     */
+    static void write(Path file, TrackerSnapshot snapshot, long journalSegment) throws IOException {
+        ByteArrayOutputStream meta = new ByteArrayOutputStream();
+        DataOutputStream metaOut = new DataOutputStream(meta);
+        metaOut.writeLong(System.currentTimeMillis());
+        metaOut.writeLong(journalSegment);
+
+        List<MaceTracker.MaceRecord> records = new ArrayList<>(snapshot.getRecords());
+        ByteBuffer maces = ByteBuffer.allocate(4 + records.size() * RECORD_SIZE);
+        maces.putInt(records.size());
+        for (MaceTracker.MaceRecord record : records) {
+            UUID maceId = record.maceId;
+            int flags = record.location.ordinal() << 2;
+            if (record.holder != null) flags |= FLAG_HOLDER;
+            if (record.itemEntityId != null) flags |= FLAG_ITEM_ENTITY;
+
+            maces.putLong(maceId.getMostSignificantBits()).putLong(maceId.getLeastSignificantBits());
+            putUuid(maces, record.holder);
+            putUuid(maces, record.itemEntityId);
+            maces.putLong(record.lastSeen);
+            maces.put((byte) flags);
+        }
+
+        List<MaceTracker.MaceRecord> crafted = new ArrayList<>();
+        for (MaceTracker.MaceRecord record : records) {
+            if (record.creator != null) crafted.add(record);
+        }
+        ByteBuffer provenance = ByteBuffer.allocate(4 + crafted.size() * PROVENANCE_SIZE);
+        provenance.putInt(crafted.size());
+        for (MaceTracker.MaceRecord record : crafted) {
+            provenance.putLong(record.maceId.getMostSignificantBits()).putLong(record.maceId.getLeastSignificantBits());
+            putUuid(provenance, record.creator);
+            provenance.putLong(record.createdAt);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + maces.capacity());
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(3);
+        writeSection(out, SECTION_META, meta.toByteArray());
+        writeSection(out, SECTION_MACES, maces.array());
+        writeSection(out, SECTION_PROVENANCE, provenance.array());
+
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+
+        if (Files.exists(file)) {
+            move(file, previousGeneration(file));
+        }
+        move(tempFile, file);
+    }
+
+    /**
+     * Read and verify a data file. Throws if the header or any section checksum is wrong.
+     */
+    static Contents read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a MaceControl data file");
+            }
+            short version = in.readShort();
+            if (version != VERSION) {
+                throw new IOException("unsupported data file version " + version);
+            }
+
+            long journalSegment = 0;
+            List<MaceTracker.MaceRecord> records = null;
+            ByteBuffer provenance = null;
+
+            int sectionCount = in.readUnsignedShort();
+            for (int i = 0; i < sectionCount; i++) {
+                int type = in.readInt();
+                byte[] payload = readSection(in);
+                ByteBuffer buffer = ByteBuffer.wrap(payload);
+
+                if (type == SECTION_META) {
+                    buffer.getLong(); // saved at
+                    journalSegment = buffer.getLong();
+                } else if (type == SECTION_MACES) {
+                    records = readMaces(buffer);
+                } else if (type == SECTION_PROVENANCE) {
+                    provenance = buffer;
+                }
+                // Unknown sections from newer minor revisions are skipped
+            }
+
+            if (records == null) {
+                throw new IOException("data file has no mace section");
+            }
+            if (provenance != null) {
+                applyProvenance(records, provenance);
+            }
+            return new Contents(journalSegment, records);
+        } catch (EOFException e) {
+            throw new IOException("data file is truncated", e);
+        }
+    }
+
+    private static List<MaceTracker.MaceRecord> readMaces(ByteBuffer buffer) throws IOException {
+        int count = buffer.getInt();
+        if (count < 0 || buffer.remaining() != count * RECORD_SIZE) {
+            throw new IOException("mace section size does not match its record count");
+        }
+
+        MaceTracker.MaceLocation[] locations = MaceTracker.MaceLocation.values();
+        List<MaceTracker.MaceRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            UUID maceId = new UUID(buffer.getLong(), buffer.getLong());
+            UUID holder = getUuid(buffer);
+            UUID itemEntityId = getUuid(buffer);
+            long lastSeen = buffer.getLong();
+            int flags = buffer.get() & 0xFF;
+
+            int location = flags >>> 2;
+            if (location >= locations.length) {
+                throw new IOException("unknown mace location " + location);
+            }
+            records.add(new MaceTracker.MaceRecord(maceId,
+                    (flags & FLAG_HOLDER) != 0 ? holder : null,
+                    locations[location],
+                    (flags & FLAG_ITEM_ENTITY) != 0 ? itemEntityId : null,
+                    lastSeen));
+        }
+        return records;
+    }
+
+    private static void applyProvenance(List<MaceTracker.MaceRecord> records, ByteBuffer buffer) throws IOException {
+        int count = buffer.getInt();
+        if (count < 0 || buffer.remaining() != count * PROVENANCE_SIZE) {
+            throw new IOException("provenance section size does not match its entry count");
+        }
+
+        Map<UUID, Integer> positions = new HashMap<>(records.size() * 2);
+        for (int i = 0; i < records.size(); i++) {
+            positions.put(records.get(i).maceId, i);
+        }
+        for (int i = 0; i < count; i++) {
+            UUID maceId = new UUID(buffer.getLong(), buffer.getLong());
+            UUID creator = getUuid(buffer);
+            long createdAt = buffer.getLong();
+
+            Integer position = positions.get(maceId);
+            if (position == null) {
+                throw new IOException("provenance for unknown mace " + maceId);
+            }
+            MaceTracker.MaceRecord record = records.get(position);
+            records.set(position, new MaceTracker.MaceRecord(record.maceId, record.holder, record.location,
+                    record.itemEntityId, record.lastSeen, creator, createdAt));
+        }
+    }
+
+    private static void writeSection(DataOutputStream out, int type, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        out.writeInt(type);
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static byte[] readSection(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > 64 * 1024 * 1024) {
+            throw new IOException("corrupt section length " + length);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != in.readInt()) {
+            throw new IOException("section checksum mismatch");
+        }
+        return payload;
+    }
+
+    private static void putUuid(ByteBuffer buffer, UUID uuid) {
+        buffer.putLong(uuid != null ? uuid.getMostSignificantBits() : 0L);
+        buffer.putLong(uuid != null ? uuid.getLeastSignificantBits() : 0L);
+    }
+
+    private static UUID getUuid(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
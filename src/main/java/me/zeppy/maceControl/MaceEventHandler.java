@@ -1,118 +1,191 @@
 package me.zeppy.maceControl;
 
 import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
 import org.bukkit.ChatColor;
 import org.bukkit.Material;
 import org.bukkit.entity.ArmorStand;
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.Item;
 import org.bukkit.entity.ItemFrame;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.EntityDamageEvent;
 import org.bukkit.event.entity.EntityPickupItemEvent;
 import org.bukkit.event.entity.EntityRemoveEvent;
+import org.bukkit.event.entity.ItemSpawnEvent;
 import org.bukkit.event.entity.PlayerDeathEvent;
 import org.bukkit.event.inventory.*;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerCommandSendEvent;
 import org.bukkit.event.player.PlayerDropItemEvent;
 import org.bukkit.event.player.PlayerInteractAtEntityEvent;
 import org.bukkit.event.player.PlayerInteractEntityEvent;
 import org.bukkit.event.player.PlayerItemDamageEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.world.EntitiesLoadEvent;
+import org.bukkit.event.world.EntitiesUnloadEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 import org.bukkit.inventory.*;
-import org.bukkit.inventory.BlockInventoryHolder;
-import org.bukkit.inventory.meta.BundleMeta;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.event.block.Action;
 import org.bukkit.block.Block;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MaceEventHandler implements Listener {
     private final MaceControl plugin;
     private final MaceManager manager;
     private final MaceTracker tracker;
+    private final DroppedMaceIndex dropIndex;
 
     public MaceEventHandler(MaceControl plugin) {
         this.plugin = plugin;
         this.manager = plugin.getManager();
         this.tracker = plugin.getTracker();
+        this.dropIndex = MaceControl.getDropIndex();
     }
 
     // Helper methods
     private boolean isUniqueMace(ItemStack item) {
-        return manager.isUniqueMace(item);
+        return MaceInspector.isMace(item);
     }
 
-    private String getMaceID(ItemStack item) {
-        return MaceManager.getMaceID(item);
+    private UUID getMaceID(ItemStack item) {
+        return MaceInspector.maceId(item);
     }
 
-    private boolean hasPermission(Player player, String permission) {
-        return player.hasPermission(permission);
+    // Compiled restrictions; swapped as a whole on reload
+    private RestrictionPolicy policy() {
+        return MaceControl.getPolicy();
     }
 
-    private boolean isWorldAllowed(String worldName) {
-        List<String> allowedWorlds = plugin.getConfig().getStringList("worlds.allowed-craft-worlds");
-        List<String> restrictedWorlds = plugin.getConfig().getStringList("worlds.restricted-worlds");
+    // Maces counted against the limit: the whole network's when a shared ledger is configured
+    private int maceTotal() {
+        return MaceControl.getLedger().networkCount(tracker.getMaceCount());
+    }
+
+    private boolean hasBypass(Player player) {
+        return MaceControl.getPermissions().hasBypass(player);
+    }
+
+    private boolean isHeavyCore(ItemStack item) {
+        return item != null && item.getType() == Material.HEAVY_CORE;
+    }
+
+    // Checking the type avoids the block state snapshot getHolder() takes
+    private boolean isAutoCrafter(Inventory inventory) {
+        return inventory != null && inventory.getType() == InventoryType.CRAFTER;
+    }
+
+    // What an inventory stack means to the restrictions, decided by Material alone
+    private enum StackKind {
+        OTHER(false),
+        MACE(true),
+        HEAVY_CORE(true),
+        BUNDLE(false);
 
-        if (!allowedWorlds.isEmpty() && !allowedWorlds.contains(worldName)) {
-            return false;
+        // Whether clicks involving this kind can be restricted at all
+        final boolean guarded;
+
+        StackKind(boolean guarded) {
+            this.guarded = guarded;
         }
+    }
+
+    // Plain and dyed bundles
+    private static final Set<Material> BUNDLES = EnumSet.noneOf(Material.class);
 
-        if (!restrictedWorlds.isEmpty() && restrictedWorlds.contains(worldName)) {
-            return false;
+    static {
+        for (Material material : Material.values()) {
+            if (material.name().endsWith("BUNDLE")) {
+                BUNDLES.add(material);
+            }
         }
+    }
 
-        return true;
+    private static StackKind classify(ItemStack item) {
+        if (item == null) return StackKind.OTHER;
+        Material type = item.getType();
+        if (type == Material.MACE) return StackKind.MACE;
+        if (type == Material.HEAVY_CORE) return StackKind.HEAVY_CORE;
+        if (BUNDLES.contains(type)) return StackKind.BUNDLE;
+        return StackKind.OTHER;
     }
 
-    private boolean isRestrictionEnabled(String restriction) {
-        return plugin.getConfig().getBoolean("restrictions." + restriction, true);
+    private boolean isBundle(ItemStack item) {
+        return item != null && BUNDLES.contains(item.getType());
     }
 
-    private boolean isBlockedContainer(InventoryType type) {
-        if (!isRestrictionEnabled("block-containers")) return false;
+    // Bundle presence of the inventory a player is shift-clicking into, kept
+    // until they open or close an inventory or a bundle moves anywhere
+    private static final class BundlePresence {
+        final Inventory inventory;
+        final boolean hasBundle;
 
-        boolean allowEnderChest = plugin.getConfig().getBoolean("restrictions.allow-ender-chest", false);
-        boolean allowShulkerBoxes = plugin.getConfig().getBoolean("restrictions.allow-shulker-boxes", false);
+        BundlePresence(Inventory inventory, boolean hasBundle) {
+            this.inventory = inventory;
+            this.hasBundle = hasBundle;
+        }
+    }
 
-        if (type == InventoryType.ENDER_CHEST && allowEnderChest) return false;
-        if (type == InventoryType.SHULKER_BOX && allowShulkerBoxes) return false;
+    private final Map<UUID, BundlePresence> bundleCache = new ConcurrentHashMap<>();
 
-        return type != InventoryType.PLAYER
-                && type != InventoryType.ANVIL
-                && type != InventoryType.GRINDSTONE
-                && type != InventoryType.ENCHANTING;
+    // Slot lease taken in onCraft, handed to onCraftComplete for the same click
+    private final Map<UUID, MaceTracker.SlotLease> craftLeases = new ConcurrentHashMap<>();
+    // Crafts already counted in the ledger, waiting a tick to see where the result went, by mace ID
+    private final Map<UUID, MaceTracker.SlotLease> pendingCrafts = new ConcurrentHashMap<>();
+
+    private boolean containsBundle(Player player, Inventory inventory) {
+        BundlePresence cached = bundleCache.get(player.getUniqueId());
+        if (cached != null && cached.inventory == inventory) {
+            return cached.hasBundle;
+        }
+
+        boolean hasBundle = false;
+        for (ItemStack item : inventory.getContents()) {
+            if (isBundle(item)) {
+                hasBundle = true;
+                break;
+            }
+        }
+        bundleCache.put(player.getUniqueId(), new BundlePresence(inventory, hasBundle));
+        return hasBundle;
     }
 
-    private boolean isHeavyCore(ItemStack item) {
-        return item != null && item.getType() == Material.HEAVY_CORE;
+    // Pickups, chunk unloads and merges remove the entity but not the mace itself
+    private boolean isDestructiveRemoval(EntityRemoveEvent.Cause cause) {
+        return switch (cause) {
+            case DEATH, DESPAWN, EXPLODE, OUT_OF_WORLD -> true;
+            default -> false;
+        };
     }
 
-    private boolean isAutoCrafter(Inventory inventory) {
-        if (inventory == null) return false;
-        InventoryHolder holder = inventory.getHolder();
-        if (holder instanceof BlockInventoryHolder) {
-            BlockInventoryHolder blockHolder = (BlockInventoryHolder) holder;
-            Material blockType = blockHolder.getBlock().getType();
-            return blockType == Material.CRAFTER;
+    private void indexIfMace(Entity entity) {
+        if (entity instanceof Item item) {
+            UUID maceId = getMaceID(item.getItemStack());
+            if (maceId != null) {
+                MaceManager.migrateMaceId(item);
+                dropIndex.add(item, maceId);
+            }
         }
-        return false;
     }
 
-    private boolean isBundle(ItemStack item) {
-        return item != null &&
-                item.getType() == Material.BUNDLE &&
-                item.getItemMeta() instanceof BundleMeta;
+    private void audit(AuditLog.Type type, UUID maceId, UUID playerId, Location location, String detail) {
+        MaceControl.getAudit().record(type, maceId, playerId, location, detail);
+        MaceControl.getHistory().record(CustodyHistory.Type.of(type, detail), maceId, playerId, location, detail);
     }
 
     private void broadcastMaceDestroyed() {
-        if (plugin.getConfig().getBoolean("messages.broadcast-destruction", true)) {
+        if (policy().broadcastDestruction) {
             Bukkit.broadcastMessage("§cA Mace was destroyed and can now be crafted again!\n" +
-                    "Total remaining maces: §e" + tracker.getMaceCount() + "§7/§e" + manager.getMaxMaceCount());
+                    "Total remaining maces: §e" + maceTotal() + "§7/§e" + manager.getMaxMaceCount());
         }
     }
 
@@ -130,14 +203,21 @@ public class MaceEventHandler implements Listener {
         if (!(event.getWhoClicked() instanceof Player player)) return;
 
         // Check world restrictions (only if player doesn't have bypass permission)
-        if (!hasPermission(player, plugin.getConfig().getString("bypass-permission", "macecontrol.bypass"))) {
-            if (!isWorldAllowed(player.getWorld().getName())) {
+        if (!hasBypass(player)) {
+            if (!policy().isWorldAllowed(player.getWorld())) {
                 event.setCancelled(true);
                 player.sendMessage("§cMace crafting is not allowed in this world!");
                 return;
             }
         }
 
+        // The saved ledger could not be read, so the limit cannot be checked
+        if (manager.isDataUnreadable() && !hasBypass(player)) {
+            event.setCancelled(true);
+            player.sendMessage("§cMace crafting is disabled until the mace data is repaired.");
+            return;
+        }
+
         // Prevent shift-click crafting
         if (event.isShiftClick()) {
             event.setCancelled(true);
@@ -145,45 +225,77 @@ public class MaceEventHandler implements Listener {
             return;
         }
 
-        // Check mace count limit with synchronization to prevent race conditions
-        synchronized (tracker) {
-            tracker.refreshMaceTracking();
-            if (!hasPermission(player, plugin.getConfig().getString("bypass-permission", "macecontrol.bypass"))) {
-                if (tracker.getMaceCount() >= manager.getMaxMaceCount()) {
-                    event.setCancelled(true);
-                    player.sendMessage("§cThere are already " + manager.getMaxMaceCount() + " Maces in the world!");
-                    return;
-                }
-            }
-
-            // Pre-increment the count to reserve this slot while the mace is being created
-            tracker.updateMaceCount(1);
+        // Reserve a slot; the limit check and the reservation happen together
+        int limit = hasBypass(player) ? Integer.MAX_VALUE : MaceControl.getLedger().capacity(manager.getMaxMaceCount());
+        MaceTracker.SlotLease lease = tracker.tryReserveSlot(player.getUniqueId(), limit);
+        if (lease == null) {
+            event.setCancelled(true);
+            player.sendMessage("§cThere are already " + manager.getMaxMaceCount() + " Maces in the world!");
+            return;
         }
 
-        // Create and tag the mace
-        ItemStack mace = manager.tagMace(result.clone(), player.getUniqueId());
+        // Tag the mace with the reserved ID; it is recorded once the craft goes through
+        ItemStack mace = manager.tagMace(result.clone(), lease.maceId);
         event.getInventory().setResult(mace);
+        craftLeases.put(player.getUniqueId(), lease);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onCraftComplete(CraftItemEvent event) {
+        MaceTracker.SlotLease lease = craftLeases.remove(event.getWhoClicked().getUniqueId());
+        if (lease == null) return;
+
+        // Another plugin cancelled the craft: give the slot back
+        if (event.isCancelled()) {
+            tracker.releaseLease(lease);
+            return;
+        }
+
+        // Count the mace now, held by the crafter. The result lands on the cursor
+        // or in the inventory after the event, and may be saved to playerdata if
+        // the crafter quits first, so it must never fall back to being uncounted.
+        if (tracker.commitLease(lease.maceId, MaceTracker.MaceLocation.INVENTORY, null) == null) return;
+        pendingCrafts.put(lease.maceId, lease);
+
+        Player player = (Player) event.getWhoClicked();
+        CraftingInventory grid = event.getInventory();
+        Location location = player.getLocation();
+        MaceControl.getScheduler().runForEntity(player, () -> confirmCraft(player, lease, grid), () -> {
+            if (pendingCrafts.remove(lease.maceId, lease)) {
+                audit(AuditLog.Type.CRAFT, lease.maceId, lease.playerId, location, "crafter logged out");
+            }
+        }, 1);
+    }
 
-        // NOW update player tracking and mace ID mapping
-        tracker.updatePlayerMaceCount(player.getUniqueId(), 1);
-        // Note: Total count already updated above in synchronized block
+    private void confirmCraft(Player player, MaceTracker.SlotLease lease, CraftingInventory grid) {
+        // Already settled by onItemSpawn if it was dropped from the result slot
+        if (!pendingCrafts.remove(lease.maceId, lease)) return;
 
-        // Update mace ID mapping
-        String maceId = getMaceID(mace);
-        if (maceId != null) {
-            tracker.getMaceIdToHolder().put(maceId, player.getUniqueId());
+        if (!holdsMace(player, lease.maceId) && lease.maceId.equals(getMaceID(grid.getResult()))) {
+            // The tagged result is still in the grid, so the click never took it
+            tracker.handleMaceDestruction(lease.maceId, player.getUniqueId());
+            return;
         }
 
         // Send success message
-        player.sendMessage("§6You have crafted a Mace! (" + tracker.getMaceCount() + "/" + manager.getMaxMaceCount() + ")");
+        player.sendMessage("§6You have crafted a Mace! (" + maceTotal() + "/" + manager.getMaxMaceCount() + ")");
 
         // Broadcast craft notification if enabled
-        if (plugin.getConfig().getBoolean("messages.broadcast-craft", true)) {
+        if (policy().broadcastCraft) {
             String crafterName = player.getName();
-            Bukkit.broadcastMessage("§6" + crafterName + " has crafted a Mace! (" + tracker.getMaceCount() + "/" + manager.getMaxMaceCount() + ")");
+            Bukkit.broadcastMessage("§6" + crafterName + " has crafted a Mace! (" + maceTotal() + "/" + manager.getMaxMaceCount() + ")");
         }
 
-        plugin.getLogger().info("Mace crafted by: " + player.getName() + " (Total: " + tracker.getMaceCount() + "/" + manager.getMaxMaceCount() + ")");
+        audit(AuditLog.Type.CRAFT, lease.maceId, player.getUniqueId(), player.getLocation(),
+                "total " + maceTotal() + "/" + manager.getMaxMaceCount());
+    }
+
+    private boolean holdsMace(Player player, UUID maceId) {
+        if (maceId.equals(getMaceID(player.getItemOnCursor()))) return true;
+        for (ItemStack item : player.getInventory().getContents()) {
+            if (maceId.equals(getMaceID(item))) return true;
+        }
+        return false;
     }
 
     @EventHandler
@@ -192,8 +304,7 @@ public class MaceEventHandler implements Listener {
             ItemStack item = event.getPlayer().getInventory().getItemInMainHand();
             if (isUniqueMace(item)) {
                 Player player = event.getPlayer();
-                if (!hasPermission(player, plugin.getConfig().getString("bypass-permission", "macecontrol.bypass"))
-                        && isRestrictionEnabled("block-item-frames")) {
+                if (policy().blockItemFrames && !hasBypass(player)) {
                     event.setCancelled(true);
                     player.sendMessage("§cYou cannot place the Mace in an item frame!");
                 }
@@ -207,8 +318,7 @@ public class MaceEventHandler implements Listener {
             ItemStack item = event.getPlayer().getInventory().getItemInMainHand();
             if (isUniqueMace(item)) {
                 Player player = event.getPlayer();
-                if (!hasPermission(player, plugin.getConfig().getString("bypass-permission", "macecontrol.bypass"))
-                        && isRestrictionEnabled("block-armor-stands")) {
+                if (policy().blockArmorStands && !hasBypass(player)) {
                     event.setCancelled(true);
                     player.sendMessage("§cYou cannot place the Mace on an armor stand!");
                 }
@@ -225,8 +335,7 @@ public class MaceEventHandler implements Listener {
 
         // Check if it's a flower pot (including decorated pots)
         Material blockType = clickedBlock.getType();
-        if (!blockType.toString().contains("FLOWER_POT") &&
-                !blockType.toString().contains("DECORATED_POT")) {
+        if (blockType != Material.FLOWER_POT && blockType != Material.DECORATED_POT) {
             return;
         }
 
@@ -234,8 +343,7 @@ public class MaceEventHandler implements Listener {
         if (!isUniqueMace(item)) return;
 
         Player player = event.getPlayer();
-        if (!hasPermission(player, plugin.getConfig().getString("bypass-permission", "macecontrol.bypass"))
-                && isRestrictionEnabled("block-flower-pots")) {
+        if (policy().blockFlowerPots && !hasBypass(player)) {
             event.setCancelled(true);
             player.sendMessage("§cYou cannot place the Mace in a flower pot!");
         }
@@ -254,38 +362,41 @@ public class MaceEventHandler implements Listener {
         ItemStack item = event.getItem();
         if (isUniqueMace(item) || isHeavyCore(item)) {
             event.setCancelled(true);
+        } else if (isBundle(item)) {
+            bundleCache.clear();
         }
     }
 
-    @EventHandler
+    @EventHandler(priority = EventPriority.LOW, ignoreCancelled = true)
     public void onInventoryDrag(InventoryDragEvent event) {
-        Inventory inventory = event.getInventory();
-        if (inventory == null) return;
-
-        Player player = (Player) event.getWhoClicked();
+        // A drag spreads a single stack, so the old cursor says what is involved
+        ItemStack dragged = event.getOldCursor();
+        StackKind kind = classify(dragged);
+        if (kind == StackKind.BUNDLE) {
+            bundleCache.clear();
+            return;
+        }
+        if (kind != StackKind.MACE && kind != StackKind.HEAVY_CORE) return;
+        if (kind == StackKind.MACE && !isUniqueMace(dragged)) return;
+        if (!(event.getWhoClicked() instanceof Player player)) return;
 
-        // Check if player has bypass permission
-        boolean hasBypass = hasPermission(player, plugin.getConfig().getString("bypass-permission", "macecontrol.bypass"));
+        Inventory inventory = event.getInventory();
+        boolean hasBypass = hasBypass(player);
 
         // Handle auto crafter restrictions for heavy cores
-        if (isAutoCrafter(inventory)) {
-            Map<Integer, ItemStack> newItems = event.getNewItems();
-            for (ItemStack item : newItems.values()) {
-                if (item != null && isHeavyCore(item)) {
-                    if (!hasBypass && isRestrictionEnabled("block-heavy-core-autocrafter")) {
-                        event.setCancelled(true);
-                        player.sendMessage("§cYou cannot drag the Heavy Core into the Auto Crafter!");
-                        return;
-                    }
-                }
+        if (kind == StackKind.HEAVY_CORE) {
+            if (!hasBypass && policy().blockHeavyCoreAutocrafter && isAutoCrafter(inventory)) {
+                event.setCancelled(true);
+                player.sendMessage("§cYou cannot drag the Heavy Core into the Auto Crafter!");
             }
+            return;
         }
 
-        // Handle mace drag restrictions
-        Map<Integer, ItemStack> newItems = event.getNewItems();
-        for (ItemStack item : newItems.values()) {
-            if (item != null && isUniqueMace(item)) {
-                if (!hasBypass && isBlockedContainer(inventory.getType())) {
+        // Handle mace drag restrictions (only slots in the top inventory matter)
+        if (!hasBypass && policy().isBlockedContainer(inventory.getType())) {
+            int topSize = event.getView().getTopInventory().getSize();
+            for (int rawSlot : event.getRawSlots()) {
+                if (rawSlot < topSize) {
                     event.setCancelled(true);
                     player.sendMessage("§cYou cannot drag the Mace into a container!");
                     return;
@@ -294,24 +405,53 @@ public class MaceEventHandler implements Listener {
         }
     }
 
-    @EventHandler
+    @EventHandler(priority = EventPriority.LOW, ignoreCancelled = true)
     public void onInventoryClick(InventoryClickEvent event) {
-        if (event.getClickedInventory() == null) return;
+        // Classify the stacks involved by Material before doing anything else
+        ClickType click = event.getClick();
+        ItemStack cursor = event.getCursor();
+        ItemStack current = event.getCurrentItem();
+        StackKind cursorKind = classify(cursor);
+        StackKind currentKind = classify(current);
+        StackKind hotbarKind = StackKind.OTHER;
+        ItemStack hotbarItem = null;
+        if (click == ClickType.NUMBER_KEY) {
+            int hotbarButton = event.getHotbarButton();
+            if (hotbarButton >= 0 && hotbarButton <= 8) {
+                hotbarItem = event.getWhoClicked().getInventory().getItem(hotbarButton);
+                hotbarKind = classify(hotbarItem);
+            }
+        }
+
+        if (!cursorKind.guarded && !currentKind.guarded && !hotbarKind.guarded) {
+            // Nothing to restrict; a moving bundle may change cached bundle presence
+            if (cursorKind == StackKind.BUNDLE || currentKind == StackKind.BUNDLE || hotbarKind == StackKind.BUNDLE) {
+                bundleCache.clear();
+            }
+            return;
+        }
 
         Inventory clickedInventory = event.getClickedInventory();
+        if (clickedInventory == null) return;
+        if (!(event.getWhoClicked() instanceof Player player)) return;
+
+        boolean cursorMace = cursorKind == StackKind.MACE && isUniqueMace(cursor);
+        boolean currentMace = currentKind == StackKind.MACE && isUniqueMace(current);
+        boolean hotbarMace = hotbarKind == StackKind.MACE && isUniqueMace(hotbarItem);
+        if (!cursorMace && !currentMace && !hotbarMace
+                && cursorKind != StackKind.HEAVY_CORE && currentKind != StackKind.HEAVY_CORE
+                && hotbarKind != StackKind.HEAVY_CORE) {
+            return;
+        }
+
         InventoryType clickedInvType = clickedInventory.getType();
         Inventory topInventory = event.getView().getTopInventory();
         InventoryType topType = topInventory.getType();
-        Player player = (Player) event.getWhoClicked();
-
-        // Check if player has bypass permission
-        boolean hasBypass = hasPermission(player, plugin.getConfig().getString("bypass-permission", "macecontrol.bypass"));
+        boolean shiftClick = click == ClickType.SHIFT_LEFT || click == ClickType.SHIFT_RIGHT;
+        boolean hasBypass = hasBypass(player);
 
         // Prevent shift-clicking the crafting output slot to duplicate the Mace
-        ItemStack current = event.getCurrentItem();
-        if ((event.getClick() == ClickType.SHIFT_LEFT || event.getClick() == ClickType.SHIFT_RIGHT)
-                && current != null
-                && isUniqueMace(current)
+        if (shiftClick && currentMace
                 && (topType == InventoryType.CRAFTING || topType == InventoryType.WORKBENCH)
                 && event.getSlot() == 0) {
             event.setCancelled(true);
@@ -319,58 +459,55 @@ public class MaceEventHandler implements Listener {
             return;
         }
 
+        if (hasBypass) return;
+
         // Handle cursor item placement
-        ItemStack cursor = event.getCursor();
-        if (cursor != null) {
-            if (isUniqueMace(cursor) && !hasBypass && isBlockedContainer(clickedInvType)) {
-                event.setCancelled(true);
-                player.sendMessage("§cYou cannot put the Mace in a container");
-                return;
-            }
-            if (isHeavyCore(cursor) && !hasBypass && isRestrictionEnabled("block-heavy-core-autocrafter") && isAutoCrafter(clickedInventory)) {
-                event.setCancelled(true);
-                player.sendMessage("§cYou cannot put the Heavy Core in the Auto Crafter");
-                return;
-            }
+        if (cursorMace && policy().isBlockedContainer(clickedInvType)) {
+            event.setCancelled(true);
+            player.sendMessage("§cYou cannot put the Mace in a container");
+            return;
+        }
+        if (cursorKind == StackKind.HEAVY_CORE && policy().blockHeavyCoreAutocrafter && isAutoCrafter(clickedInventory)) {
+            event.setCancelled(true);
+            player.sendMessage("§cYou cannot put the Heavy Core in the Auto Crafter");
+            return;
+        }
+
+        // Player trying to insert mace into bundle or vice versa
+        if ((currentKind == StackKind.BUNDLE && cursorMace) || (cursorKind == StackKind.BUNDLE && currentMace)) {
+            event.setCancelled(true);
+            player.sendMessage(ChatColor.RED + "You cannot put the Mace into a bundle!");
+            return;
         }
 
         // Handle shift-click moves
-        if ((event.getClick() == ClickType.SHIFT_LEFT || event.getClick() == ClickType.SHIFT_RIGHT) && current != null) {
-            if (isUniqueMace(current) && !hasBypass && isBlockedContainer(topType)) {
+        if (shiftClick && current != null) {
+            if (currentMace && policy().isBlockedContainer(topType)) {
                 event.setCancelled(true);
                 player.sendMessage("§cYou cannot put the Mace in a container!");
                 return;
             }
 
-            Inventory destinationInventory = clickedInventory.getType() == InventoryType.PLAYER
+            Inventory destinationInventory = clickedInvType == InventoryType.PLAYER
                     ? topInventory
                     : event.getView().getBottomInventory();
 
-            if (isHeavyCore(current) && !hasBypass && isRestrictionEnabled("block-heavy-core-autocrafter") && isAutoCrafter(destinationInventory)) {
+            if (currentKind == StackKind.HEAVY_CORE && policy().blockHeavyCoreAutocrafter && isAutoCrafter(destinationInventory)) {
                 event.setCancelled(true);
                 player.sendMessage("§cYou cannot put the Heavy Core in the Auto Crafter!");
                 return;
             }
 
             // Prevent shift-click moving Mace into bundle
-            if (isUniqueMace(current) && !hasBypass && clickedInventory.getType() == InventoryType.PLAYER) {
-                // Check if destination has bundles
-                for (ItemStack item : destinationInventory.getContents()) {
-                    if (isBundle(item)) {
-                        event.setCancelled(true);
-                        player.sendMessage("§cYou cannot put the Mace into a bundle!");
-                        return;
-                    }
-                }
+            if (currentMace && clickedInvType == InventoryType.PLAYER && containsBundle(player, destinationInventory)) {
+                event.setCancelled(true);
+                player.sendMessage("§cYou cannot put the Mace into a bundle!");
+                return;
             }
         }
 
         // Handle hotkey (number key) swaps
-        if (event.getClick() == ClickType.NUMBER_KEY) {
-            int hotbarButton = event.getHotbarButton();
-            if (hotbarButton < 0 || hotbarButton > 8) return;
-
-            ItemStack hotbarItem = player.getInventory().getItem(hotbarButton);
+        if (click == ClickType.NUMBER_KEY) {
             InventoryView view = event.getView();
             int clickedSlot = event.getSlot();
 
@@ -382,12 +519,12 @@ public class MaceEventHandler implements Listener {
             }
 
             if (clickedSlotInventory != null && hotbarItem != null) {
-                if (isUniqueMace(hotbarItem) && !hasBypass && isBlockedContainer(clickedSlotInventory.getType())) {
+                if (hotbarMace && policy().isBlockedContainer(clickedSlotInventory.getType())) {
                     event.setCancelled(true);
                     player.sendMessage("§cYou cannot put the Mace in a container!");
                     return;
                 }
-                if (isHeavyCore(hotbarItem) && !hasBypass && isRestrictionEnabled("block-heavy-core-autocrafter") && isAutoCrafter(clickedInventory)) {
+                if (hotbarKind == StackKind.HEAVY_CORE && policy().blockHeavyCoreAutocrafter && isAutoCrafter(clickedInventory)) {
                     event.setCancelled(true);
                     player.sendMessage("§cYou cannot put the Heavy Core in the Auto Crafter!");
                     return;
@@ -395,34 +532,21 @@ public class MaceEventHandler implements Listener {
             }
 
             // Prevent hotkey swapping Mace with bundle item
-            if (!hasBypass) {
-                if ((hotbarItem != null && isUniqueMace(hotbarItem) && isBundle(current))
-                        || (cursor != null && isUniqueMace(cursor) && isBundle(current))) {
-                    event.setCancelled(true);
-                    player.sendMessage("§cYou cannot put the Mace into a bundle!");
-                    return;
-                }
+            if ((hotbarMace || cursorMace) && currentKind == StackKind.BUNDLE) {
+                event.setCancelled(true);
+                player.sendMessage("§cYou cannot put the Mace into a bundle!");
             }
         }
     }
 
     @EventHandler
-    public void onBundleInsert(InventoryClickEvent event) {
-        ItemStack clicked = event.getCurrentItem();
-        ItemStack cursor = event.getCursor();
-        if (clicked == null || cursor == null) return;
-
-        Player player = (Player) event.getWhoClicked();
-        boolean hasBypass = hasPermission(player, plugin.getConfig().getString("bypass-permission", "macecontrol.bypass"));
+    public void onInventoryOpen(InventoryOpenEvent event) {
+        bundleCache.remove(event.getPlayer().getUniqueId());
+    }
 
-        // Player trying to insert mace into bundle or vice versa
-        if (!hasBypass) {
-            if ((clicked.getType() == Material.BUNDLE && isUniqueMace(cursor))
-                    || (cursor.getType() == Material.BUNDLE && isUniqueMace(clicked))) {
-                event.setCancelled(true);
-                event.getWhoClicked().sendMessage(ChatColor.RED + "You cannot put the Mace into a bundle!");
-            }
-        }
+    @EventHandler
+    public void onInventoryClose(InventoryCloseEvent event) {
+        bundleCache.remove(event.getPlayer().getUniqueId());
     }
 
     @EventHandler
@@ -440,7 +564,8 @@ public class MaceEventHandler implements Listener {
     @EventHandler
     public void onItemBreak(PlayerItemDamageEvent event) {
         ItemStack item = event.getItem();
-        if (!isUniqueMace(item)) return;
+        UUID maceId = getMaceID(item);
+        if (maceId == null) return;
 
         short currentDamage = item.getDurability();
         int incomingDamage = event.getDamage();
@@ -449,13 +574,12 @@ public class MaceEventHandler implements Listener {
         if (currentDamage + incomingDamage >= maxDurability) {
             Player player = event.getPlayer();
             UUID playerUUID = player.getUniqueId();
-            String maceId = getMaceID(item);
 
             // Handle mace destruction using tracker
             tracker.handleMaceDestruction(maceId, playerUUID);
             broadcastMaceDestroyed();
 
-            plugin.getLogger().info("The Mace broke from durability loss by player " + player.getName() + ".");
+            audit(AuditLog.Type.DESTROY, maceId, playerUUID, player.getLocation(), "durability");
         }
     }
 
@@ -469,23 +593,25 @@ public class MaceEventHandler implements Listener {
                 player.getLastDamageCause().getCause() == EntityDamageEvent.DamageCause.VOID) {
 
             for (ItemStack drop : new ArrayList<>(event.getDrops())) {
-                if (isUniqueMace(drop)) {
-                    String maceId = getMaceID(drop);
+                UUID maceId = getMaceID(drop);
+                if (maceId != null) {
                     tracker.handleMaceDestruction(maceId, playerUUID);
                     event.getDrops().remove(drop);
 
-                    plugin.getLogger().info("Player died in void with mace. Updated mace holders and count.");
-                    if (plugin.getConfig().getBoolean("messages.broadcast-destruction", true)) {
+                    audit(AuditLog.Type.DESTROY, maceId, playerUUID, player.getLocation(), "void");
+                    if (policy().broadcastDestruction) {
                         Bukkit.broadcastMessage("§cA Mace has fallen into the void and can now be crafted again!\n" +
-                                "Total remaining maces: §e" + tracker.getMaceCount() + "§7/§e" + manager.getMaxMaceCount());
+                                "Total remaining maces: §e" + maceTotal() + "§7/§e" + manager.getMaxMaceCount());
                     }
                 }
             }
         } else {
             // Handle normal deaths - mace drops and remains tracked
             for (ItemStack drop : event.getDrops()) {
-                if (isUniqueMace(drop)) {
-                    plugin.getLogger().info("Mace dropped by " + player.getName() + " on death - will remain tracked until despawn");
+                UUID maceId = getMaceID(drop);
+                if (maceId != null) {
+                    tracker.registerMaceDrop(null, playerUUID, maceId);
+                    audit(AuditLog.Type.DROP, maceId, playerUUID, player.getLocation(), "death");
                 }
             }
         }
@@ -494,38 +620,41 @@ public class MaceEventHandler implements Listener {
     @EventHandler
     public void onPlayerDropItem(PlayerDropItemEvent event) {
         Item dropped = event.getItemDrop();
-        if (!isUniqueMace(dropped.getItemStack())) return;
+        UUID maceId = getMaceID(dropped.getItemStack());
+        if (maceId == null) return;
 
         UUID playerId = event.getPlayer().getUniqueId();
-        String maceId = getMaceID(dropped.getItemStack());
+        MaceManager.migrateMaceId(dropped);
 
         // Use new tracker method
         tracker.registerMaceDrop(dropped.getUniqueId(), playerId, maceId);
+        dropIndex.add(dropped, maceId);
 
-        plugin.getLogger().info("Registered dropped mace by " + event.getPlayer().getName() +
-                " (will remain tracked until destroyed/picked up).");
+        audit(AuditLog.Type.DROP, maceId, playerId, dropped.getLocation(), null);
     }
 
     @EventHandler
     public void onItemRemove(EntityRemoveEvent event) {
         if (!(event.getEntity() instanceof Item itemEnt)) return;
-        ItemStack stack = itemEnt.getItemStack();
-        if (!isUniqueMace(stack)) return;
+        // Every removal (pickups included) takes the entity out of the drop index
+        dropIndex.remove(itemEnt.getUniqueId());
+        if (!isDestructiveRemoval(event.getCause())) return;
+        UUID maceId = getMaceID(itemEnt.getItemStack());
+        if (maceId == null) return;
 
-        String maceId = getMaceID(stack);
         UUID originalHolder = null;
 
-        // Get original holder from pending drops (using new method)
-        Map<UUID, MaceTracker.MaceDropInfo> pendingDropsNew = tracker.getPendingDropsNew();
-        MaceTracker.MaceDropInfo dropInfo = pendingDropsNew.remove(itemEnt.getUniqueId());
+        // Get original holder from pending drops
+        MaceTracker.MaceDropInfo dropInfo = tracker.removePendingDrop(itemEnt.getUniqueId());
         if (dropInfo != null) {
             originalHolder = dropInfo.originalHolder;
         }
 
         // Handle destruction using tracker
-        tracker.handleMaceDestruction(maceId, originalHolder);
+        UUID lastHolder = tracker.handleMaceDestruction(maceId, originalHolder);
         broadcastMaceDestroyed();
-        plugin.getLogger().info("Mace removed/despawned - now craftable again");
+        audit(AuditLog.Type.DESTROY, maceId, lastHolder, itemEnt.getLocation(),
+                event.getCause().name().toLowerCase(Locale.ROOT));
     }
 
     @EventHandler
@@ -533,16 +662,97 @@ public class MaceEventHandler implements Listener {
         if (!(event.getEntity() instanceof Player player)) return;
 
         Item entityItem = event.getItem();
-        ItemStack stack = entityItem.getItemStack();
-        if (!isUniqueMace(stack)) return;
-
-        String maceID = getMaceID(stack);
+        UUID maceID = getMaceID(entityItem.getItemStack());
         if (maceID == null) return;
 
         // Handle pickup using tracker
         tracker.handleMacePickup(entityItem.getUniqueId(), player.getUniqueId(), maceID);
 
         player.sendMessage(ChatColor.GOLD + "You have picked up the Mace!");
-        plugin.getLogger().info("Mace picked up by: " + player.getName() + " (ID: " + maceID + ")");
+        audit(AuditLog.Type.PICKUP, maceID, player.getUniqueId(), entityItem.getLocation(), null);
+    }
+
+    @EventHandler
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+        MaceControl.getPermissions().invalidate(player.getUniqueId());
+        MaceControl.getNames().remember(player);
+
+        // Maces tagged with string IDs are rewritten the first time their holder is seen
+        int migrated = MaceManager.migrateInventory(player.getInventory())
+                + MaceManager.migrateInventory(player.getEnderChest());
+        if (migrated > 0) {
+            plugin.getLogger().info("Migrated " + migrated + " mace IDs for " + player.getName());
+        }
+    }
+
+    // Permission cache invalidation
+
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        UUID playerId = event.getPlayer().getUniqueId();
+        MaceControl.getPermissions().invalidate(playerId);
+        // Slots reserved for a craft event that never completed; finished crafts are already counted
+        craftLeases.remove(playerId);
+        tracker.releaseLeases(playerId);
+    }
+
+    @EventHandler
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        // Permissions may be world-specific
+        MaceControl.getPermissions().invalidate(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler
+    public void onPlayerCommandSend(PlayerCommandSendEvent event) {
+        // Permission plugins resend the command tree after recalculating a player
+        MaceControl.getPermissions().invalidate(event.getPlayer().getUniqueId());
+    }
+
+    // Dropped mace index upkeep
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onItemSpawn(ItemSpawnEvent event) {
+        indexIfMace(event.getEntity());
+
+        // A freshly crafted mace dropped straight from the result slot
+        UUID maceId = getMaceID(event.getEntity().getItemStack());
+        MaceTracker.SlotLease lease = maceId != null ? pendingCrafts.remove(maceId) : null;
+        if (lease != null) {
+            tracker.registerMaceDrop(event.getEntity().getUniqueId(), lease.playerId, maceId);
+            audit(AuditLog.Type.CRAFT, maceId, lease.playerId, event.getLocation(), "dropped from crafting grid");
+        }
+    }
+
+    @EventHandler
+    public void onEntitiesLoad(EntitiesLoadEvent event) {
+        Chunk chunk = event.getChunk();
+        MaceControl.getScanner().chunkEntitiesLoaded(chunk.getWorld(), chunk.getX(), chunk.getZ());
+        for (Entity entity : event.getEntities()) {
+            indexIfMace(entity);
+        }
+    }
+
+    @EventHandler
+    public void onEntitiesUnload(EntitiesUnloadEvent event) {
+        Chunk chunk = event.getChunk();
+        MaceControl.getScanner().chunkEntitiesUnloaded(chunk.getWorld(), chunk.getX(), chunk.getZ());
+        for (Entity entity : event.getEntities()) {
+            if (entity instanceof Item) {
+                dropIndex.remove(entity.getUniqueId());
+            }
+        }
+    }
+
+    @EventHandler
+    public void onWorldUnload(WorldUnloadEvent event) {
+        dropIndex.removeWorld(event.getWorld());
+        MaceControl.getScanner().worldUnloaded(event.getWorld());
+    }
+
+    @EventHandler
+    public void onWorldLoad(WorldLoadEvent event) {
+        // World restrictions are keyed by UID, so resolve the new world's name
+        plugin.compilePolicy();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,45 @@
+package me.zeppy.maceControl;
+
+import org.bukkit.persistence.PersistentDataAdapterContext;
+import org.bukkit.persistence.PersistentDataType;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Stores a mace ID in the item's persistent data as a fixed 16 byte array
+ * (most significant long first) instead of a 36 character UUID string.
+ */
+public final class MaceIdDataType implements PersistentDataType<byte[], UUID> {
+    public static final MaceIdDataType INSTANCE = new MaceIdDataType();
+
+    private MaceIdDataType() {
+    }
+
+    @Override
+    public Class<byte[]> getPrimitiveType() {
+        return byte[].class;
+    }
+
+    @Override
+    public Class<UUID> getComplexType() {
+        return UUID.class;
+    }
+
+    @Override
+    public byte[] toPrimitive(UUID complex, PersistentDataAdapterContext context) {
+        return ByteBuffer.allocate(16)
+                .putLong(complex.getMostSignificantBits())
+                .putLong(complex.getLeastSignificantBits())
+                .array();
+    }
+
+    @Override
+    public UUID fromPrimitive(byte[] primitive, PersistentDataAdapterContext context) {
+        if (primitive.length != 16) {
+            throw new IllegalArgumentException("Mace ID must be 16 bytes, got " + primitive.length);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(primitive);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
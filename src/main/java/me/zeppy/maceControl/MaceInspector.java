@@ -0,0 +1,118 @@
+package me.zeppy.maceControl;
+
+import io.papermc.paper.persistence.PersistentDataContainerView;
+import org.bukkit.Material;
+import org.bukkit.block.Container;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.BlockStateMeta;
+import org.bukkit.inventory.meta.BundleMeta;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataType;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Checks for tracked maces. Rejects on {@link Material} before touching item
+ * data, then reads a binary mace ID with one {@code get()} on the item's
+ * read-only persistent data view instead of cloning its {@code ItemMeta}.
+ * Only a tag that is not a binary ID takes a second read, as a string ID from
+ * before the binary format, until it is migrated.
+ */
+public final class MaceInspector {
+    // Items that carry other items in survival: shulker boxes and plain or dyed bundles
+    private static final Set<Material> CONTAINERS = EnumSet.noneOf(Material.class);
+    // Bundles can hold bundles; stop well past anything survival can build
+    private static final int MAX_NESTING = 16;
+
+    static {
+        for (Material material : Material.values()) {
+            if (material.name().endsWith("SHULKER_BOX") || material.name().endsWith("BUNDLE")) {
+                CONTAINERS.add(material);
+            }
+        }
+    }
+
+    private MaceInspector() {
+    }
+
+    /**
+     * The mace ID of {@code item}, or null if it is not a tracked mace
+     */
+    public static UUID maceId(ItemStack item) {
+        return read(item, false);
+    }
+
+    /**
+     * The mace ID of {@code item} if it is still a string and should be
+     * migrated, otherwise null. A binary ID costs the same single read.
+     */
+    static UUID legacyId(ItemStack item) {
+        return read(item, true);
+    }
+
+    private static UUID read(ItemStack item, boolean legacyOnly) {
+        if (item == null || item.getType() != Material.MACE) return null;
+
+        PersistentDataContainerView view = item.getPersistentDataContainer();
+        try {
+            // Null if the item has no ID
+            UUID maceId = view.get(MaceControl.MACE_ID_KEY, MaceIdDataType.INSTANCE);
+            return legacyOnly ? null : maceId;
+        } catch (IllegalArgumentException notBinary) {
+            try {
+                return parseLegacyId(view.get(MaceControl.MACE_ID_KEY, PersistentDataType.STRING));
+            } catch (IllegalArgumentException neither) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Pass the ID of {@code item} and of every tracked mace inside it, when it
+     * is a shulker box or bundle, to {@code action}. Only containers have
+     * their item meta copied; any other item costs one type check.
+     */
+    public static void forEachMaceId(ItemStack item, Consumer<UUID> action) {
+        forEachMaceId(item, action, 0);
+    }
+
+    private static void forEachMaceId(ItemStack item, Consumer<UUID> action, int nesting) {
+        if (item == null) return;
+        if (item.getType() == Material.MACE) {
+            UUID maceId = maceId(item);
+            if (maceId != null) action.accept(maceId);
+            return;
+        }
+        if (!CONTAINERS.contains(item.getType()) || nesting >= MAX_NESTING || !item.hasItemMeta()) return;
+
+        ItemMeta meta = item.getItemMeta();
+        if (meta instanceof BundleMeta bundle) {
+            for (ItemStack inner : bundle.getItems()) {
+                forEachMaceId(inner, action, nesting + 1);
+            }
+        } else if (meta instanceof BlockStateMeta block && block.hasBlockState()
+                && block.getBlockState() instanceof Container container) {
+            for (ItemStack inner : container.getInventory().getContents()) {
+                forEachMaceId(inner, action, nesting + 1);
+            }
+        }
+    }
+
+    public static boolean isMace(ItemStack item) {
+        return maceId(item) != null;
+    }
+
+    // Null unless value is a canonical 8-4-4-4-12 UUID, so a bad tag never throws
+    private static UUID parseLegacyId(String value) {
+        if (value == null || value.length() != 36) return null;
+        for (int i = 0; i < 36; i++) {
+            char c = value.charAt(i);
+            boolean dash = i == 8 || i == 13 || i == 18 || i == 23;
+            if (dash ? c != '-' : Character.digit(c, 16) < 0) return null;
+        }
+        return UUID.fromString(value);
+    }
+}
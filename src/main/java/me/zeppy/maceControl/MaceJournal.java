@@ -0,0 +1,422 @@
+package me.zeppy.maceControl;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of tracker mutations.
+ * <p>
+ * Entries are queued by the tracker and written by a single journal thread,
+ * which drains everything queued since its last write and fsyncs once per
+ * batch (group commit). The journal is split into numbered segments; the data
+ * file records the first segment it does not include, so startup replays only
+ * the segments written after the last snapshot.
+ * <p>
+ * Durability window: {@link #append} returns as soon as the entry is queued.
+ * It reaches the disk with the writer's next fsync, normally within a few
+ * milliseconds, so a crash can lose the last unsynced batch. The maces in it
+ * are not gone for good: the reconciliation on startup finds them again in
+ * inventories, player files and loaded chunks. {@link #unsyncedEntries}
+ * reports the current size of the window.
+ */
+final class MaceJournal {
+    private static final int MAGIC = 0x4D434A4C; // "MCJL"
+    private static final short VERSION = 1;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    enum Op {
+        PUT,
+        REMOVE
+    }
+
+    static final class Entry {
+        final Op op;
+        final long timestamp;
+        final UUID maceId;
+        final UUID holder;
+        final MaceTracker.MaceLocation location;
+        final UUID itemEntityId;
+        final UUID creator;
+        final long createdAt;
+
+        Entry(Op op, long timestamp, UUID maceId, UUID holder,
+              MaceTracker.MaceLocation location, UUID itemEntityId, UUID creator, long createdAt) {
+            this.op = op;
+            this.timestamp = timestamp;
+            this.maceId = maceId;
+            this.holder = holder;
+            this.location = location;
+            this.itemEntityId = itemEntityId;
+            this.creator = creator;
+            this.createdAt = createdAt;
+        }
+
+        static Entry put(MaceTracker.MaceRecord record) {
+            return new Entry(Op.PUT, record.lastSeen, record.maceId, record.holder, record.location, record.itemEntityId,
+                    record.creator, record.createdAt);
+        }
+
+        static Entry remove(UUID maceId) {
+            return new Entry(Op.REMOVE, System.currentTimeMillis(), maceId, null, null, null, null, 0);
+        }
+    }
+
+    // Queued marker telling the writer to switch to the next segment
+    private static final class Rotate {
+        final long segment;
+
+        Rotate(long segment) {
+            this.segment = segment;
+        }
+    }
+
+    private static final Object STOP = new Object();
+
+    private final MaceControl plugin;
+    private final File directory;
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong currentSegment = new AtomicLong();
+    // Entries queued so far, and how many of them the writer has fsynced
+    private final AtomicLong appended = new AtomicLong();
+    private volatile long synced;
+    private volatile long lastSyncMillis;
+    private Thread writerThread;
+    private volatile boolean failed;
+
+    MaceJournal(MaceControl plugin, File directory) {
+        this.plugin = plugin;
+        this.directory = directory;
+    }
+
+    /**
+     * Start writing at the given segment
+     */
+    void open(long segment) {
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        currentSegment.set(segment);
+        writerThread = new Thread(this::writeLoop, "MaceControl-Journal");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Queue an entry for the writer. Returns before it is on disk; see the
+     * durability window in the class comment.
+     */
+    synchronized void append(Entry entry) {
+        if (!failed) {
+            appended.incrementAndGet();
+            queue.add(entry);
+        }
+    }
+
+    /**
+     * Entries appended but not yet fsynced, i.e. what a crash right now would lose
+     */
+    long unsyncedEntries() {
+        return failed ? 0 : appended.get() - synced;
+    }
+
+    /**
+     * When the writer last fsynced a batch, or 0 if it has not written yet
+     */
+    long getLastSyncMillis() {
+        return lastSyncMillis;
+    }
+
+    boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Segment that entries appended now are written to
+     */
+    synchronized long currentSegment() {
+        return currentSegment.get();
+    }
+
+    /**
+     * Close the current segment and continue in a new one. Everything appended
+     * before this call lives in earlier segments. Only queues a marker; the
+     * writer thread does the file work.
+     *
+     * @return the new segment number
+     */
+    synchronized long rotate() {
+        long next = currentSegment.incrementAndGet();
+        if (failed) {
+            // Nothing drains the queue any more; every save is a full snapshot
+            return next;
+        }
+        queue.add(new Rotate(next));
+        return next;
+    }
+
+    /**
+     * Drain the queue and stop the writer thread
+     */
+    void close() {
+        if (writerThread == null) return;
+        queue.add(STOP);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writerThread = null;
+    }
+
+    /**
+     * Delete segments whose entries are all contained in a saved snapshot
+     */
+    void deleteSegmentsBefore(long segment) {
+        for (long existing : listSegments()) {
+            if (existing < segment && !segmentFile(existing).delete()) {
+                plugin.getLogger().warning("Could not delete compacted journal segment " + existing);
+            }
+        }
+    }
+
+    /**
+     * Highest segment number on disk, or -1 if there are none
+     */
+    long lastSegment() {
+        List<Long> segments = listSegments();
+        return segments.isEmpty() ? -1 : segments.get(segments.size() - 1);
+    }
+
+    /**
+     * Read all entries from the given segment onwards, in write order. A torn or
+     * corrupt record ends its segment; anything after it was never acknowledged.
+     */
+    List<Entry> readFrom(long segment) {
+        List<Entry> entries = new ArrayList<>();
+        for (long existing : listSegments()) {
+            if (existing < segment) continue;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segmentFile(existing))))) {
+                if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                    plugin.getLogger().warning("Skipping journal segment " + existing + " with unknown header");
+                    continue;
+                }
+                readRecords(in, entries, existing);
+            } catch (EOFException ignored) {
+                // Empty segment
+            } catch (IOException e) {
+                plugin.getLogger().warning("Failed to read journal segment " + existing + ": " + e.getMessage());
+            }
+        }
+        return entries;
+    }
+
+    private void readRecords(DataInputStream in, List<Entry> entries, long segment) throws IOException {
+        CRC32 crc = new CRC32();
+        while (true) {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                return;
+            }
+            if (length <= 0 || length > 1024) {
+                plugin.getLogger().warning("Journal segment " + segment + " has a corrupt record, ignoring the rest");
+                return;
+            }
+
+            byte[] payload = new byte[length];
+            int expectedCrc;
+            try {
+                in.readFully(payload);
+                expectedCrc = in.readInt();
+            } catch (EOFException e) {
+                plugin.getLogger().warning("Journal segment " + segment + " ends with a torn record, ignoring it");
+                return;
+            }
+
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != expectedCrc) {
+                plugin.getLogger().warning("Journal segment " + segment + " has a checksum mismatch, ignoring the rest");
+                return;
+            }
+            entries.add(decode(payload));
+        }
+    }
+
+    private void writeLoop() {
+        FileChannel channel = null;
+        List<Object> batch = new ArrayList<>();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        CRC32 crc = new CRC32();
+        long written = 0;
+
+        try {
+            channel = openSegment(currentSegment.get());
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+
+                boolean stop = false;
+                for (Object item : batch) {
+                    if (item instanceof Entry entry) {
+                        written++;
+                        byte[] payload = encode(entry);
+                        crc.reset();
+                        crc.update(payload);
+                        DataOutputStream out = new DataOutputStream(buffer);
+                        out.writeInt(payload.length);
+                        out.write(payload);
+                        out.writeInt((int) crc.getValue());
+                    } else if (item instanceof Rotate rotate) {
+                        flush(channel, buffer);
+                        channel.close();
+                        channel = openSegment(rotate.segment);
+                    } else if (item == STOP) {
+                        stop = true;
+                    }
+                }
+                batch.clear();
+                flush(channel, buffer);
+                synced = written;
+
+                if (stop) break;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            failed = true;
+            queue.clear();
+            plugin.getLogger().severe("Mace journal writer failed, falling back to snapshot-only saves: " + e.getMessage());
+        } finally {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    // One write and one fsync per batch
+    private void flush(FileChannel channel, ByteArrayOutputStream buffer) throws IOException {
+        if (buffer.size() == 0) return;
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        channel.force(false);
+        buffer.reset();
+        lastSyncMillis = System.currentTimeMillis();
+    }
+
+    private FileChannel openSegment(long segment) throws IOException {
+        File file = segmentFile(segment);
+        boolean fresh = !file.exists() || file.length() == 0;
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (fresh) {
+            ByteBuffer header = ByteBuffer.allocate(6).putInt(MAGIC).putShort(VERSION);
+            header.flip();
+            channel.write(header);
+        }
+        return channel;
+    }
+
+    private File segmentFile(long segment) {
+        return new File(directory, SEGMENT_PREFIX + segment + SEGMENT_SUFFIX);
+    }
+
+    private List<Long> listSegments() {
+        List<Long> segments = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files == null) return segments;
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) continue;
+            try {
+                segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    private static byte[] encode(Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(entry.op.ordinal());
+        out.writeLong(entry.timestamp);
+        writeMaceId(out, entry.maceId);
+        if (entry.op == Op.PUT) {
+            writeUuid(out, entry.holder);
+            out.writeByte(entry.location.ordinal());
+            writeUuid(out, entry.itemEntityId);
+            writeUuid(out, entry.creator);
+            if (entry.creator != null) {
+                out.writeLong(entry.createdAt);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Entry decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        Op op = Op.values()[in.readUnsignedByte()];
+        long timestamp = in.readLong();
+        UUID maceId = readMaceId(in);
+        if (op == Op.REMOVE) {
+            return new Entry(op, timestamp, maceId, null, null, null, null, 0);
+        }
+        UUID holder = readUuid(in);
+        MaceTracker.MaceLocation location = MaceTracker.MaceLocation.values()[in.readUnsignedByte()];
+        UUID itemEntityId = readUuid(in);
+        // Entries written before maces carried their crafter end here
+        UUID creator = in.available() > 0 ? readUuid(in) : null;
+        long createdAt = creator != null ? in.readLong() : 0;
+        return new Entry(op, timestamp, maceId, holder, location, itemEntityId, creator, createdAt);
+    }
+
+    // Tag byte kept so segments written while IDs were strings still replay
+    private static void writeMaceId(DataOutputStream out, UUID maceId) throws IOException {
+        out.writeByte(0);
+        out.writeLong(maceId.getMostSignificantBits());
+        out.writeLong(maceId.getLeastSignificantBits());
+    }
+
+    private static UUID readMaceId(DataInputStream in) throws IOException {
+        if (in.readUnsignedByte() == 0) {
+            return new UUID(in.readLong(), in.readLong());
+        }
+        String legacyId = in.readUTF();
+        try {
+            return UUID.fromString(legacyId);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("invalid mace ID " + legacyId);
+        }
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeBoolean(uuid != null);
+        if (uuid != null) {
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        }
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+    }
+}
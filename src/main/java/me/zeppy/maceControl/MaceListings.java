@@ -0,0 +1,299 @@
+package me.zeppy.maceControl;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.event.ClickEvent;
+import net.kyori.adventure.text.event.HoverEvent;
+import net.kyori.adventure.text.format.NamedTextColor;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Paged, sortable and filterable output of {@code /mace} and
+ * {@code /droppedmace}. The command thread only captures the data (the
+ * tracker snapshot and the indexed drops with their live positions).
+ * Filtering, sorting, name lookups and building the chat components happen
+ * here on a background thread, and the finished page is sent as one message.
+ */
+final class MaceListings {
+    static final int PAGE_SIZE = 10;
+
+    enum Sort {
+        HOLDER,   // holder name, A-Z
+        COUNT,    // most maces first
+        AGE,      // most recent first
+        WORLD,    // world name, then position
+        DISTANCE  // nearest first, as returned by the drop index
+    }
+
+    /**
+     * Options given as {@code [page <n>] [sort <key>] [world <name>] [player <name>]}, plus
+     * {@code [token <t>]} in page links
+     */
+    static final class Query {
+        // Command the options follow, repeated in the page links
+        final String command;
+        int page = 1;
+        // Issued with a listing and repeated in its page links
+        String token;
+        Sort sort;
+        String world;
+        String playerName;
+        UUID playerId;
+
+        Query(String command) {
+            this.command = command;
+        }
+
+        boolean isFiltered() {
+            return world != null || playerId != null;
+        }
+
+        String pageCommand(int page) {
+            StringBuilder out = new StringBuilder(command);
+            if (sort != null) out.append(" sort ").append(sort.name().toLowerCase(Locale.ROOT));
+            if (world != null) out.append(" world ").append(world);
+            if (playerName != null) out.append(" player ").append(playerName);
+            if (token != null) out.append(" token ").append(token);
+            return out.append(" page ").append(page).toString();
+        }
+    }
+
+    // One /mace line: a holder and the maces in their inventory
+    private static final class HolderRow {
+        final UUID playerId;
+        final String name;
+        final int maces;
+        final long lastSeen;
+
+        HolderRow(UUID playerId, String name, int maces, long lastSeen) {
+            this.playerId = playerId;
+            this.name = name;
+            this.maces = maces;
+            this.lastSeen = lastSeen;
+        }
+    }
+
+    // One /droppedmace line
+    private static final class DropRow {
+        final DroppedMaceIndex.IndexedDrop drop;
+        final UUID holder;
+        final String holderName;
+        final long droppedAt;
+
+        DropRow(DroppedMaceIndex.IndexedDrop drop, UUID holder, String holderName, long droppedAt) {
+            this.drop = drop;
+            this.holder = holder;
+            this.holderName = holderName;
+            this.droppedAt = droppedAt;
+        }
+    }
+
+    private MaceListings() {
+    }
+
+    /**
+     * Parse the options in {@code args} from index {@code from}. Throws
+     * IllegalArgumentException with a message for the sender.
+     */
+    static Query parse(String command, String[] args, int from, Set<Sort> sorts, boolean worldFilter,
+                       Function<String, UUID> players) {
+        Query query = new Query(command);
+        for (int i = from; i < args.length; i += 2) {
+            String option = args[i].toLowerCase(Locale.ROOT);
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option + ".");
+            }
+            String value = args[i + 1];
+            switch (option) {
+                case "page" -> {
+                    try {
+                        query.page = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        query.page = 0;
+                    }
+                    if (query.page < 1) {
+                        throw new IllegalArgumentException("Invalid page: " + value);
+                    }
+                }
+                case "token" -> query.token = value;
+                case "sort" -> {
+                    Sort sort = null;
+                    for (Sort candidate : sorts) {
+                        if (candidate.name().equalsIgnoreCase(value)) {
+                            sort = candidate;
+                        }
+                    }
+                    if (sort == null) {
+                        StringJoiner keys = new StringJoiner(", ");
+                        sorts.forEach(key -> keys.add(key.name().toLowerCase(Locale.ROOT)));
+                        throw new IllegalArgumentException("Sort by one of: " + keys);
+                    }
+                    query.sort = sort;
+                }
+                case "world" -> {
+                    if (!worldFilter) {
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                    }
+                    query.world = value;
+                }
+                case "player" -> {
+                    UUID playerId = players.apply(value);
+                    if (playerId == null) {
+                        throw new IllegalArgumentException("Unknown player: " + value);
+                    }
+                    query.playerName = value;
+                    query.playerId = playerId;
+                }
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        return query;
+    }
+
+    /**
+     * One page of mace holders. Admins can click a name for its custody history.
+     */
+    static Component holders(TrackerSnapshot snapshot, Query query, boolean admin) {
+        Map<UUID, Long> lastSeen = new HashMap<>();
+        for (MaceTracker.MaceRecord record : snapshot.getRecords()) {
+            if (record.location == MaceTracker.MaceLocation.INVENTORY && record.holder != null) {
+                lastSeen.merge(record.holder, record.lastSeen, Math::max);
+            }
+        }
+
+        NameCache names = MaceControl.getNames();
+        List<HolderRow> rows = new ArrayList<>(snapshot.holders.size());
+        for (Map.Entry<UUID, Integer> holder : snapshot.holders.entrySet()) {
+            if (query.playerId != null && !query.playerId.equals(holder.getKey())) continue;
+            rows.add(new HolderRow(holder.getKey(), names.name(holder.getKey()), holder.getValue(),
+                    lastSeen.getOrDefault(holder.getKey(), 0L)));
+        }
+
+        if (rows.isEmpty()) {
+            return Component.text(query.playerId != null
+                    ? query.playerName + " does not hold a mace."
+                    : "The mace is not currently held by anyone.", NamedTextColor.RED);
+        }
+
+        Comparator<HolderRow> byName = Comparator.comparing(row -> row.name, String.CASE_INSENSITIVE_ORDER);
+        Sort sort = query.sort != null ? query.sort : Sort.HOLDER;
+        rows.sort(switch (sort) {
+            case COUNT -> Comparator.<HolderRow>comparingInt(row -> row.maces).reversed().thenComparing(byName);
+            case AGE -> Comparator.<HolderRow>comparingLong(row -> row.lastSeen).reversed().thenComparing(byName);
+            default -> byName;
+        });
+
+        return page("The mace is currently held by", NamedTextColor.GREEN, rows, query, row -> {
+            Component name = Component.text(row.name, NamedTextColor.WHITE);
+            if (admin) {
+                name = name.clickEvent(ClickEvent.runCommand("/mace history player " + row.playerId))
+                        .hoverEvent(HoverEvent.showText(Component.text("Show custody history")));
+            }
+            return Component.text("- ", NamedTextColor.GRAY)
+                    .append(name)
+                    .append(Component.text(" (" + row.maces + ")", NamedTextColor.GRAY));
+        });
+    }
+
+    /**
+     * One page of dropped maces. The position teleports there and the ID is
+     * copied when clicked. {@code countUnloaded} adds how many dropped maces
+     * are in the ledger but not in a loaded chunk.
+     */
+    static Component drops(String title, List<DroppedMaceIndex.IndexedDrop> drops, TrackerSnapshot snapshot,
+                           Query query, Sort defaultSort, boolean countUnloaded) {
+        NameCache names = MaceControl.getNames();
+        List<DropRow> rows = new ArrayList<>(drops.size());
+        Set<UUID> located = new HashSet<>();
+        for (DroppedMaceIndex.IndexedDrop drop : drops) {
+            located.add(drop.maceId);
+            if (query.world != null && !query.world.equalsIgnoreCase(drop.worldName)) continue;
+
+            MaceTracker.MaceRecord record = snapshot.records.get(drop.maceId);
+            UUID holder = record != null ? record.holder : null;
+            if (query.playerId != null && !query.playerId.equals(holder)) continue;
+            rows.add(new DropRow(drop, holder, holder != null ? names.name(holder) : "Unknown",
+                    record != null ? record.lastSeen : drop.indexedAt));
+        }
+
+        Sort sort = query.sort != null ? query.sort : defaultSort;
+        Comparator<DropRow> byAge = Comparator.<DropRow>comparingLong(row -> row.droppedAt).reversed();
+        switch (sort) {
+            case HOLDER -> rows.sort(Comparator.<DropRow, String>comparing(row -> row.holderName,
+                    String.CASE_INSENSITIVE_ORDER).thenComparing(byAge));
+            case WORLD -> rows.sort(Comparator.<DropRow, String>comparing(row -> row.drop.worldName)
+                    .thenComparingDouble(row -> row.drop.x).thenComparingDouble(row -> row.drop.z));
+            case AGE -> rows.sort(byAge);
+            default -> {
+                // Already nearest first
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        Component page = page(title, NamedTextColor.AQUA, rows, query, row -> {
+            DroppedMaceIndex.IndexedDrop drop = row.drop;
+            String maceId = drop.maceId.toString();
+            return Component.text("- ", NamedTextColor.GRAY)
+                    .append(Component.text(drop.worldName + " " + drop.getBlockX() + ", " + drop.getBlockY() + ", "
+                                    + drop.getBlockZ(), NamedTextColor.AQUA)
+                            .clickEvent(ClickEvent.runCommand("/droppedmace tp " + maceId))
+                            .hoverEvent(HoverEvent.showText(Component.text("Teleport to this mace"))))
+                    .append(Component.text(" | Dropped by: " + row.holderName + " | ", NamedTextColor.GRAY))
+                    .append(Component.text("Mace ID: " + maceId.substring(0, 8), NamedTextColor.GRAY)
+                            .clickEvent(ClickEvent.copyToClipboard(maceId))
+                            .hoverEvent(HoverEvent.showText(Component.text("Copy " + maceId))))
+                    .append(Component.text(" | Time elapsed: " + (now - row.droppedAt) / 1000 + "s",
+                            NamedTextColor.GRAY));
+        });
+
+        if (countUnloaded) {
+            // Drops in unloaded chunks are still in the ledger, just not locatable right now
+            int unloaded = 0;
+            for (MaceTracker.MaceRecord record : snapshot.getRecords()) {
+                if (record.location == MaceTracker.MaceLocation.DROPPED && !located.contains(record.maceId)) {
+                    unloaded++;
+                }
+            }
+            if (unloaded > 0) {
+                page = page.append(Component.newline())
+                        .append(Component.text("(" + unloaded + " more dropped in unloaded chunks)", NamedTextColor.GRAY));
+            }
+        }
+        return page;
+    }
+
+    private static <T> Component page(String title, NamedTextColor color, List<T> rows, Query query,
+                                      Function<T, Component> render) {
+        int pages = Math.max(1, (rows.size() + PAGE_SIZE - 1) / PAGE_SIZE);
+        int page = Math.min(query.page, pages);
+
+        TextComponent.Builder out = Component.text();
+        out.append(Component.text(title + (pages > 1 ? " (page " + page + "/" + pages + ", " + rows.size() + " total)" : "")
+                + ":", color));
+        if (rows.isEmpty()) {
+            out.append(Component.newline()).append(Component.text("- None", NamedTextColor.GRAY));
+        }
+        for (int i = (page - 1) * PAGE_SIZE; i < Math.min(rows.size(), page * PAGE_SIZE); i++) {
+            out.append(Component.newline()).append(render.apply(rows.get(i)));
+        }
+
+        if (pages > 1) {
+            out.append(Component.newline())
+                    .append(pageLink("« Prev", page > 1 ? query.pageCommand(page - 1) : null))
+                    .append(Component.text("  Page " + page + "/" + pages + "  ", NamedTextColor.GRAY))
+                    .append(pageLink("Next »", page < pages ? query.pageCommand(page + 1) : null));
+        }
+        return out.build();
+    }
+
+    private static Component pageLink(String text, String command) {
+        if (command == null) {
+            return Component.text(text, NamedTextColor.DARK_GRAY);
+        }
+        return Component.text(text, NamedTextColor.AQUA)
+                .clickEvent(ClickEvent.runCommand(command))
+                .hoverEvent(HoverEvent.showText(Component.text(command)));
+    }
+}
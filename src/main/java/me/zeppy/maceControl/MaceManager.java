@@ -1,23 +1,57 @@
 package me.zeppy.maceControl;
 
 import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Item;
+import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.persistence.PersistentDataContainer;
-import org.bukkit.persistence.PersistentDataType;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class MaceManager {
 
+    private static final String LEGACY_DATA_FILE = "maceData.yml";
+    // Name of the backend that holds the latest save
+    private static final String BACKEND_FILE = "maceData.backend";
+
     private final MaceControl plugin;
     private int MAX_MACE_COUNT;
 
+    // Saves run one at a time off the main thread
+    private final ExecutorService saveExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "MaceControl-Save");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Tracker epoch of the data last written to disk
+    private volatile long lastSavedEpoch = -1;
+    private final MaceJournal journal;
+    private final MaceStorage storage;
+    // Backend named in BACKEND_FILE, save thread only after loading
+    private String savedBackend;
+    // Journal segment the previous generation of the data file starts replaying from
+    private long previousSnapshotSegment;
+    // Saved data exists but could not be read: never save over it
+    private volatile boolean dataUnreadable;
+
     public int getMaxMaceCount() {
         return MAX_MACE_COUNT;
     }
@@ -26,8 +60,22 @@ public class MaceManager {
         return plugin;
     }
 
+    MaceJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * True when saved mace data exists but could not be loaded. The ledger
+     * then undercounts, so saving and crafting stay off until it is repaired.
+     */
+    public boolean isDataUnreadable() {
+        return dataUnreadable;
+    }
+
     public MaceManager(MaceControl plugin) {
         this.plugin = plugin;
+        this.journal = new MaceJournal(plugin, new File(plugin.getDataFolder(), "journal"));
+        this.storage = MaceStorage.create(plugin);
         this.MAX_MACE_COUNT = plugin.getConfig().getInt("max-mace-count", 5);
     }
 
@@ -38,98 +86,251 @@ public class MaceManager {
     }
 
     void loadMaceData() {
+        long start = System.nanoTime();
+        try {
+            load();
+        } finally {
+            MaceControl.getMetrics().record("data.load", start);
+        }
+    }
+
+    private void load() {
         File dataFolder = plugin.getDataFolder();
         if (!dataFolder.exists()) {
             dataFolder.mkdirs();
         }
 
-        File dataFile = new File(plugin.getDataFolder(), "maceData.yml");
-
-        if (!dataFile.exists()) {
-            plugin.getLogger().info("No maceData.yml found, starting fresh.");
-            return;
-        }
+        File legacyFile = new File(dataFolder, LEGACY_DATA_FILE);
+        MaceTracker tracker = MaceControl.getTracker();
 
-        YamlConfiguration config = YamlConfiguration.loadConfiguration(dataFile);
+        // Clear existing data before loading
+        tracker.clear();
 
-        // Load mace count
-        MaceControl.getTracker().setMaceCount(config.getInt("maceCount", 0));
-        plugin.getLogger().info("Loaded maceCount: " + MaceControl.getTracker().getMaceCount());
+        long journalSegment = 0;
+        boolean migrated = false;
+        boolean imported = false;
+        MaceDataFile.Contents contents = null;
+        try {
+            // Also fails when the configured backend cannot be used at all
+            contents = storage.load();
+            savedBackend = readSavedBackend(dataFolder);
+            if (!storage.name().equals(savedBackend)) {
+                // Switching backends: the previous one holds the latest save, whatever is left in this one
+                contents = MaceStorage.open(plugin, savedBackend).load();
+                imported = contents != null;
+            }
+            if (contents == null && Files.exists(new File(dataFolder, BACKEND_FILE).toPath())) {
+                throw new IOException("nothing is saved in the " + savedBackend + " storage backend, which "
+                        + BACKEND_FILE + " says holds the latest save (delete " + BACKEND_FILE
+                        + " as well to start over)");
+            }
+        } catch (IOException e) {
+            // Saved data exists but is unreadable: never overwrite it with an import or a fresh start
+            dataUnreadable = true;
+            plugin.getLogger().severe("Could not load mace data: " + e.getMessage()
+                    + ". Saving and crafting are disabled so nothing is overwritten. Restore the data from a backup"
+                    + " or make the storage backend usable again, then restart the server.");
+        }
+        if (contents != null) {
+            journalSegment = contents.journalSegment;
+            previousSnapshotSegment = journalSegment;
+            tracker.loadRecords(contents.records);
+            plugin.getLogger().info("Loaded " + tracker.getMaceCount() + " tracked maces across "
+                    + tracker.getCurrentMaceHolders().size() + " holders");
+        } else if (dataUnreadable) {
+            // Start from the journal alone; its segments are never compacted without a save
+        } else if (legacyFile.exists()) {
+            YamlConfiguration config = YamlConfiguration.loadConfiguration(legacyFile);
+            journalSegment = config.getLong("journalSegment", 0);
+            importLegacyData(config, tracker);
+            migrated = true;
+        } else {
+            plugin.getLogger().info("No mace data found, starting fresh.");
+        }
+        lastSavedEpoch = tracker.getEpoch();
+
+        // Replay mutations made after the snapshot was taken
+        List<MaceJournal.Entry> entries = journal.readFrom(journalSegment);
+        tracker.applyJournalEntries(entries);
+        if (!entries.isEmpty()) {
+            plugin.getLogger().info("Replayed " + entries.size() + " journaled mace changes. Total maces: "
+                    + tracker.getMaceCount());
+        }
 
-        // Load maceIdToHolder map
-        Map<String, Object> idToHolderRaw = config.getConfigurationSection("maceIdToHolder") != null
-                ? config.getConfigurationSection("maceIdToHolder").getValues(false)
-                : new HashMap<>();
+        journal.open(Math.max(journalSegment, journal.lastSegment() + 1));
+        tracker.setJournal(journal);
 
-        // Clear existing data before loading
-        MaceControl.getTracker().getMaceIdToHolder().clear();
+        if (imported) {
+            try {
+                saveMaceDataAsync(true).join();
+                plugin.getLogger().info("Imported the " + savedBackend + " storage backend into the configured one");
+            } catch (CompletionException e) {
+                plugin.getLogger().severe("Failed to import the " + savedBackend + " storage backend: "
+                        + e.getCause().getMessage());
+            }
+        }
 
-        for (Map.Entry<String, Object> entry : idToHolderRaw.entrySet()) {
+        if (migrated) {
+            // Write the binary file right away and keep the YAML only as a backup
             try {
-                MaceControl.getTracker().getMaceIdToHolder().put(entry.getKey(), UUID.fromString((String) entry.getValue()));
-            } catch (IllegalArgumentException e) {
-                plugin.getLogger().warning("Invalid UUID for maceId: " + entry.getKey());
+                saveMaceDataAsync(true).join();
+                if (legacyFile.renameTo(new File(dataFolder, LEGACY_DATA_FILE + ".migrated"))) {
+                    plugin.getLogger().info("Migrated " + LEGACY_DATA_FILE + " to the configured storage backend");
+                }
+            } catch (CompletionException e) {
+                plugin.getLogger().severe("Failed to migrate " + LEGACY_DATA_FILE + ": " + e.getCause().getMessage());
             }
         }
-        plugin.getLogger().info("Loaded " + MaceControl.getTracker().getMaceIdToHolder().size() + " mace ID mappings");
 
-        // Load currentMaceHolders map
-        Map<String, Object> holderMapRaw = config.getConfigurationSection("currentMaceHolders") != null
-                ? config.getConfigurationSection("currentMaceHolders").getValues(false)
-                : new HashMap<>();
+        plugin.getLogger().info("Mace data loaded successfully.");
+    }
 
-        // Clear existing data before loading
-        MaceControl.getTracker().getCurrentMaceHolders().clear();
+    // Installs from before the marker only ever saved to the data file
+    private static String readSavedBackend(File dataFolder) throws IOException {
+        Path file = new File(dataFolder, BACKEND_FILE).toPath();
+        if (!Files.exists(file)) return MaceStorage.FILE;
+        String name = Files.readString(file, StandardCharsets.UTF_8).trim();
+        if (!MaceStorage.FILE.equals(name) && !MaceStorage.SQLITE.equals(name)) {
+            throw new IOException(BACKEND_FILE + " names an unknown storage backend '" + name + "'");
+        }
+        return name;
+    }
 
-        for (Map.Entry<String, Object> entry : holderMapRaw.entrySet()) {
-            try {
-                UUID uuid = UUID.fromString(entry.getKey());
-                int count = entry.getValue() instanceof Integer ? (int) entry.getValue() : 0;
-                MaceControl.getTracker().getCurrentMaceHolders().put(uuid, count);
-            } catch (Exception e) {
-                plugin.getLogger().warning("Failed to parse mace holder entry: " + entry + ", Error: " + e.getMessage());
+    private static void writeSavedBackend(File dataFolder, String name) throws IOException {
+        Path file = new File(dataFolder, BACKEND_FILE).toPath();
+        Path temp = file.resolveSibling(BACKEND_FILE + ".tmp");
+        Files.writeString(temp, name, StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void importLegacyData(YamlConfiguration config, MaceTracker tracker) {
+        List<MaceTracker.MaceRecord> records = new ArrayList<>();
+        if (config.getConfigurationSection("maces") != null) {
+            // Ledger format: maces.<id>.{holder, location, lastSeen}
+            ConfigurationSection macesSection = config.getConfigurationSection("maces");
+            for (String maceId : macesSection.getKeys(false)) {
+                ConfigurationSection entry = macesSection.getConfigurationSection(maceId);
+                if (entry == null) continue;
+                try {
+                    String holder = entry.getString("holder");
+                    MaceTracker.MaceLocation location = MaceTracker.MaceLocation.valueOf(
+                            entry.getString("location", MaceTracker.MaceLocation.INVENTORY.name()));
+                    records.add(new MaceTracker.MaceRecord(UUID.fromString(maceId), holder != null ? UUID.fromString(holder) : null,
+                            location, null, entry.getLong("lastSeen", System.currentTimeMillis())));
+                } catch (IllegalArgumentException e) {
+                    plugin.getLogger().warning("Invalid ledger entry for maceId: " + maceId);
+                }
+            }
+        } else {
+            // Legacy format: only maceIdToHolder is trustworthy, counts are rebuilt from it
+            Map<String, Object> idToHolderRaw = config.getConfigurationSection("maceIdToHolder") != null
+                    ? config.getConfigurationSection("maceIdToHolder").getValues(false)
+                    : new HashMap<>();
+
+            long now = System.currentTimeMillis();
+            for (Map.Entry<String, Object> entry : idToHolderRaw.entrySet()) {
+                try {
+                    records.add(new MaceTracker.MaceRecord(UUID.fromString(entry.getKey()), UUID.fromString((String) entry.getValue()),
+                            MaceTracker.MaceLocation.INVENTORY, null, now));
+                } catch (IllegalArgumentException e) {
+                    plugin.getLogger().warning("Invalid UUID for maceId: " + entry.getKey());
+                }
             }
         }
-        plugin.getLogger().info("Loaded " + MaceControl.getTracker().getCurrentMaceHolders().size() + " mace holders");
 
-        plugin.getLogger().info("Mace data loaded successfully.");
+        tracker.loadRecords(records);
+        plugin.getLogger().info("Imported " + tracker.getMaceCount() + " tracked maces from " + LEGACY_DATA_FILE);
     }
 
+    /**
+     * Save if anything changed since the last save, and wait for it to finish.
+     */
     void saveMaceData() {
-        File dataFolder = plugin.getDataFolder();
-        if (!dataFolder.exists()) {
-            dataFolder.mkdirs();
+        try {
+            saveMaceDataAsync(false).join();
+        } catch (CompletionException e) {
+            plugin.getLogger().severe("Failed to save mace data: " + e.getCause().getMessage());
         }
+    }
 
-        File dataFile = new File(plugin.getDataFolder(), "maceData.yml");
-        YamlConfiguration config = new YamlConfiguration();
+    /**
+     * Capture a snapshot on the calling thread and write it on the save thread.
+     * Completes with false when the data was already up to date on disk.
+     * A successful save also compacts the journal segments it covers.
+     */
+    CompletableFuture<Boolean> saveMaceDataAsync(boolean force) {
+        MaceTracker tracker = MaceControl.getTracker();
+        if (dataUnreadable || (!force && tracker.getEpoch() == lastSavedEpoch)) {
+            return CompletableFuture.completedFuture(false);
+        }
 
-        // Save mace count
-        config.set("maceCount", MaceControl.getTracker().getMaceCount());
+        // The snapshot covers every segment before the one it was captured in;
+        // replay starts at that segment
+        long start = System.nanoTime();
+        MaceTracker.Checkpoint checkpoint = tracker.checkpoint(journal);
+        TrackerSnapshot snapshot = checkpoint.snapshot;
+        long journalSegment = checkpoint.journalSegment;
+        MaceControl.getMetrics().record("data.snapshot", start);
+
+        return CompletableFuture.supplyAsync(() -> {
+            // A newer snapshot may already have been written by a queued save
+            if (!force && snapshot.epoch <= lastSavedEpoch) {
+                return false;
+            }
+            long writeStart = System.nanoTime();
+            try {
+                writeSnapshot(snapshot, journalSegment);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            } finally {
+                MaceControl.getMetrics().record("async.data.write", writeStart);
+            }
+            lastSavedEpoch = snapshot.epoch;
+            // Keep the segments the previous generation needs, in case the new file is lost
+            journal.deleteSegmentsBefore(previousSnapshotSegment);
+            previousSnapshotSegment = journalSegment;
+            return true;
+        }, saveExecutor);
+    }
 
-        // Save maceIdToHolder
-        Map<String, String> idToHolderStr = new HashMap<>();
-        for (Map.Entry<String, UUID> entry : MaceControl.getTracker().getMaceIdToHolder().entrySet()) {
-            idToHolderStr.put(entry.getKey(), entry.getValue().toString());
+    /**
+     * Flush pending data and wait for in-flight saves before the plugin unloads.
+     */
+    void shutdown() {
+        saveMaceData();
+        MaceControl.getTracker().setJournal(null);
+        journal.close();
+        saveExecutor.shutdown();
+        try {
+            if (!saveExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Timed out waiting for mace data save to finish");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        config.createSection("maceIdToHolder", idToHolderStr);
+        storage.close();
+    }
 
-        // Save currentMaceHolders
-        Map<String, Integer> holderCountsStr = new HashMap<>();
-        for (Map.Entry<UUID, Integer> entry : MaceControl.getTracker().getCurrentMaceHolders().entrySet()) {
-            holderCountsStr.put(entry.getKey().toString(), entry.getValue());
+    private void writeSnapshot(TrackerSnapshot snapshot, long journalSegment) throws IOException {
+        File dataFolder = plugin.getDataFolder();
+        if (!dataFolder.exists()) {
+            dataFolder.mkdirs();
         }
-        config.createSection("currentMaceHolders", holderCountsStr);
 
-        try {
-            config.save(dataFile);
-            plugin.getLogger().info("Mace data saved. Current holders: " + MaceControl.getTracker().getCurrentMaceHolders().size());
-        } catch (IOException e) {
-            plugin.getLogger().severe("Failed to save mace data: " + e.getMessage());
+        storage.write(snapshot, journalSegment);
+        if (!storage.name().equals(savedBackend)) {
+            // Before the journal is compacted, so a crash here only repeats the import
+            writeSavedBackend(dataFolder, storage.name());
+            savedBackend = storage.name();
         }
+        plugin.getLogger().info("Mace data saved. Current holders: " + snapshot.holders.size());
     }
 
-    public ItemStack tagMace(ItemStack mace, UUID creatorUUID) {
+    /**
+     * Tag a crafted mace with the ID reserved for it. Items that already carry
+     * an ID are left alone.
+     */
+    public ItemStack tagMace(ItemStack mace, UUID maceId) {
         if (mace == null || mace.getType() == Material.AIR) return mace;
 
         ItemMeta meta = mace.getItemMeta();
@@ -137,45 +338,62 @@ public class MaceManager {
 
         PersistentDataContainer container = meta.getPersistentDataContainer();
 
-        if (!container.has(MaceControl.MACE_ID_KEY, PersistentDataType.STRING)) {
-            String uniqueId = UUID.randomUUID().toString();
-            container.set(MaceControl.MACE_ID_KEY, PersistentDataType.STRING, uniqueId);
+        if (!container.has(MaceControl.MACE_ID_KEY)) {
+            container.set(MaceControl.MACE_ID_KEY, MaceIdDataType.INSTANCE, maceId);
             mace.setItemMeta(meta);
-
-            MaceControl.getTracker().getMaceIdToHolder().put(uniqueId, creatorUUID);
         }
 
         return mace;
     }
 
-    public static String getMaceID(ItemStack item) {
-        if (item == null || item.getType() != Material.MACE) return null;
+    public static UUID getMaceID(ItemStack item) {
+        return MaceInspector.maceId(item);
+    }
 
+    /**
+     * Rewrite a string-tagged mace ID in the binary format. Returns true if the
+     * item was changed; callers holding a copy must write it back.
+     */
+    public static boolean migrateMaceId(ItemStack item) {
+        // Only clone the meta for items that actually need rewriting
+        UUID maceId = MaceInspector.legacyId(item);
+        if (maceId == null) return false;
         ItemMeta meta = item.getItemMeta();
-        if (meta == null) return null;
+        if (meta == null) return false;
 
         PersistentDataContainer container = meta.getPersistentDataContainer();
-        if (!container.has(MaceControl.MACE_ID_KEY, PersistentDataType.STRING)) return null;
-
-        return container.get(MaceControl.MACE_ID_KEY, PersistentDataType.STRING);
+        container.set(MaceControl.MACE_ID_KEY, MaceIdDataType.INSTANCE, maceId);
+        item.setItemMeta(meta);
+        return true;
     }
 
-    // Replace this with your actual check for mace uniqueness/tag
-    public boolean isUniqueMace(ItemStack item) {
-        if (item == null) {
-            return false;
-        }
-        if (item.getType() != Material.MACE) {
-            return false;
+    /**
+     * Migrate every string-tagged mace in an inventory in place
+     */
+    public static int migrateInventory(Inventory inventory) {
+        int migrated = 0;
+        ItemStack[] contents = inventory.getContents();
+        for (int slot = 0; slot < contents.length; slot++) {
+            ItemStack item = contents[slot];
+            if (migrateMaceId(item)) {
+                inventory.setItem(slot, item);
+                migrated++;
+            }
         }
+        return migrated;
+    }
 
-        ItemMeta meta = item.getItemMeta();
-        if (meta == null) {
-            return false;
+    /**
+     * Migrate a dropped mace entity's item, writing the changed copy back
+     */
+    public static void migrateMaceId(Item itemEntity) {
+        ItemStack stack = itemEntity.getItemStack();
+        if (migrateMaceId(stack)) {
+            itemEntity.setItemStack(stack);
         }
+    }
 
-        PersistentDataContainer container = meta.getPersistentDataContainer();
-        boolean hasKey = container.has(MaceControl.MACE_ID_KEY, PersistentDataType.STRING);
-        return hasKey;
+    public boolean isUniqueMace(ItemStack item) {
+        return MaceInspector.isMace(item);
     }
-}
\ No newline at end of file
+}
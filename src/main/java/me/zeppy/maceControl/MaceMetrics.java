@@ -0,0 +1,255 @@
+package me.zeppy.maceControl;
+
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Low-overhead timers for MaceControl's hot paths. Every event handler is
+ * registered through a timing executor, and the data, tracker and command
+ * paths record their own timings. Each timer keeps a count, total, max and a
+ * log-linear histogram (four buckets per power of two) for percentiles.
+ * Shown by {@code /macecontrol stats} and optionally exported in Prometheus
+ * text format for node_exporter's textfile collector.
+ * <p>
+ * Timers named {@code async.*} run off the main thread and are left out of
+ * the per-tick estimate.
+ */
+public class MaceMetrics {
+    // Four sub-buckets per power of two: percentiles are within ~19%
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int BUCKETS = 64 << SUB_BUCKET_BITS;
+
+    public static final class Timer {
+        public final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        Timer(String name) {
+            this.name = name;
+        }
+
+        public void record(long startNanos) {
+            recordNanos(System.nanoTime() - startNanos);
+        }
+
+        public void recordNanos(long nanos) {
+            if (nanos < 0) nanos = 0;
+            count.increment();
+            totalNanos.add(nanos);
+            buckets.incrementAndGet(bucket(nanos));
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        /**
+         * Upper bound of the bucket holding the given quantile (0..1)
+         */
+        public long percentileNanos(double quantile) {
+            long total = 0;
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            if (total == 0) return 0;
+
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(1, rank)) {
+                    return Math.min(upperBound(i), getMaxNanos());
+                }
+            }
+            return getMaxNanos();
+        }
+
+        void reset() {
+            count.reset();
+            totalNanos.reset();
+            maxNanos.set(0);
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+        }
+    }
+
+    private final MaceControl plugin;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private volatile long since = System.nanoTime();
+
+    public MaceMetrics(MaceControl plugin) {
+        this.plugin = plugin;
+    }
+
+    // Values below 2^SUB_BUCKET_BITS get their own bucket; above that, the
+    // exponent picks the group and the next bits pick the sub-bucket
+    static int bucket(long nanos) {
+        if (nanos < (1 << SUB_BUCKET_BITS)) return (int) nanos;
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & ((1 << SUB_BUCKET_BITS) - 1);
+        return Math.min(BUCKETS - 1, ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + sub);
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < (1 << SUB_BUCKET_BITS)) return bucket;
+        int exponent = (bucket >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+        long sub = bucket & ((1 << SUB_BUCKET_BITS) - 1);
+        long base = 1L << exponent;
+        return base + ((sub + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    public Timer timer(String name) {
+        return timers.computeIfAbsent(name, Timer::new);
+    }
+
+    public void record(String name, long startNanos) {
+        timer(name).record(startNanos);
+    }
+
+    public List<Timer> getTimers() {
+        List<Timer> sorted = new ArrayList<>(timers.values());
+        sorted.sort(Comparator.comparing(timer -> timer.name));
+        return sorted;
+    }
+
+    /**
+     * Nanoseconds since the timers were created or last reset
+     */
+    public long getWindowNanos() {
+        return System.nanoTime() - since;
+    }
+
+    public void reset() {
+        for (Timer timer : timers.values()) {
+            timer.reset();
+        }
+        since = System.nanoTime();
+    }
+
+    /**
+     * Register every {@link EventHandler} method of {@code listener} with an
+     * executor that times it as {@code event.<method>}
+     */
+    @SuppressWarnings("unchecked")
+    public void registerTimed(Listener listener) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (Method method : listener.getClass().getDeclaredMethods()) {
+            EventHandler handler = method.getAnnotation(EventHandler.class);
+            if (handler == null || method.getParameterCount() != 1
+                    || !Event.class.isAssignableFrom(method.getParameterTypes()[0])) {
+                continue;
+            }
+
+            Class<? extends Event> eventClass = (Class<? extends Event>) method.getParameterTypes()[0];
+            MethodHandle invoker;
+            try {
+                method.setAccessible(true);
+                invoker = lookup.unreflect(method);
+            } catch (IllegalAccessException e) {
+                plugin.getLogger().warning("Could not time handler " + method.getName() + ": " + e.getMessage());
+                continue;
+            }
+
+            MethodHandle exact = invoker.asType(MethodType.methodType(void.class, Listener.class, Event.class));
+            Timer timer = timer("event." + method.getName());
+            EventExecutor executor = (target, event) -> {
+                // Bukkit hands every executor subclasses of the registered event too
+                if (!eventClass.isInstance(event)) return;
+                long start = System.nanoTime();
+                try {
+                    exact.invokeExact(target, event);
+                } catch (Throwable t) {
+                    throw new EventException(t);
+                } finally {
+                    timer.record(start);
+                }
+            };
+            plugin.getServer().getPluginManager().registerEvent(eventClass, listener, handler.priority(),
+                    executor, plugin, handler.ignoreCancelled());
+        }
+    }
+
+    /**
+     * Write all timers in Prometheus text format, replacing the file atomically
+     */
+    void exportPrometheus(Path file) throws IOException {
+        StringBuilder out = new StringBuilder(4096);
+        out.append("# HELP macecontrol_duration_seconds Time spent in MaceControl handlers, tasks and commands\n");
+        out.append("# TYPE macecontrol_duration_seconds summary\n");
+        List<Timer> sorted = getTimers();
+        for (Timer timer : sorted) {
+            String label = "name=\"" + timer.name + "\"";
+            for (double quantile : new double[]{0.5, 0.99}) {
+                out.append("macecontrol_duration_seconds{").append(label).append(",quantile=\"").append(quantile)
+                        .append("\"} ").append(seconds(timer.percentileNanos(quantile))).append('\n');
+            }
+            out.append("macecontrol_duration_seconds_sum{").append(label).append("} ")
+                    .append(seconds(timer.getTotalNanos())).append('\n');
+            out.append("macecontrol_duration_seconds_count{").append(label).append("} ")
+                    .append(timer.getCount()).append('\n');
+        }
+
+        out.append("# HELP macecontrol_duration_max_seconds Slowest single call since the last reset\n");
+        out.append("# TYPE macecontrol_duration_max_seconds gauge\n");
+        for (Timer timer : sorted) {
+            out.append("macecontrol_duration_max_seconds{name=\"").append(timer.name).append("\"} ")
+                    .append(seconds(timer.getMaxNanos())).append('\n');
+        }
+
+        out.append("# HELP macecontrol_maces_tracked Maces in the ledger\n");
+        out.append("# TYPE macecontrol_maces_tracked gauge\n");
+        out.append("macecontrol_maces_tracked ").append(MaceControl.getTracker().getMaceCount()).append('\n');
+        out.append("# HELP macecontrol_dropped_maces_indexed Dropped mace entities in loaded chunks\n");
+        out.append("# TYPE macecontrol_dropped_maces_indexed gauge\n");
+        out.append("macecontrol_dropped_maces_indexed ").append(MaceControl.getDropIndex().size()).append('\n');
+
+        // node_exporter may read at any time, so never expose a half-written file
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(out.toString());
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+}
@@ -0,0 +1,266 @@
+package me.zeppy.maceControl;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Streaming NBT reader that finds mace ID tags without building a tag tree.
+ * Only the named top-level sections (e.g. {@code Inventory}) are descended
+ * into; everything else is skipped byte-wise. Inside a section every compound
+ * is searched, so maces nested in shulker boxes or bundles are found too.
+ * <p>
+ * When a section is a list of compounds (block entities, entities) each hit
+ * is reported with the position of the element it was found in, taken from
+ * the element's {@code x}/{@code y}/{@code z} ints or its {@code Pos} list.
+ */
+final class MaceNbtScanner {
+
+    interface Listener {
+        /**
+         * @param position x, y, z of the containing element, or null if it has none
+         */
+        void found(String section, UUID maceId, double[] position);
+    }
+
+    // A compound directly inside a section list, collecting hits until its position is known
+    private static final class Element {
+        final int depth;
+        final double[] position = new double[3];
+        boolean positioned;
+        List<UUID> hits;
+
+        Element(int depth) {
+            this.depth = depth;
+        }
+    }
+
+    private static final int TAG_END = 0;
+    private static final int TAG_BYTE = 1;
+    private static final int TAG_SHORT = 2;
+    private static final int TAG_INT = 3;
+    private static final int TAG_LONG = 4;
+    private static final int TAG_FLOAT = 5;
+    private static final int TAG_DOUBLE = 6;
+    private static final int TAG_BYTE_ARRAY = 7;
+    private static final int TAG_STRING = 8;
+    private static final int TAG_LIST = 9;
+    private static final int TAG_COMPOUND = 10;
+    private static final int TAG_INT_ARRAY = 11;
+    private static final int TAG_LONG_ARRAY = 12;
+
+    private static final int MAX_DEPTH = 512;
+
+    private final String key;
+    private final Set<String> sections;
+    private final byte[] scratch = new byte[4096];
+
+    /**
+     * @param key      the mace ID key as stored by Bukkit, e.g. {@code macecontrol:mace_id}
+     * @param sections top-level tags to search
+     */
+    MaceNbtScanner(String key, Set<String> sections) {
+        this.key = key;
+        this.sections = sections;
+    }
+
+    /**
+     * Scan one uncompressed NBT document, reporting each mace ID with the
+     * section it was found in
+     */
+    void scan(DataInput in, Listener found) throws IOException {
+        if (in.readByte() != TAG_COMPOUND) {
+            throw new IOException("Root tag is not a compound");
+        }
+        skipString(in);
+        readCompound(in, null, found, 0, null);
+    }
+
+    // section is null until we are inside one of the searched sections; element
+    // is the section list entry we are in, if any
+    private void readCompound(DataInput in, String section, Listener found, int depth, Element element) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("NBT nested too deeply");
+        }
+        while (true) {
+            int type = in.readByte();
+            if (type == TAG_END) return;
+
+            String name = in.readUTF();
+            if (section == null) {
+                if (!sections.contains(name)) {
+                    skipPayload(in, type, depth + 1);
+                } else if (type == TAG_LIST) {
+                    readSectionList(in, name, found, depth + 1);
+                } else {
+                    readPayload(in, type, name, found, depth + 1, null);
+                }
+            } else if (name.equals(key)) {
+                UUID maceId = readMaceId(in, type);
+                if (maceId != null) {
+                    if (element != null) {
+                        if (element.hits == null) element.hits = new ArrayList<>(1);
+                        element.hits.add(maceId);
+                    } else {
+                        found.found(section, maceId, null);
+                    }
+                }
+            } else if (element != null && depth == element.depth && readPosition(in, type, name, element)) {
+                // Position of the section element itself
+            } else {
+                readPayload(in, type, section, found, depth + 1, element);
+            }
+        }
+    }
+
+    private void readSectionList(DataInput in, String section, Listener found, int depth) throws IOException {
+        int elementType = in.readByte();
+        int length = in.readInt();
+        if (elementType != TAG_COMPOUND) {
+            for (int i = 0; i < length; i++) {
+                readPayload(in, elementType, section, found, depth + 1, null);
+            }
+            return;
+        }
+
+        for (int i = 0; i < length; i++) {
+            Element element = new Element(depth + 1);
+            readCompound(in, section, found, depth + 1, element);
+            if (element.hits != null) {
+                for (UUID maceId : element.hits) {
+                    found.found(section, maceId, element.positioned ? element.position : null);
+                }
+            }
+        }
+    }
+
+    // Read x/y/z or Pos into the element; false (nothing consumed) for any other tag
+    private boolean readPosition(DataInput in, int type, String name, Element element) throws IOException {
+        if (type == TAG_INT && name.length() == 1) {
+            int axis = "xyz".indexOf(name.charAt(0));
+            if (axis < 0) return false;
+            element.position[axis] = in.readInt();
+            element.positioned = true;
+            return true;
+        }
+        if (type == TAG_LIST && name.equals("Pos")) {
+            int elementType = in.readByte();
+            int length = in.readInt();
+            if (elementType == TAG_DOUBLE && length == 3) {
+                for (int axis = 0; axis < 3; axis++) {
+                    element.position[axis] = in.readDouble();
+                }
+                element.positioned = true;
+            } else {
+                skipList(in, elementType, length, element.depth);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void readPayload(DataInput in, int type, String section, Listener found, int depth, Element element) throws IOException {
+        if (type == TAG_COMPOUND) {
+            readCompound(in, section, found, depth, element);
+        } else if (type == TAG_LIST) {
+            int elementType = in.readByte();
+            int length = in.readInt();
+            if (elementType == TAG_COMPOUND || elementType == TAG_LIST) {
+                for (int i = 0; i < length; i++) {
+                    readPayload(in, elementType, section, found, depth + 1, element);
+                }
+            } else {
+                skipList(in, elementType, length, depth);
+            }
+        } else {
+            skipPayload(in, type, depth);
+        }
+    }
+
+    private UUID readMaceId(DataInput in, int type) throws IOException {
+        if (type == TAG_BYTE_ARRAY) {
+            int length = in.readInt();
+            if (length == 16) {
+                ByteBuffer buffer = ByteBuffer.allocate(16);
+                in.readFully(buffer.array());
+                return new UUID(buffer.getLong(), buffer.getLong());
+            }
+            skipBytes(in, length);
+            return null;
+        }
+        if (type == TAG_STRING) {
+            // String IDs from before the binary format
+            try {
+                return UUID.fromString(in.readUTF());
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        skipPayload(in, type, 0);
+        return null;
+    }
+
+    private void skipPayload(DataInput in, int type, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("NBT nested too deeply");
+        }
+        switch (type) {
+            case TAG_BYTE -> skipBytes(in, 1);
+            case TAG_SHORT -> skipBytes(in, 2);
+            case TAG_INT, TAG_FLOAT -> skipBytes(in, 4);
+            case TAG_LONG, TAG_DOUBLE -> skipBytes(in, 8);
+            case TAG_BYTE_ARRAY -> skipBytes(in, in.readInt());
+            case TAG_STRING -> skipString(in);
+            case TAG_LIST -> {
+                int elementType = in.readByte();
+                skipList(in, elementType, in.readInt(), depth);
+            }
+            case TAG_COMPOUND -> {
+                int child;
+                while ((child = in.readByte()) != TAG_END) {
+                    skipString(in);
+                    skipPayload(in, child, depth + 1);
+                }
+            }
+            case TAG_INT_ARRAY -> skipBytes(in, (long) in.readInt() * 4);
+            case TAG_LONG_ARRAY -> skipBytes(in, (long) in.readInt() * 8);
+            default -> throw new IOException("Unknown NBT tag type " + type);
+        }
+    }
+
+    private void skipList(DataInput in, int elementType, int length, int depth) throws IOException {
+        switch (elementType) {
+            case TAG_END -> {
+            }
+            case TAG_BYTE -> skipBytes(in, length);
+            case TAG_SHORT -> skipBytes(in, (long) length * 2);
+            case TAG_INT, TAG_FLOAT -> skipBytes(in, (long) length * 4);
+            case TAG_LONG, TAG_DOUBLE -> skipBytes(in, (long) length * 8);
+            default -> {
+                for (int i = 0; i < length; i++) {
+                    skipPayload(in, elementType, depth + 1);
+                }
+            }
+        }
+    }
+
+    private void skipString(DataInput in) throws IOException {
+        skipBytes(in, in.readUnsignedShort());
+    }
+
+    // DataInput.skipBytes may skip less than asked on compressed streams
+    private void skipBytes(DataInput in, long count) throws IOException {
+        if (count < 0) {
+            throw new IOException("Negative NBT length");
+        }
+        while (count > 0) {
+            int chunk = (int) Math.min(count, scratch.length);
+            in.readFully(scratch, 0, chunk);
+            count -= chunk;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package me.zeppy.maceControl;
+
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Entity;
+
+/**
+ * Where MaceControl runs work that touches the world. On Paper everything
+ * runs on the main thread. On Folia, entity work runs on the region that owns
+ * the entity, chunk work on the region that owns the chunk and server-wide
+ * work on the global region, so per-player and per-chunk scans run in parallel.
+ * <p>
+ * Tasks with no delay run inline when the calling thread already owns the
+ * target, so on Paper the main-thread paths behave exactly as before.
+ */
+public interface MaceScheduler {
+
+    static MaceScheduler create(MaceControl plugin) {
+        return isFolia() ? new FoliaMaceScheduler(plugin) : new PaperMaceScheduler(plugin);
+    }
+
+    static boolean isFolia() {
+        try {
+            Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * True when different chunks and entities are owned by different threads
+     */
+    boolean isRegionized();
+
+    /**
+     * Run on the main thread (Paper) or the global region (Folia)
+     */
+    void runGlobal(Runnable task);
+
+    void runGlobalTimer(Runnable task, long delayTicks, long periodTicks);
+
+    void runAsyncTimer(Runnable task, long delayTicks, long periodTicks);
+
+    /**
+     * Run on the thread that owns {@code entity}. If the entity is removed
+     * before the task runs, {@code retired} (may be null) runs instead.
+     */
+    void runForEntity(Entity entity, Runnable task, Runnable retired, long delayTicks);
+
+    /**
+     * Run on the thread that owns the given chunk
+     */
+    void runAtChunk(World world, int chunkX, int chunkZ, Runnable task, long delayTicks);
+
+    void cancelAll();
+
+    /**
+     * Run where it is safe to reply to {@code sender}: its own region for
+     * players, the global region for the console
+     */
+    default void runFor(CommandSender sender, Runnable task) {
+        if (sender instanceof Entity entity) {
+            runForEntity(entity, task, null, 0);
+        } else {
+            runGlobal(task);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package me.zeppy.maceControl;
+
+import java.io.IOException;
+
+/**
+ * Where tracker snapshots are saved between restarts. The journal sits in
+ * front of every backend, so a backend only ever sees whole snapshots, one at
+ * a time, on the save thread.
+ * <p>
+ * A configured backend that cannot be used is never swapped for another one:
+ * the other store does not hold the latest saves, and the journal segments
+ * that would fill the gap are already gone.
+ */
+interface MaceStorage {
+    String FILE = "file";
+    String SQLITE = "sqlite";
+
+    static MaceStorage create(MaceControl plugin) {
+        String backend = plugin.getConfig().getString("storage.backend", FILE);
+        if (SQLITE.equalsIgnoreCase(backend)) {
+            if (!SqliteMaceStorage.isAvailable()) {
+                plugin.getLogger().severe("storage.backend is 'sqlite' but the SQLite driver (" + SqliteMaceStorage.DRIVER
+                        + ") is not on the server's classpath. Paper ships it; on other servers add sqlite-jdbc."
+                        + " Saving and crafting stay disabled until it is available.");
+            }
+            return open(plugin, SQLITE);
+        }
+        if (!FILE.equalsIgnoreCase(backend)) {
+            plugin.getLogger().warning("Unknown storage.backend '" + backend + "', using the data file");
+        }
+        return open(plugin, FILE);
+    }
+
+    /**
+     * The backend called {@code name}, as written by {@link #name()}
+     */
+    static MaceStorage open(MaceControl plugin, String name) {
+        return SQLITE.equals(name) ? new SqliteMaceStorage(plugin) : new FileMaceStorage(plugin);
+    }
+
+    /**
+     * {@link #FILE} or {@link #SQLITE}
+     */
+    String name();
+
+    /**
+     * Saved maces and the journal segment they cover, or null if nothing has
+     * been saved yet. Throws if saved data exists but cannot be read.
+     */
+    MaceDataFile.Contents load() throws IOException;
+
+    void write(TrackerSnapshot snapshot, long journalSegment) throws IOException;
+
+    void close();
+}
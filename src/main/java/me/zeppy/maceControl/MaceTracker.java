@@ -1,332 +1,745 @@
 package me.zeppy.maceControl;
 
-import org.bukkit.Chunk;
-import org.bukkit.World;
-import org.bukkit.entity.Entity;
-import org.bukkit.entity.Item;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Ledger of every tracked mace.
+ * <p>
+ * Threading model: all mutations are commands on a single queue, applied one
+ * at a time by whichever thread currently owns the queue (normally the thread
+ * that submitted them, since the tracker is almost never contended). This
+ * gives the following guarantees:
+ * <ul>
+ *     <li>Commands are applied in the order they were queued, across all threads,
+ *     and journaled in that same order.</li>
+ *     <li>A mutating method returns only after its command has been applied and
+ *     published, so a thread always sees its own writes. While another thread
+ *     owns the queue, the caller parks until its command is applied.</li>
+ *     <li>Reads never block: they return the latest published
+ *     {@link TrackerSnapshot}, which is replaced after every batch of commands.</li>
+ *     <li>No locks are held while commands run, and commands never submit other
+ *     commands, so there is no reentrancy.</li>
+ * </ul>
+ * Commands only transform tracker state. Anything that reads the world (such
+ * as inventory scans) happens on the calling thread before the command is queued;
+ * on Folia that is the region thread owning what was read, so several regions
+ * may submit at once.
+ */
 public class MaceTracker {
     private final MaceControl plugin;
-    private final AtomicInteger maceCount = new AtomicInteger(0);
 
-    // Thread-safe collections
-    private final ConcurrentHashMap<String, UUID> maceIdToHolder = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<UUID, Integer> currentMaceHolders = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<UUID, MaceDropInfo> pendingDrops = new ConcurrentHashMap<>();
+    // Writer-confined state: only touched by the thread draining the command queue
+    private final Map<UUID, MaceRecord> ledger = new HashMap<>();
+    private final Map<UUID, MaceDropInfo> pendingDrops = new HashMap<>();
+    private long epoch;
+    private boolean changed;
+    private MaceJournal journal; // null while loading so replayed entries are not re-journaled
+    private Reconciliation pendingReconciliation;
+    // Craft slots handed out but not yet backed by a mace in the ledger, by mace ID
+    private final Map<UUID, SlotLease> leases = new HashMap<>();
+
+    // Command queue and its current owner
+    private final Queue<Command<?>> commands = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private volatile Thread drainer;
+
+    // Latest published state, replaced after every batch that changed something
+    private volatile TrackerSnapshot snapshot = TrackerSnapshot.EMPTY;
+
+    // Where a tracked mace currently is
+    public enum MaceLocation {
+        INVENTORY,
+        DROPPED
+    }
+
+    // Ledger entry for a single mace. Immutable; moves replace the entry.
+    public static final class MaceRecord {
+        public final UUID maceId;
+        public final UUID holder;
+        public final MaceLocation location;
+        public final UUID itemEntityId;
+        public final long lastSeen;
+        // Who crafted the mace and when; null and 0 for maces that were found or imported
+        public final UUID creator;
+        public final long createdAt;
+
+        MaceRecord(UUID maceId, UUID holder, MaceLocation location, UUID itemEntityId, long lastSeen) {
+            this(maceId, holder, location, itemEntityId, lastSeen, null, 0);
+        }
 
-    // Lock for complex operations that need atomicity
-    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        MaceRecord(UUID maceId, UUID holder, MaceLocation location, UUID itemEntityId, long lastSeen,
+                   UUID creator, long createdAt) {
+            this.maceId = maceId;
+            this.holder = holder;
+            this.location = location;
+            this.itemEntityId = itemEntityId;
+            this.lastSeen = lastSeen;
+            this.creator = creator;
+            this.createdAt = createdAt;
+        }
+    }
 
     // Track mace drop information
     public static class MaceDropInfo {
         public final UUID originalHolder;
-        public final String maceId;
+        public final UUID maceId;
         public final long dropTime;
 
-        public MaceDropInfo(UUID originalHolder, String maceId) {
+        public MaceDropInfo(UUID originalHolder, UUID maceId) {
             this.originalHolder = originalHolder;
             this.maceId = maceId;
             this.dropTime = System.currentTimeMillis();
         }
     }
 
+    // A reserved craft slot. The mace ID is chosen up front so the crafted item
+    // can be tagged before the craft completes.
+    public static final class SlotLease {
+        public final UUID maceId;
+        public final UUID playerId;
+        final long expiresAt;
+
+        SlotLease(UUID maceId, UUID playerId, long expiresAt) {
+            this.maceId = maceId;
+            this.playerId = playerId;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    // How long a slot waits for its craft event to complete. Completed crafts
+    // are committed straight away, so this only covers events that never finish.
+    private static final long LEASE_TIMEOUT_MILLIS = 30_000;
+
+    // State captured for a save, together with the journal segment it starts replay from
+    static final class Checkpoint {
+        final long journalSegment;
+        final TrackerSnapshot snapshot;
+
+        Checkpoint(long journalSegment, TrackerSnapshot snapshot) {
+            this.journalSegment = journalSegment;
+            this.snapshot = snapshot;
+        }
+    }
+
+    private static final class Command<T> {
+        final Supplier<T> action;
+        final Thread waiter = Thread.currentThread();
+        T result;
+        RuntimeException failure;
+        volatile boolean applied;
+
+        Command(Supplier<T> action) {
+            this.action = action;
+        }
+
+        void apply() {
+            try {
+                result = action.get();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+    }
+
+    public MaceTracker(MaceControl plugin) {
+        this.plugin = plugin;
+    }
+
+    public MaceControl getPlugin() {
+        return plugin;
+    }
+
+    // Reads: all served from the published snapshot
+
+    /**
+     * Latest published immutable view of the tracker. Wait-free.
+     */
+    public TrackerSnapshot snapshot() {
+        return snapshot;
+    }
+
     public int getMaceCount() {
-        return maceCount.get();
+        return snapshot.getMaceCount();
     }
 
-    public void setMaceCount(int count) {
-        maceCount.set(Math.max(0, count));
+    /**
+     * Maces in the ledger plus craft slots currently reserved
+     */
+    public int getSlotsInUse() {
+        return submit(() -> {
+            long now = System.currentTimeMillis();
+            leases.values().removeIf(lease -> lease.expiresAt <= now);
+            return ledger.size() + leases.size();
+        });
     }
 
-    public Map<String, UUID> getMaceIdToHolder() {
-        return maceIdToHolder;
+    public long getEpoch() {
+        return snapshot.epoch;
     }
 
     public Map<UUID, Integer> getCurrentMaceHolders() {
-        return currentMaceHolders;
+        return snapshot.holders;
+    }
+
+    public int getHolderMaceCount(UUID playerUUID) {
+        return snapshot.holders.getOrDefault(playerUUID, 0);
+    }
+
+    public MaceRecord getRecord(UUID maceId) {
+        return maceId != null ? snapshot.records.get(maceId) : null;
+    }
+
+    public Collection<MaceRecord> getRecords() {
+        return snapshot.getRecords();
     }
 
     public Map<UUID, UUID> getPendingDrops() {
-        // Convert to old format for compatibility
-        Map<UUID, UUID> oldFormat = new HashMap<>();
-        for (Map.Entry<UUID, MaceDropInfo> entry : pendingDrops.entrySet()) {
-            oldFormat.put(entry.getKey(), entry.getValue().originalHolder);
-        }
-        return oldFormat;
+        return snapshot.pendingDropHolders;
     }
 
     public Map<UUID, MaceDropInfo> getPendingDropsNew() {
-        return pendingDrops;
+        return snapshot.pendingDrops;
     }
 
-    public MaceControl getPlugin() {
-        return plugin;
+    /**
+     * Immutable holder counts from the current snapshot
+     */
+    public Map<UUID, Integer> getCurrentHoldersCopy() {
+        return snapshot.holders;
     }
 
-    public MaceTracker(MaceControl plugin) {
-        this.plugin = plugin;
+    /**
+     * Immutable mace ID mappings from the current snapshot
+     */
+    public Map<UUID, UUID> getMaceIdHoldersCopy() {
+        return snapshot.maceIdToHolder;
     }
 
-    void refreshMaceTracking() {
-        lock.writeLock().lock();
-        try {
-            plugin.getLogger().info("Starting mace tracking refresh...");
-
-            // Clear current tracking data
-            maceCount.set(0);
-            currentMaceHolders.clear();
-            Set<String> foundMaceIds = new HashSet<>();
-            Set<UUID> validDrops = new HashSet<>();
-
-            // Step 1: Scan online players for maces in inventory
-            for (Player player : plugin.getServer().getOnlinePlayers()) {
-                int playerMaceCount = scanPlayerInventory(player, foundMaceIds);
-                if (playerMaceCount > 0) {
-                    currentMaceHolders.put(player.getUniqueId(), playerMaceCount);
-                    maceCount.addAndGet(playerMaceCount);
-                }
-            }
-
-            // Step 2: Scan for dropped maces in loaded chunks (with performance optimization)
-            int droppedMaceCount = scanDroppedMaces(foundMaceIds, validDrops);
-            maceCount.addAndGet(droppedMaceCount);
+    // Command queue
 
-            // Step 3: Clean up stale mappings
-            cleanupStaleMappings(foundMaceIds, validDrops);
+    /**
+     * Queue a command and return once it has been applied and published
+     */
+    private <T> T submit(Supplier<T> action) {
+        if (drainer == Thread.currentThread()) {
+            throw new IllegalStateException("Tracker commands must not submit other commands");
+        }
 
-            plugin.getLogger().info("Mace tracking refresh complete. Total maces: " + maceCount.get() +
-                    ", Active holders: " + currentMaceHolders.size() +
-                    ", Dropped maces: " + validDrops.size());
+        Command<T> command = new Command<>(action);
+        commands.add(command);
+        drain();
+        while (!command.applied) {
+            // Another thread owns the queue; it unparks us once the command is applied
+            LockSupport.park(this);
+            drain();
+        }
 
-        } catch (Exception e) {
-            plugin.getLogger().severe("Error during mace tracking refresh: " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            lock.writeLock().unlock();
+        if (command.failure != null) {
+            throw command.failure;
         }
+        return command.result;
     }
 
-    private int scanPlayerInventory(Player player, Set<String> foundMaceIds) {
-        int playerMaceCount = 0;
-
-        try {
-            // Check main inventory
-            ItemStack[] contents = player.getInventory().getContents();
-            if (contents != null) {
-                for (ItemStack item : contents) {
-                    if (item != null && MaceControl.getManager().isUniqueMace(item)) {
-                        playerMaceCount++;
-                        String maceId = MaceControl.getManager().getMaceID(item);
-                        if (maceId != null) {
-                            foundMaceIds.add(maceId);
-                            maceIdToHolder.put(maceId, player.getUniqueId());
-                        }
+    private void drain() {
+        while (!commands.isEmpty() && draining.compareAndSet(false, true)) {
+            drainer = Thread.currentThread();
+            List<Command<?>> batch = new ArrayList<>();
+            try {
+                boolean publish = false;
+                Command<?> command;
+                while ((command = commands.poll()) != null) {
+                    batch.add(command);
+                    command.apply();
+                    if (changed) {
+                        changed = false;
+                        epoch++;
+                        publish = true;
                     }
                 }
+                if (publish) {
+                    snapshot = new TrackerSnapshot(epoch, ledger, pendingDrops);
+                }
+            } finally {
+                // Only release waiters once their writes are visible in the snapshot
+                for (Command<?> applied : batch) {
+                    applied.applied = true;
+                    if (applied.waiter != Thread.currentThread()) {
+                        LockSupport.unpark(applied.waiter);
+                    }
+                }
+                drainer = null;
+                draining.set(false);
             }
+        }
+    }
+
+    // Loading and persistence
+
+    void setJournal(MaceJournal journal) {
+        submit(() -> {
+            this.journal = journal;
+            return null;
+        });
+    }
 
-            // Check off-hand
-            ItemStack offHandItem = player.getInventory().getItemInOffHand();
-            if (offHandItem != null && MaceControl.getManager().isUniqueMace(offHandItem)) {
-                playerMaceCount++;
-                String maceId = MaceControl.getManager().getMaceID(offHandItem);
-                if (maceId != null) {
-                    foundMaceIds.add(maceId);
-                    maceIdToHolder.put(maceId, player.getUniqueId());
+    /**
+     * Re-apply journaled mutations on top of the loaded snapshot, in order
+     */
+    void applyJournalEntries(List<MaceJournal.Entry> entries) {
+        if (entries.isEmpty()) return;
+
+        submit(() -> {
+            for (MaceJournal.Entry entry : entries) {
+                if (entry.op == MaceJournal.Op.PUT) {
+                    ledger.put(entry.maceId, new MaceRecord(entry.maceId, entry.holder, entry.location,
+                            entry.itemEntityId, entry.timestamp, entry.creator, entry.createdAt));
+                } else {
+                    ledger.remove(entry.maceId);
                 }
             }
-        } catch (Exception e) {
-            plugin.getLogger().warning("Error scanning inventory for player " + player.getName() + ": " + e.getMessage());
-        }
+            changed = true;
+            return null;
+        });
+    }
 
-        return playerMaceCount;
+    /**
+     * Add persisted records to the ledger. Used on startup only.
+     */
+    void loadRecords(Collection<MaceRecord> records) {
+        submit(() -> {
+            for (MaceRecord record : records) {
+                if (record != null && record.maceId != null) {
+                    ledger.put(record.maceId, record);
+                }
+            }
+            changed = true;
+            return null;
+        });
     }
 
-    private int scanDroppedMaces(Set<String> foundMaceIds, Set<UUID> validDrops) {
-        int droppedMaceCount = 0;
+    void clear() {
+        submit(() -> {
+            ledger.clear();
+            pendingDrops.clear();
+            leases.clear();
+            pendingReconciliation = null;
+            changed = true;
+            return null;
+        });
+    }
 
-        try {
-            // Only scan a limited number of worlds/chunks to prevent performance issues
-            int maxWorldsToScan = plugin.getConfig().getInt("performance.max-worlds-to-scan", 3);
-            int worldsScanned = 0;
+    /**
+     * Capture the state to save and the journal segment it was captured in,
+     * then rotate the journal outside the command. Replay starts at that
+     * segment, so mutations landing between the capture and the rotation are
+     * not lost; entries from before the capture are replayed over a snapshot
+     * that already contains them, which is harmless since every entry sets a
+     * mace's whole state.
+     */
+    Checkpoint checkpoint(MaceJournal journal) {
+        Checkpoint checkpoint = submit(() -> new Checkpoint(journal.currentSegment(),
+                new TrackerSnapshot(epoch, ledger, pendingDrops)));
+        journal.rotate();
+        return checkpoint;
+    }
 
-            for (World world : plugin.getServer().getWorlds()) {
-                if (worldsScanned >= maxWorldsToScan) break;
-                worldsScanned++;
+    // Reconciliation
 
-                Chunk[] loadedChunks = world.getLoadedChunks();
-                int maxChunksPerWorld = plugin.getConfig().getInt("performance.max-chunks-per-world", 100);
-                int chunksToScan = Math.min(loadedChunks.length, maxChunksPerWorld);
+    // Player-side results of a reconciliation, waiting for the drop sweep to finish.
+    // Only touched inside commands.
+    private static class Reconciliation {
+        final long startTime = System.currentTimeMillis();
+        final Set<UUID> foundMaceIds = new HashSet<>();
+        final Set<UUID> scannedPlayers = new HashSet<>();
+    }
 
-                for (int i = 0; i < chunksToScan; i++) {
-                    Chunk chunk = loadedChunks[i];
+    /**
+     * Full reconciliation pass. The ledger is kept up to date by the event
+     * handlers, so this only needs to run on startup or when an admin asks for it.
+     * Each online inventory is scanned on the thread that owns the player (all
+     * at once on Paper, in parallel across regions on Folia). Once every scan
+     * is merged, dropped maces are collected by a sweep and the ledger is
+     * cleaned up when that sweep completes.
+     */
+    void refreshMaceTracking() {
+        long start = System.nanoTime();
+        try {
+            plugin.getLogger().info("Starting mace tracking reconciliation...");
+
+            Reconciliation reconciliation = new Reconciliation();
+            MaceScheduler scheduler = MaceControl.getScheduler();
+
+            // Step 1: Scan online players for maces in inventory, each on its owning thread
+            List<Player> players = new ArrayList<>(plugin.getServer().getOnlinePlayers());
+            Set<UUID> online = new HashSet<>();
+            List<CompletableFuture<Void>> scans = new ArrayList<>(players.size());
+            for (Player player : players) {
+                online.add(player.getUniqueId());
+                CompletableFuture<Void> scan = new CompletableFuture<>();
+                scans.add(scan);
+                scheduler.runForEntity(player, () -> {
                     try {
-                        for (Entity entity : chunk.getEntities()) {
-                            if (entity instanceof Item droppedItem) {
-                                ItemStack itemStack = droppedItem.getItemStack();
-                                if (itemStack != null && MaceControl.getManager().isUniqueMace(itemStack)) {
-                                    droppedMaceCount++;
-                                    String maceId = MaceControl.getManager().getMaceID(itemStack);
-                                    if (maceId != null) {
-                                        foundMaceIds.add(maceId);
-                                        validDrops.add(entity.getUniqueId());
-                                    }
-                                }
-                            }
+                        Map<UUID, UUID> inventoryMaces = new LinkedHashMap<>();
+                        if (scanPlayerInventory(player, inventoryMaces)) {
+                            mergeInventoryScan(reconciliation, player.getUniqueId(), inventoryMaces);
                         }
-                    } catch (Exception e) {
-                        plugin.getLogger().warning("Error scanning chunk " + chunk.getX() + "," + chunk.getZ() +
-                                " in world " + world.getName() + ": " + e.getMessage());
+                    } finally {
+                        scan.complete(null);
                     }
-                }
+                }, () -> scan.complete(null), 0);
             }
+
+            // Step 2: Sweep loaded chunks for dropped maces once every inventory is merged
+            CompletableFuture.allOf(scans.toArray(new CompletableFuture[0])).thenRun(() -> scheduler.runGlobal(() -> {
+                submit(() -> {
+                    pendingReconciliation = reconciliation;
+                    return null;
+                });
+                MaceControl.getScanner().startSweep();
+            }));
+
+            // Offline players' saved inventories are read off the main thread
+            MaceControl.getOfflineAuditor().audit(online).whenComplete((result, error) -> {
+                if (error != null) {
+                    plugin.getLogger().severe("Offline inventory audit failed: " + error.getMessage());
+                } else if (plugin.isEnabled()) {
+                    scheduler.runGlobal(() -> completeOfflineAudit(result));
+                }
+            });
+
         } catch (Exception e) {
-            plugin.getLogger().severe("Error scanning dropped maces: " + e.getMessage());
+            plugin.getLogger().severe("Error during mace tracking refresh: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            MaceControl.getMetrics().record("tracker.refresh", start);
         }
-
-        return droppedMaceCount;
     }
 
-    private void cleanupStaleMappings(Set<String> foundMaceIds, Set<UUID> validDrops) {
+    /**
+     * Apply the result of a full sweep of loaded chunks
+     */
+    void completeDropSweep(Map<UUID, UUID> foundDrops, long sweepStartTime) {
         try {
-            // Remove mace IDs that were not found during scanning
-            maceIdToHolder.entrySet().removeIf(entry -> !foundMaceIds.contains(entry.getKey()));
-
-            // Clean up pending drops that are no longer relevant
-            pendingDrops.entrySet().removeIf(entry -> !validDrops.contains(entry.getKey()));
+            submit(() -> {
+                for (Map.Entry<UUID, UUID> drop : foundDrops.entrySet()) {
+                    MaceRecord record = ledger.get(drop.getKey());
+                    if (record != null && (record.lastSeen >= sweepStartTime
+                            || (record.location == MaceLocation.INVENTORY && pendingReconciliation == null))) {
+                        // The event handlers saw this mace more recently than the sweep did
+                        continue;
+                    }
+                    UUID lastHolder = record != null ? record.holder : null;
+                    moveTo(drop.getKey(), lastHolder, MaceLocation.DROPPED, drop.getValue());
+                }
 
-            // Clean up stale pending drops (older than 30 minutes)
-            long currentTime = System.currentTimeMillis();
-            long maxAge = 30 * 60 * 1000; // 30 minutes
-            pendingDrops.entrySet().removeIf(entry ->
-                    currentTime - entry.getValue().dropTime > maxAge);
+                // Step 3: Clean up stale mappings
+                Reconciliation reconciliation = pendingReconciliation;
+                if (reconciliation != null) {
+                    pendingReconciliation = null;
+                    reconciliation.foundMaceIds.addAll(foundDrops.keySet());
+                    cleanupStaleMappings(reconciliation, new HashSet<>(foundDrops.values()));
 
+                    plugin.getLogger().info("Mace tracking reconciliation complete. Total maces: " + ledger.size() +
+                            ", Dropped maces: " + foundDrops.size());
+                }
+                return null;
+            });
         } catch (Exception e) {
-            plugin.getLogger().warning("Error during cleanup: " + e.getMessage());
+            plugin.getLogger().severe("Error applying dropped mace sweep: " + e.getMessage());
         }
     }
 
     /**
-     * Safely update a player's mace count
+     * Record one player's inventory scan. Safe from any thread; scans of
+     * different players may be merged in any order.
+     */
+    private void mergeInventoryScan(Reconciliation reconciliation, UUID playerId, Map<UUID, UUID> inventoryMaces) {
+        submit(() -> {
+            reconciliation.scannedPlayers.add(playerId);
+            for (Map.Entry<UUID, UUID> entry : inventoryMaces.entrySet()) {
+                reconciliation.foundMaceIds.add(entry.getKey());
+                moveTo(entry.getKey(), entry.getValue(), MaceLocation.INVENTORY, null);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Apply an offline inventory audit. Runs on the main (global) thread so the online
+     * player set is stable; players who came online since the audit started
+     * are skipped, their live inventory is authoritative.
      */
-    public void updatePlayerMaceCount(UUID playerUUID, int change) {
-        if (playerUUID == null) return;
+    void completeOfflineAudit(OfflineInventoryAuditor.Result result) {
+        Set<UUID> online = new HashSet<>();
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            online.add(player.getUniqueId());
+        }
+
+        int[] counts = submit(() -> {
+            int added = 0;
+            int removed = 0;
+            for (Map.Entry<UUID, UUID> entry : result.maces.entrySet()) {
+                if (online.contains(entry.getValue())) continue;
+                MaceRecord record = ledger.get(entry.getKey());
+                if (record != null && record.lastSeen >= result.startTime) continue;
+                if (record == null) added++;
+                moveTo(entry.getKey(), entry.getValue(), MaceLocation.INVENTORY, null);
+            }
+
+            // Offline holders whose saved inventory no longer has the mace
+            Iterator<MaceRecord> iterator = ledger.values().iterator();
+            while (iterator.hasNext()) {
+                MaceRecord record = iterator.next();
+                if (record.location != MaceLocation.INVENTORY || record.holder == null) continue;
+                if (record.lastSeen >= result.startTime || online.contains(record.holder)) continue;
+                if (result.scannedPlayers.contains(record.holder) && !result.maces.containsKey(record.maceId)) {
+                    iterator.remove();
+                    journalRemove(record.maceId);
+                    removed++;
+                }
+            }
+            return new int[]{added, removed};
+        });
+
+        plugin.getLogger().info("Offline inventory audit: read " + result.scannedPlayers.size() + " player files in "
+                + result.durationMillis + "ms, " + result.maces.size() + " maces held offline ("
+                + counts[0] + " new, " + counts[1] + " stale removed"
+                + (result.failedFiles > 0 ? ", " + result.failedFiles + " unreadable files" : "")
+                + "). Total maces: " + getMaceCount());
+    }
 
-        lock.writeLock().lock();
+    // False if the inventory could not be read, so the player is not treated as scanned.
+    // Covers what the offline audit reads from player files, plus the cursor.
+    private boolean scanPlayerInventory(Player player, Map<UUID, UUID> inventoryMaces) {
         try {
-            int currentCount = currentMaceHolders.getOrDefault(playerUUID, 0);
-            int newCount = Math.max(0, currentCount + change);
-
-            if (newCount <= 0) {
-                currentMaceHolders.remove(playerUUID);
-                plugin.getLogger().info("Removed player " +
-                        plugin.getServer().getOfflinePlayer(playerUUID).getName() +
-                        " from mace holders (count reached 0)");
-            } else {
-                currentMaceHolders.put(playerUUID, newCount);
-                plugin.getLogger().info("Updated mace count for player " +
-                        plugin.getServer().getOfflinePlayer(playerUUID).getName() +
-                        " to " + newCount);
+            // Rewrite string-tagged IDs while we are here
+            MaceManager.migrateInventory(player.getInventory());
+            MaceManager.migrateInventory(player.getEnderChest());
+
+            UUID playerId = player.getUniqueId();
+            Consumer<UUID> found = maceId -> inventoryMaces.putIfAbsent(maceId, playerId);
+            // Main inventory, armor and off-hand
+            for (ItemStack item : player.getInventory().getContents()) {
+                MaceInspector.forEachMaceId(item, found);
             }
-        } finally {
-            lock.writeLock().unlock();
+            for (ItemStack item : player.getEnderChest().getContents()) {
+                MaceInspector.forEachMaceId(item, found);
+            }
+            // Held mid-click; gone from the inventory until the click completes
+            MaceInspector.forEachMaceId(player.getItemOnCursor(), found);
+            return true;
+        } catch (Exception e) {
+            plugin.getLogger().warning("Error scanning inventory for player " + player.getName() + ": " + e.getMessage());
+            return false;
         }
     }
 
-    /**
-     * Safely update total mace count
-     */
-    public void updateMaceCount(int change) {
-        int newCount = maceCount.addAndGet(change);
-        if (newCount < 0) {
-            maceCount.set(0);
-            newCount = 0;
+    // Runs inside a command
+    private void cleanupStaleMappings(Reconciliation reconciliation, Set<UUID> validDrops) {
+        long currentTime = System.currentTimeMillis();
+        long maxAge = 30 * 60 * 1000; // 30 minutes
+
+        // Only forget maces we could have seen: inventory maces of scanned (online)
+        // players, and drops that have been missing for longer than maxAge.
+        // Maces held by offline players stay in the ledger, and anything the
+        // event handlers touched since the reconciliation started is current.
+        Iterator<MaceRecord> iterator = ledger.values().iterator();
+        while (iterator.hasNext()) {
+            MaceRecord record = iterator.next();
+            if (reconciliation.foundMaceIds.contains(record.maceId)) continue;
+            if (record.lastSeen >= reconciliation.startTime) continue;
+
+            boolean stale = record.location == MaceLocation.INVENTORY
+                    ? record.holder == null || reconciliation.scannedPlayers.contains(record.holder)
+                    : currentTime - record.lastSeen > maxAge;
+            if (stale) {
+                iterator.remove();
+                journalRemove(record.maceId);
+            }
         }
-        plugin.getLogger().info("Updated total mace count by " + change + ". New total: " + newCount);
+
+        // Clean up pending drops that are no longer relevant
+        pendingDrops.entrySet().removeIf(entry -> !validDrops.contains(entry.getKey())
+                && currentTime - entry.getValue().dropTime > maxAge);
+        changed = true;
     }
 
     /**
-     * Register a mace drop
+     * Move a mace to a new holder/location, creating its ledger entry if needed.
+     * Runs inside a command.
      */
-    public void registerMaceDrop(UUID itemEntityId, UUID playerId, String maceId) {
-        if (itemEntityId != null && playerId != null) {
-            MaceDropInfo dropInfo = new MaceDropInfo(playerId, maceId);
-            pendingDrops.put(itemEntityId, dropInfo);
-
-            plugin.getLogger().info("Registered mace drop by " +
-                    plugin.getServer().getOfflinePlayer(playerId).getName() +
-                    " (Mace ID: " + maceId + ")");
+    private MaceRecord moveTo(UUID maceId, UUID holder, MaceLocation location, UUID itemEntityId) {
+        // Who crafted it stays with the mace wherever it goes
+        MaceRecord previous = ledger.get(maceId);
+        return previous != null
+                ? moveTo(maceId, holder, location, itemEntityId, previous.creator, previous.createdAt)
+                : moveTo(maceId, holder, location, itemEntityId, null, 0);
+    }
+
+    private MaceRecord moveTo(UUID maceId, UUID holder, MaceLocation location, UUID itemEntityId,
+                              UUID creator, long createdAt) {
+        MaceRecord record = new MaceRecord(maceId, holder, location, itemEntityId, System.currentTimeMillis(),
+                creator, createdAt);
+        ledger.put(maceId, record);
+        // Seeing the mace anywhere settles its craft lease
+        leases.remove(maceId);
+        changed = true;
+
+        if (journal != null) {
+            journal.append(MaceJournal.Entry.put(record));
+        }
+        return record;
+    }
+
+    private void journalRemove(UUID maceId) {
+        changed = true;
+        if (journal != null) {
+            journal.append(MaceJournal.Entry.remove(maceId));
         }
     }
 
+    // Craft slot leases
+
     /**
-     * Handle mace pickup
+     * Reserve a craft slot if tracked maces plus outstanding leases are below
+     * {@code limit}. The check and the reservation are one command, so
+     * simultaneous crafts at the limit cannot both succeed.
+     *
+     * @return the lease, or null if the limit has been reached
      */
-    public void handleMacePickup(UUID itemEntityId, UUID newHolderId, String maceId) {
-        if (newHolderId == null || maceId == null) return;
-
-        lock.writeLock().lock();
-        try {
-            // Handle pending drop transfer
-            MaceDropInfo dropInfo = pendingDrops.remove(itemEntityId);
-            if (dropInfo != null && !dropInfo.originalHolder.equals(newHolderId)) {
-                updatePlayerMaceCount(dropInfo.originalHolder, -1);
+    public SlotLease tryReserveSlot(UUID playerId, int limit) {
+        if (playerId == null) return null;
+
+        return submit(() -> {
+            long now = System.currentTimeMillis();
+            leases.values().removeIf(lease -> lease.expiresAt <= now);
+            if (ledger.size() + leases.size() >= limit) {
+                return null;
             }
 
-            // Add to new holder
-            updatePlayerMaceCount(newHolderId, 1);
-            maceIdToHolder.put(maceId, newHolderId);
+            SlotLease lease = new SlotLease(UUID.randomUUID(), playerId, now + LEASE_TIMEOUT_MILLIS);
+            leases.put(lease.maceId, lease);
+            return lease;
+        });
+    }
 
-            plugin.getLogger().info("Mace pickup handled. New holder: " +
-                    plugin.getServer().getOfflinePlayer(newHolderId).getName() +
-                    " (Mace ID: " + maceId + ")");
-        } finally {
-            lock.writeLock().unlock();
+    /**
+     * Turn a lease into a ledger entry once its craft has gone through. Returns
+     * the lease, or null if it was already settled, released or expired.
+     */
+    public SlotLease commitLease(UUID maceId, MaceLocation location, UUID itemEntityId) {
+        if (maceId == null) return null;
+
+        SlotLease committed = submit(() -> {
+            SlotLease lease = leases.get(maceId);
+            if (lease == null) return null;
+            moveTo(maceId, lease.playerId, location, itemEntityId, lease.playerId, System.currentTimeMillis());
+            if (location == MaceLocation.DROPPED && itemEntityId != null) {
+                pendingDrops.put(itemEntityId, new MaceDropInfo(lease.playerId, maceId));
+            }
+            return lease;
+        });
+        if (committed != null) {
+            // A spare network slot was used up; reserve the next one
+            MaceControl.getLedger().requestSync();
         }
+        return committed;
     }
 
     /**
-     * Handle mace destruction/removal
+     * Give a lease's slot back, e.g. because the craft was cancelled
      */
-    public void handleMaceDestruction(String maceId, UUID lastHolderId) {
-        lock.writeLock().lock();
-        try {
-            if (maceId != null) {
-                maceIdToHolder.remove(maceId);
-            }
+    public void releaseLease(SlotLease lease) {
+        if (lease == null) return;
+
+        submit(() -> leases.remove(lease.maceId, lease));
+    }
+
+    /**
+     * Give back every slot a player still holds, e.g. on disconnect
+     */
+    public void releaseLeases(UUID playerId) {
+        submit(() -> leases.values().removeIf(lease -> lease.playerId.equals(playerId)));
+    }
+
+    // Mutations from the event handlers
+
+    /**
+     * Register a mace drop. The item entity may be unknown (e.g. death drops).
+     */
+    public void registerMaceDrop(UUID itemEntityId, UUID playerId, UUID maceId) {
+        if (playerId == null || maceId == null) return;
 
-            if (lastHolderId != null) {
-                updatePlayerMaceCount(lastHolderId, -1);
+        submit(() -> {
+            moveTo(maceId, playerId, MaceLocation.DROPPED, itemEntityId);
+            if (itemEntityId != null) {
+                pendingDrops.put(itemEntityId, new MaceDropInfo(playerId, maceId));
             }
+            return null;
+        });
+    }
 
-            updateMaceCount(-1);
+    /**
+     * Handle mace pickup
+     */
+    public void handleMacePickup(UUID itemEntityId, UUID newHolderId, UUID maceId) {
+        if (newHolderId == null || maceId == null) return;
 
-            plugin.getLogger().info("Mace destruction handled. Mace ID: " + maceId +
-                    ", Last holder: " + (lastHolderId != null ?
-                    plugin.getServer().getOfflinePlayer(lastHolderId).getName() : "Unknown"));
-        } finally {
-            lock.writeLock().unlock();
-        }
+        submit(() -> {
+            if (itemEntityId != null) {
+                pendingDrops.remove(itemEntityId);
+            }
+            moveTo(maceId, newHolderId, MaceLocation.INVENTORY, null);
+            return null;
+        });
     }
 
     /**
-     * Get thread-safe copy of current holders
+     * Handle mace destruction/removal. Returns the holder on record, or
+     * {@code lastHolderId} if the mace was not tracked.
      */
-    public Map<UUID, Integer> getCurrentHoldersCopy() {
-        return new HashMap<>(currentMaceHolders);
+    public UUID handleMaceDestruction(UUID maceId, UUID lastHolderId) {
+        MaceRecord removed = submit(() -> {
+            MaceRecord record = maceId != null ? ledger.remove(maceId) : null;
+            if (record != null) {
+                journalRemove(maceId);
+                if (record.itemEntityId != null) {
+                    pendingDrops.remove(record.itemEntityId);
+                }
+            }
+            return record;
+        });
+
+        if (removed != null) {
+            MaceControl.getLedger().requestSync();
+            if (lastHolderId == null) {
+                lastHolderId = removed.holder;
+            }
+        }
+        return lastHolderId;
     }
 
     /**
-     * Get thread-safe copy of mace ID mappings
+     * Forget a pending drop, returning what was known about it
      */
-    public Map<String, UUID> getMaceIdHoldersCopy() {
-        return new HashMap<>(maceIdToHolder);
+    public MaceDropInfo removePendingDrop(UUID itemEntityId) {
+        if (itemEntityId == null) return null;
+
+        return submit(() -> {
+            MaceDropInfo dropInfo = pendingDrops.remove(itemEntityId);
+            if (dropInfo != null) {
+                changed = true;
+            }
+            return dropInfo;
+        });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,122 @@
+package me.zeppy.maceControl;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.bukkit.entity.Player;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Bounded UUID to player name cache for commands and log output. Filled from
+ * joins and the server's usercache.json; a miss returns a placeholder straight
+ * away and resolves the name on a background thread, so callers never wait on
+ * a profile lookup.
+ */
+public class NameCache {
+    private static final String USERCACHE_FILE = "usercache.json";
+    // Cached for players whose name could not be found, so they are not looked up again
+    private static final String UNRESOLVED = "";
+
+    private final MaceControl plugin;
+    private final Map<UUID, String> names;
+    private final Set<UUID> resolving = ConcurrentHashMap.newKeySet();
+    private final ExecutorService resolver = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "MaceControl-Names");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public NameCache(MaceControl plugin) {
+        this.plugin = plugin;
+        int capacity = Math.max(16, plugin.getConfig().getInt("performance.name-cache-size", 1000));
+        // Access-ordered, so the least recently shown names are evicted first
+        this.names = Collections.synchronizedMap(new LinkedHashMap<>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, String> eldest) {
+                return size() > capacity;
+            }
+        });
+    }
+
+    public static String placeholder(UUID playerId) {
+        return "Unknown (" + playerId.toString().substring(0, 8) + ")";
+    }
+
+    /**
+     * The player's name, or a placeholder while it is being resolved
+     */
+    public String name(UUID playerId) {
+        if (playerId == null) return "Unknown";
+
+        String name = names.get(playerId);
+        if (name == null) {
+            resolveAsync(playerId);
+            return placeholder(playerId);
+        }
+        return name.isEmpty() ? placeholder(playerId) : name;
+    }
+
+    public void remember(Player player) {
+        names.put(player.getUniqueId(), player.getName());
+    }
+
+    /**
+     * Seed the cache from the server's usercache.json in the background
+     */
+    void loadUserCache() {
+        resolver.execute(() -> {
+            File file = new File(plugin.getServer().getWorldContainer(), USERCACHE_FILE);
+            if (!file.isFile()) {
+                file = new File(USERCACHE_FILE);
+            }
+            if (!file.isFile()) return;
+
+            int loaded = 0;
+            try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                JsonElement root = JsonParser.parseReader(reader);
+                if (root == null || !root.isJsonArray()) return;
+                for (JsonElement element : root.getAsJsonArray()) {
+                    if (!element.isJsonObject()) continue;
+                    JsonObject entry = element.getAsJsonObject();
+                    if (!entry.has("uuid") || !entry.has("name")) continue;
+                    try {
+                        // Joins are newer than the usercache, so never overwrite them
+                        names.putIfAbsent(UUID.fromString(entry.get("uuid").getAsString()), entry.get("name").getAsString());
+                        loaded++;
+                    } catch (IllegalArgumentException ignored) {
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                plugin.getLogger().warning("Could not read " + USERCACHE_FILE + ": " + e.getMessage());
+                return;
+            }
+            plugin.getLogger().info("Loaded " + loaded + " player names from " + USERCACHE_FILE);
+        });
+    }
+
+    private void resolveAsync(UUID playerId) {
+        if (!resolving.add(playerId)) return;
+
+        resolver.execute(() -> {
+            try {
+                String name = plugin.getServer().getOfflinePlayer(playerId).getName();
+                names.putIfAbsent(playerId, name != null ? name : UNRESOLVED);
+            } finally {
+                resolving.remove(playerId);
+            }
+        });
+    }
+
+    void shutdown() {
+        resolver.shutdownNow();
+    }
+}
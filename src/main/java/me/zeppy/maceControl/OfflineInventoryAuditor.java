@@ -0,0 +1,140 @@
+package me.zeppy.maceControl;
+
+import org.bukkit.World;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads offline players' saved inventories from {@code playerdata/*.dat} so
+ * maces held by players who are not online can be counted. Files are parsed
+ * with {@link MaceNbtScanner} on a small fixed pool, one file per task; only
+ * the {@code Inventory} and {@code EnderItems} lists are looked at.
+ */
+public class OfflineInventoryAuditor {
+    private static final Set<String> SECTIONS = Set.of("Inventory", "EnderItems");
+    private static final String FILE_SUFFIX = ".dat";
+
+    public static final class Result {
+        public final long startTime;
+        // Players whose saved data was read successfully
+        public final Set<UUID> scannedPlayers;
+        // Mace ID -> offline holder
+        public final Map<UUID, UUID> maces;
+        public final int failedFiles;
+        public final long durationMillis;
+
+        Result(long startTime, Set<UUID> scannedPlayers, Map<UUID, UUID> maces, int failedFiles, long durationMillis) {
+            this.startTime = startTime;
+            this.scannedPlayers = scannedPlayers;
+            this.maces = maces;
+            this.failedFiles = failedFiles;
+            this.durationMillis = durationMillis;
+        }
+    }
+
+    private final MaceControl plugin;
+    private final ExecutorService pool;
+
+    public OfflineInventoryAuditor(MaceControl plugin) {
+        this.plugin = plugin;
+        int threads = Math.max(1, plugin.getConfig().getInt("performance.offline-scan-threads", 2));
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "MaceControl-OfflineAudit-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Scan every saved player file except those of {@code skipPlayers}
+     * (normally the online players, whose live inventories are authoritative).
+     * Must be called on the main thread; completes off it.
+     */
+    public CompletableFuture<Result> audit(Set<UUID> skipPlayers) {
+        long startTime = System.currentTimeMillis();
+        List<World> worlds = plugin.getServer().getWorlds();
+        if (worlds.isEmpty()) {
+            return CompletableFuture.completedFuture(new Result(startTime, Set.of(), Map.of(), 0, 0));
+        }
+
+        // Player data lives in the main world's folder
+        File directory = new File(worlds.get(0).getWorldFolder(), "playerdata");
+        String key = MaceControl.MACE_ID_KEY.toString();
+        Set<UUID> skip = Set.copyOf(skipPlayers);
+
+        return CompletableFuture.supplyAsync(() -> listPlayerFiles(directory, skip), pool)
+                .thenCompose(files -> {
+                    List<CompletableFuture<Map<UUID, UUID>>> tasks = new ArrayList<>(files.size());
+                    for (Map.Entry<UUID, File> file : files.entrySet()) {
+                        tasks.add(CompletableFuture.supplyAsync(() -> scanFile(file.getKey(), file.getValue(), key), pool));
+                    }
+                    return CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0]))
+                            .thenApply(ignored -> collect(startTime, files, tasks));
+                });
+    }
+
+    private Result collect(long startTime, Map<UUID, File> files, List<CompletableFuture<Map<UUID, UUID>>> tasks) {
+        Set<UUID> scanned = new HashSet<>();
+        Map<UUID, UUID> maces = new HashMap<>();
+        int failed = 0;
+        Iterator<UUID> players = files.keySet().iterator();
+        for (CompletableFuture<Map<UUID, UUID>> task : tasks) {
+            UUID playerId = players.next();
+            Map<UUID, UUID> found = task.join();
+            if (found == null) {
+                failed++;
+                continue;
+            }
+            scanned.add(playerId);
+            found.forEach(maces::putIfAbsent);
+        }
+        return new Result(startTime, scanned, maces, failed, System.currentTimeMillis() - startTime);
+    }
+
+    private Map<UUID, File> listPlayerFiles(File directory, Set<UUID> skip) {
+        Map<UUID, File> files = new LinkedHashMap<>();
+        File[] entries = directory.listFiles();
+        if (entries == null) return files;
+
+        for (File file : entries) {
+            String name = file.getName();
+            if (!name.endsWith(FILE_SUFFIX)) continue;
+            try {
+                UUID playerId = UUID.fromString(name.substring(0, name.length() - FILE_SUFFIX.length()));
+                if (!skip.contains(playerId)) {
+                    files.put(playerId, file);
+                }
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+        return files;
+    }
+
+    // Mace ID -> player for one file, or null if the file could not be read
+    private Map<UUID, UUID> scanFile(UUID playerId, File file, String key) {
+        Map<UUID, UUID> found = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file.toPath()), 8192)))) {
+            new MaceNbtScanner(key, SECTIONS).scan(in, (section, maceId, position) -> found.put(maceId, playerId));
+            return found;
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().warning("Could not read player data " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,71 @@
+package me.zeppy.maceControl;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+
+/**
+ * Single main thread: every world task goes through the Bukkit scheduler, or
+ * runs inline when already on the main thread
+ */
+final class PaperMaceScheduler implements MaceScheduler {
+    private final MaceControl plugin;
+
+    PaperMaceScheduler(MaceControl plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean isRegionized() {
+        return false;
+    }
+
+    @Override
+    public void runGlobal(Runnable task) {
+        runMain(task, 0);
+    }
+
+    @Override
+    public void runGlobalTimer(Runnable task, long delayTicks, long periodTicks) {
+        plugin.getServer().getScheduler().runTaskTimer(plugin, task, delayTicks, periodTicks);
+    }
+
+    @Override
+    public void runAsyncTimer(Runnable task, long delayTicks, long periodTicks) {
+        plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, task, delayTicks, periodTicks);
+    }
+
+    @Override
+    public void runForEntity(Entity entity, Runnable task, Runnable retired, long delayTicks) {
+        runMain(() -> {
+            // Dead players are not valid but are still there to act on, as with Folia's entity scheduler
+            boolean present = entity instanceof Player player ? player.isOnline() : entity.isValid();
+            if (present) {
+                task.run();
+            } else if (retired != null) {
+                retired.run();
+            }
+        }, delayTicks);
+    }
+
+    @Override
+    public void runAtChunk(World world, int chunkX, int chunkZ, Runnable task, long delayTicks) {
+        runMain(task, delayTicks);
+    }
+
+    @Override
+    public void cancelAll() {
+        plugin.getServer().getScheduler().cancelTasks(plugin);
+    }
+
+    private void runMain(Runnable task, long delayTicks) {
+        if (delayTicks <= 0 && Bukkit.isPrimaryThread()) {
+            task.run();
+        } else if (delayTicks <= 0) {
+            plugin.getServer().getScheduler().runTask(plugin, task);
+        } else {
+            plugin.getServer().getScheduler().runTaskLater(plugin, task, delayTicks);
+        }
+    }
+}
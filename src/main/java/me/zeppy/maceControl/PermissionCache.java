@@ -0,0 +1,73 @@
+package me.zeppy.maceControl;
+
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-player cache of the bypass and admin permission checks. Entries are
+ * dropped on join, quit, world change, command tree resends (which permission
+ * plugins trigger after recalculating a player) and {@code /macereload}. A
+ * short TTL covers permission changes that fire none of those.
+ */
+public class PermissionCache {
+    private final MaceControl plugin;
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+    private long ttlMillis;
+
+    private static final class Entry {
+        final boolean bypass;
+        final boolean admin;
+        final long expiresAt;
+
+        Entry(boolean bypass, boolean admin, long expiresAt) {
+            this.bypass = bypass;
+            this.admin = admin;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public PermissionCache(MaceControl plugin) {
+        this.plugin = plugin;
+        reloadConfig();
+    }
+
+    public void reloadConfig() {
+        this.ttlMillis = Math.max(0, plugin.getConfig().getLong("performance.permission-cache-seconds", 30)) * 1000L;
+        invalidateAll();
+    }
+
+    public boolean hasBypass(Player player) {
+        return lookup(player).bypass;
+    }
+
+    public boolean isAdmin(Player player) {
+        return lookup(player).admin;
+    }
+
+    public void invalidate(UUID playerId) {
+        entries.remove(playerId);
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    private Entry lookup(Player player) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(player.getUniqueId());
+        if (entry != null && now < entry.expiresAt) {
+            return entry;
+        }
+
+        RestrictionPolicy policy = MaceControl.getPolicy();
+        entry = new Entry(player.hasPermission(policy.bypassPermission),
+                player.hasPermission(policy.adminPermission), now + ttlMillis);
+        if (ttlMillis > 0) {
+            entries.put(player.getUniqueId(), entry);
+        }
+        return entry;
+    }
+}
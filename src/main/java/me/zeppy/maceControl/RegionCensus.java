@@ -0,0 +1,449 @@
+package me.zeppy.maceControl;
+
+import org.bukkit.World;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * World-wide mace census read straight from the saved region files, so maces
+ * in unloaded chunks (chests, item frames, dropped items) are found without
+ * loading anything on the main thread.
+ * <p>
+ * Each world's {@code region/*.mca} (block entities) and {@code entities/*.mca}
+ * files are read chunk by chunk with positional reads, so a file truncated
+ * while the server saves only fails the chunks past its end and no file is
+ * held open after its chunks are done. Chunks are decompressed and
+ * stream-parsed with {@link MaceNbtScanner} on a fork-join pool, which the
+ * census thread waits on. Results reflect what is on
+ * disk, so chunks that are loaded may be newer than what the census reports.
+ * LZ4-compressed chunks are counted and skipped, and the report says how many.
+ */
+public class RegionCensus {
+    private static final int SECTOR_BYTES = 4096;
+    private static final int CHUNKS_PER_REGION = 1024;
+    // Chunks handled by one fork-join leaf
+    private static final int LEAF_CHUNKS = 64;
+
+    private static final int COMPRESSION_GZIP = 1;
+    private static final int COMPRESSION_ZLIB = 2;
+    private static final int COMPRESSION_NONE = 3;
+    private static final int COMPRESSION_LZ4 = 4;
+    private static final int COMPRESSION_EXTERNAL = 128;
+
+    public enum Source {
+        BLOCK_ENTITY("region", Set.of("block_entities")),
+        ENTITY("entities", Set.of("Entities"));
+
+        final String directory;
+        final Set<String> sections;
+
+        Source(String directory, Set<String> sections) {
+            this.directory = directory;
+            this.sections = sections;
+        }
+    }
+
+    public static final class Finding {
+        public final UUID maceId;
+        public final String world;
+        public final Source source;
+        public final int x;
+        public final int y;
+        public final int z;
+
+        Finding(UUID maceId, String world, Source source, int x, int y, int z) {
+            this.maceId = maceId;
+            this.world = world;
+            this.source = source;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+    }
+
+    public static final class Report {
+        public final List<Finding> findings;
+        public final int regionFiles;
+        public final int chunks;
+        public final int failedChunks;
+        // Skipped, so maces in them are not in findings
+        public final int lz4Chunks;
+        public final int unsupportedChunks;
+        public final long durationMillis;
+
+        Report(List<Finding> findings, int regionFiles, int chunks, int failedChunks,
+               int lz4Chunks, int unsupportedChunks, long durationMillis) {
+            this.findings = findings;
+            this.regionFiles = regionFiles;
+            this.chunks = chunks;
+            this.failedChunks = failedChunks;
+            this.lz4Chunks = lz4Chunks;
+            this.unsupportedChunks = unsupportedChunks;
+            this.durationMillis = durationMillis;
+        }
+    }
+
+    // One chunk slot of a region file
+    private static final class ChunkRef {
+        final RegionFile file;
+        final int index;
+
+        ChunkRef(RegionFile file, int index) {
+            this.file = file;
+            this.index = index;
+        }
+    }
+
+    private static final class RegionFile {
+        final File path;
+        final String world;
+        final Source source;
+        final int regionX;
+        final int regionZ;
+        // Location table: sector offset << 8 | sector count, 0 for an absent chunk
+        final int[] locations;
+
+        RegionFile(File path, String world, Source source, int regionX, int regionZ, int[] locations) {
+            this.path = path;
+            this.world = world;
+            this.source = source;
+            this.regionX = regionX;
+            this.regionZ = regionZ;
+            this.locations = locations;
+        }
+    }
+
+    // Per-leaf totals, merged up the fork-join tree
+    private static final class Tally {
+        final List<Finding> findings = new ArrayList<>();
+        int chunks;
+        int failed;
+        int lz4;
+        int unsupported;
+
+        Tally merge(Tally other) {
+            findings.addAll(other.findings);
+            chunks += other.chunks;
+            failed += other.failed;
+            lz4 += other.lz4;
+            unsupported += other.unsupported;
+            return this;
+        }
+    }
+
+    private final MaceControl plugin;
+    private final Logger logger;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public RegionCensus(MaceControl plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+    }
+
+    // Only for scan(), which needs no server
+    RegionCensus(Logger logger) {
+        this.plugin = null;
+        this.logger = logger;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * Start a census of every loaded world's saved chunks. Must be called on
+     * the main thread; completes off it. Returns null if one is already running.
+     */
+    public CompletableFuture<Report> start() {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+
+        // World folders are captured here; everything else runs off the main thread
+        Map<String, File> worldFolders = new LinkedHashMap<>();
+        for (World world : plugin.getServer().getWorlds()) {
+            worldFolders.put(world.getName(), world.getWorldFolder());
+        }
+        String key = MaceControl.MACE_ID_KEY.toString();
+        int threads = Math.max(1, plugin.getConfig().getInt("performance.census-threads", 2));
+
+        // Its own thread: the scan blocks on the census pool for as long as it takes
+        CompletableFuture<Report> result = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            Report report;
+            try {
+                report = scan(worldFolders, key, threads);
+            } catch (Throwable e) {
+                running.set(false);
+                result.completeExceptionally(e);
+                return;
+            }
+            running.set(false);
+            result.complete(report);
+        }, "MaceControl-Census");
+        thread.setDaemon(true);
+        thread.start();
+        return result;
+    }
+
+    /**
+     * Scan the region files of the given worlds (name -> world folder)
+     */
+    Report scan(Map<String, File> worldFolders, String key, int threads) {
+        long start = System.currentTimeMillis();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<RegionFile> files = readRegionFiles(worldFolders);
+            List<ChunkRef> chunks = new ArrayList<>();
+            for (RegionFile file : files) {
+                for (int index = 0; index < CHUNKS_PER_REGION; index++) {
+                    if (file.locations[index] != 0) {
+                        chunks.add(new ChunkRef(file, index));
+                    }
+                }
+            }
+
+            Tally tally = pool.invoke(new ScanTask(chunks, 0, chunks.size(), key));
+            return new Report(tally.findings, files.size(), tally.chunks, tally.failed,
+                    tally.lz4, tally.unsupported, System.currentTimeMillis() - start);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private List<RegionFile> readRegionFiles(Map<String, File> worldFolders) {
+        List<RegionFile> files = new ArrayList<>();
+        for (Map.Entry<String, File> world : worldFolders.entrySet()) {
+            File dimension = dimensionFolder(world.getValue());
+            for (Source source : Source.values()) {
+                File[] regions = new File(dimension, source.directory).listFiles();
+                if (regions == null) continue;
+                for (File region : regions) {
+                    RegionFile file = readHeader(region, world.getKey(), source);
+                    if (file != null) {
+                        files.add(file);
+                    }
+                }
+            }
+        }
+        return files;
+    }
+
+    // Vanilla layout keeps the nether and end under DIM-1 / DIM1 inside the world folder
+    private static File dimensionFolder(File worldFolder) {
+        for (String dimension : new String[]{"DIM-1", "DIM1"}) {
+            File candidate = new File(worldFolder, dimension);
+            if (new File(candidate, "region").isDirectory()) {
+                return candidate;
+            }
+        }
+        return worldFolder;
+    }
+
+    // Name and location table of a region file; its chunks are read later by the scan tasks
+    private RegionFile readHeader(File region, String world, Source source) {
+        String[] parts = region.getName().split("\\.");
+        if (parts.length != 4 || !parts[0].equals("r") || !parts[3].equals("mca")) return null;
+        if (region.length() < SECTOR_BYTES * 2L) return null;
+
+        try (FileChannel channel = FileChannel.open(region.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(SECTOR_BYTES);
+            readFully(channel, header, 0);
+            int[] locations = new int[CHUNKS_PER_REGION];
+            header.flip().asIntBuffer().get(locations);
+            return new RegionFile(region, world, source,
+                    Integer.parseInt(parts[1]), Integer.parseInt(parts[2]), locations);
+        } catch (IOException | NumberFormatException e) {
+            logger.warning("Could not read region file " + region + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Fill the buffer from position, or throw if the file ends first
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("region file ends at " + position);
+            }
+            position += read;
+        }
+    }
+
+    private final class ScanTask extends RecursiveTask<Tally> {
+        private final List<ChunkRef> chunks;
+        private final int from;
+        private final int to;
+        private final String key;
+
+        ScanTask(List<ChunkRef> chunks, int from, int to, String key) {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+            this.key = key;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (to - from > LEAF_CHUNKS) {
+                int middle = (from + to) >>> 1;
+                ScanTask left = new ScanTask(chunks, from, middle, key);
+                left.fork();
+                Tally right = new ScanTask(chunks, middle, to, key).compute();
+                return left.join().merge(right);
+            }
+
+            Tally tally = new Tally();
+            Map<Source, MaceNbtScanner> scanners = new EnumMap<>(Source.class);
+            ChunkReader reader = new ChunkReader();
+            try {
+                for (int i = from; i < to; i++) {
+                    ChunkRef chunk = chunks.get(i);
+                    MaceNbtScanner scanner = scanners.computeIfAbsent(chunk.file.source,
+                            source -> new MaceNbtScanner(key, source.sections));
+                    scanChunk(chunk, reader, scanner, tally);
+                }
+            } finally {
+                reader.close();
+            }
+            return tally;
+        }
+    }
+
+    // Reads chunks for one scan leaf. Its chunks are listed file by file, so
+    // each file is opened once per leaf and closed when the next one starts.
+    private static final class ChunkReader {
+        private final ByteBuffer header = ByteBuffer.allocate(5);
+        private RegionFile file;
+        private FileChannel channel;
+        private long size;
+        private ByteBuffer payload = ByteBuffer.allocate(64 * 1024);
+
+        FileChannel channel(RegionFile region) throws IOException {
+            if (file != region) {
+                close();
+                channel = FileChannel.open(region.path.toPath(), StandardOpenOption.READ);
+                size = channel.size();
+                file = region;
+            }
+            return channel;
+        }
+
+        // The chunk's length and compression header at offset
+        ByteBuffer header(RegionFile region, long offset) throws IOException {
+            FileChannel channel = channel(region);
+            header.clear();
+            readFully(channel, header, offset);
+            return header.flip();
+        }
+
+        // length bytes at offset, in a buffer reused by the next call
+        ByteBuffer payload(long offset, int length) throws IOException {
+            if (payload.capacity() < length) {
+                payload = ByteBuffer.allocate(length);
+            }
+            payload.clear().limit(length);
+            readFully(channel, payload, offset);
+            return payload.flip();
+        }
+
+        void close() {
+            if (channel == null) return;
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+            file = null;
+        }
+    }
+
+    private void scanChunk(ChunkRef chunk, ChunkReader reader, MaceNbtScanner scanner, Tally tally) {
+        RegionFile file = chunk.file;
+        tally.chunks++;
+
+        int location = file.locations[chunk.index];
+        long offset = (long) (location >>> 8) * SECTOR_BYTES;
+        if (offset < SECTOR_BYTES * 2L) {
+            tally.failed++;
+            return;
+        }
+        try {
+            ByteBuffer header = reader.header(file, offset);
+            int length = header.getInt();
+            int compression = header.get() & 0xFF;
+            if (length < 1 || offset + 4 + length > reader.size) {
+                tally.failed++;
+                return;
+            }
+            if ((compression & ~COMPRESSION_EXTERNAL) == COMPRESSION_LZ4) {
+                tally.lz4++;
+                return;
+            }
+
+            try (DataInputStream in = open(file, chunk.index, reader, offset + 5, length - 1, compression)) {
+                if (in == null) {
+                    tally.unsupported++;
+                    return;
+                }
+                scanner.scan(in, (section, maceId, position) -> {
+                    int[] block = position != null
+                            ? new int[]{(int) Math.floor(position[0]), (int) Math.floor(position[1]), (int) Math.floor(position[2])}
+                            : chunkOrigin(file, chunk.index);
+                    tally.findings.add(new Finding(maceId, file.world, file.source, block[0], block[1], block[2]));
+                });
+            }
+        } catch (IOException | RuntimeException e) {
+            tally.failed++;
+        }
+    }
+
+    // Fallback position when an element has none: the chunk's corner
+    private static int[] chunkOrigin(RegionFile file, int index) {
+        int chunkX = file.regionX * 32 + (index & 31);
+        int chunkZ = file.regionZ * 32 + (index >> 5);
+        return new int[]{chunkX << 4, 0, chunkZ << 4};
+    }
+
+    // A decompressing stream over the chunk payload, or null for an unsupported compression
+    private DataInputStream open(RegionFile file, int index, ChunkReader reader, long start, int length,
+                                 int compression) throws IOException {
+        InputStream raw;
+        if ((compression & COMPRESSION_EXTERNAL) != 0) {
+            // Oversized chunk stored next to the region file
+            int chunkX = file.regionX * 32 + (index & 31);
+            int chunkZ = file.regionZ * 32 + (index >> 5);
+            File external = new File(file.path.getParentFile(), "c." + chunkX + "." + chunkZ + ".mcc");
+            raw = new BufferedInputStream(Files.newInputStream(external.toPath()));
+            compression &= ~COMPRESSION_EXTERNAL;
+        } else {
+            ByteBuffer payload = reader.payload(start, length);
+            raw = new ByteArrayInputStream(payload.array(), 0, payload.limit());
+        }
+
+        InputStream decompressed = switch (compression) {
+            case COMPRESSION_GZIP -> new GZIPInputStream(raw, 8192);
+            case COMPRESSION_ZLIB -> new InflaterInputStream(raw);
+            case COMPRESSION_NONE -> raw;
+            // Custom (127) and unknown compression; LZ4 is counted before opening
+            default -> null;
+        };
+        if (decompressed == null) {
+            raw.close();
+            return null;
+        }
+        return new DataInputStream(new BufferedInputStream(decompressed));
+    }
+}
@@ -0,0 +1,95 @@
+package me.zeppy.maceControl;
+
+import org.bukkit.World;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.event.inventory.InventoryType;
+
+import java.util.*;
+
+/**
+ * Restriction settings compiled from config.yml. Immutable; {@code /macereload}
+ * and world loads build a new one and swap it in, so event handlers read plain
+ * fields instead of doing config lookups per event.
+ */
+public final class RestrictionPolicy {
+    public final String bypassPermission;
+    public final String adminPermission;
+
+    // Containers a mace may not be placed in
+    private final Set<InventoryType> blockedContainers;
+
+    // World restrictions, resolved to the UIDs of loaded worlds
+    private final boolean restrictToAllowedWorlds;
+    private final Set<UUID> allowedWorlds;
+    private final Set<UUID> restrictedWorlds;
+
+    public final boolean blockItemFrames;
+    public final boolean blockArmorStands;
+    public final boolean blockFlowerPots;
+    public final boolean blockHeavyCoreAutocrafter;
+
+    public final boolean broadcastCraft;
+    public final boolean broadcastDestruction;
+
+    private RestrictionPolicy(FileConfiguration config, List<World> worlds) {
+        this.bypassPermission = config.getString("bypass-permission", "macecontrol.bypass");
+        this.adminPermission = config.getString("admin-permission", "macecontrol.admin");
+
+        EnumSet<InventoryType> blocked = EnumSet.noneOf(InventoryType.class);
+        if (config.getBoolean("restrictions.block-containers", true)) {
+            blocked = EnumSet.allOf(InventoryType.class);
+            blocked.removeAll(EnumSet.of(InventoryType.PLAYER, InventoryType.ANVIL,
+                    InventoryType.GRINDSTONE, InventoryType.ENCHANTING));
+            if (config.getBoolean("restrictions.allow-ender-chest", false)) {
+                blocked.remove(InventoryType.ENDER_CHEST);
+            }
+            if (config.getBoolean("restrictions.allow-shulker-boxes", false)) {
+                blocked.remove(InventoryType.SHULKER_BOX);
+            }
+        }
+        this.blockedContainers = Collections.unmodifiableSet(blocked);
+
+        List<String> allowedNames = config.getStringList("worlds.allowed-craft-worlds");
+        List<String> restrictedNames = config.getStringList("worlds.restricted-worlds");
+        this.restrictToAllowedWorlds = !allowedNames.isEmpty();
+        this.allowedWorlds = resolveWorlds(allowedNames, worlds);
+        this.restrictedWorlds = resolveWorlds(restrictedNames, worlds);
+
+        this.blockItemFrames = config.getBoolean("restrictions.block-item-frames", true);
+        this.blockArmorStands = config.getBoolean("restrictions.block-armor-stands", true);
+        this.blockFlowerPots = config.getBoolean("restrictions.block-flower-pots", true);
+        this.blockHeavyCoreAutocrafter = config.getBoolean("restrictions.block-heavy-core-autocrafter", true);
+
+        this.broadcastCraft = config.getBoolean("messages.broadcast-craft", true);
+        this.broadcastDestruction = config.getBoolean("messages.broadcast-destruction", true);
+    }
+
+    /**
+     * Compile the current configuration against the currently loaded worlds
+     */
+    public static RestrictionPolicy compile(FileConfiguration config, List<World> worlds) {
+        return new RestrictionPolicy(config, worlds);
+    }
+
+    private static Set<UUID> resolveWorlds(List<String> names, List<World> worlds) {
+        Set<UUID> resolved = new HashSet<>();
+        for (World world : worlds) {
+            if (names.contains(world.getName())) {
+                resolved.add(world.getUID());
+            }
+        }
+        return Set.copyOf(resolved);
+    }
+
+    public boolean isBlockedContainer(InventoryType type) {
+        return blockedContainers.contains(type);
+    }
+
+    public boolean isWorldAllowed(World world) {
+        UUID worldId = world.getUID();
+        if (restrictToAllowedWorlds && !allowedWorlds.contains(worldId)) {
+            return false;
+        }
+        return !restrictedWorlds.contains(worldId);
+    }
+}
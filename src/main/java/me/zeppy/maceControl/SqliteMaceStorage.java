@@ -0,0 +1,294 @@
+package me.zeppy.maceControl;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * SQLite storage, queryable while the server runs (WAL mode, so readers never
+ * wait for a save). Only what changed since the previous save is written, as
+ * batched upserts in one transaction on the save thread's connection.
+ * <p>
+ * Tables:
+ * <ul>
+ *     <li>{@code maces}: one row per mace ever seen, with status {@code INVENTORY},
+ *     {@code DROPPED} or {@code DESTROYED}, the time it was first saved and, for
+ *     maces crafted under the plugin, its crafter and craft time; indexed on
+ *     holder, status, first save and craft time. {@code creator} and
+ *     {@code created_at} stay NULL for maces that were found or imported.</li>
+ *     <li>{@code holders}: holding periods, the open one has no {@code until};
+ *     indexed on holder</li>
+ *     <li>{@code drops}: maces currently lying on the ground</li>
+ *     <li>{@code meta}: the journal segment the tables cover</li>
+ * </ul>
+ * Holder changes are recorded at save granularity; the journal covers the
+ * time between saves.
+ */
+final class SqliteMaceStorage implements MaceStorage {
+    static final String DEFAULT_FILE = "maces.db";
+    static final String DRIVER = "org.sqlite.JDBC";
+    private static final String DESTROYED = "DESTROYED";
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS maces (id TEXT PRIMARY KEY, creator TEXT, created_at INTEGER,"
+                    + " first_seen INTEGER NOT NULL, status TEXT NOT NULL, holder TEXT, item_entity TEXT,"
+                    + " last_seen INTEGER NOT NULL, updated_at INTEGER NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS maces_holder ON maces (holder)",
+            "CREATE INDEX IF NOT EXISTS maces_status ON maces (status)",
+            "CREATE INDEX IF NOT EXISTS maces_first_seen ON maces (first_seen)",
+            "CREATE INDEX IF NOT EXISTS maces_created_at ON maces (created_at)",
+            "CREATE TABLE IF NOT EXISTS holders (mace_id TEXT NOT NULL, holder TEXT NOT NULL,"
+                    + " since INTEGER NOT NULL, until INTEGER)",
+            "CREATE INDEX IF NOT EXISTS holders_holder ON holders (holder, since)",
+            "CREATE INDEX IF NOT EXISTS holders_mace ON holders (mace_id, since)",
+            "CREATE TABLE IF NOT EXISTS drops (mace_id TEXT PRIMARY KEY, item_entity TEXT, dropped_by TEXT,"
+                    + " dropped_at INTEGER NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS meta (key TEXT PRIMARY KEY, value TEXT NOT NULL)"
+    };
+
+    private static final String UPSERT_MACE = "INSERT INTO maces (id, creator, created_at, first_seen, status, holder,"
+            + " item_entity, last_seen, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (id) DO UPDATE SET"
+            + " creator = COALESCE(excluded.creator, creator), created_at = COALESCE(excluded.created_at, created_at),"
+            + " status = excluded.status, holder = excluded.holder, item_entity = excluded.item_entity,"
+            + " last_seen = excluded.last_seen, updated_at = excluded.updated_at";
+    private static final String DESTROY_MACE = "UPDATE maces SET status = '" + DESTROYED + "', item_entity = NULL,"
+            + " updated_at = ? WHERE id = ?";
+    private static final String CLOSE_HOLDER = "UPDATE holders SET until = ? WHERE mace_id = ? AND until IS NULL";
+    private static final String OPEN_HOLDER = "INSERT INTO holders (mace_id, holder, since) VALUES (?, ?, ?)";
+    private static final String UPSERT_DROP = "INSERT OR REPLACE INTO drops (mace_id, item_entity, dropped_by, dropped_at)"
+            + " VALUES (?, ?, ?, ?)";
+    private static final String DELETE_DROP = "DELETE FROM drops WHERE mace_id = ?";
+    private static final String PUT_META = "INSERT OR REPLACE INTO meta (key, value) VALUES (?, ?)";
+
+    private final MaceControl plugin;
+    private final String url;
+    private Connection connection;
+    // What the tables hold, save thread only
+    private Map<UUID, MaceTracker.MaceRecord> written = Map.of();
+
+    SqliteMaceStorage(MaceControl plugin) {
+        this.plugin = plugin;
+        String file = plugin.getConfig().getString("storage.sqlite-file", DEFAULT_FILE);
+        this.url = "jdbc:sqlite:" + new File(plugin.getDataFolder(), file).getAbsolutePath();
+    }
+
+    /**
+     * Paper ships the xerial SQLite driver; the plugin compiles against it but
+     * does not bundle it
+     */
+    static boolean isAvailable() {
+        try {
+            Class.forName(DRIVER);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private Connection connection() throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            if (!isAvailable()) {
+                // DriverManager would only say "No suitable driver"
+                throw new SQLException("SQLite driver " + DRIVER + " is not on the server's classpath");
+            }
+            connection = DriverManager.getConnection(url);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode = WAL");
+                statement.execute("PRAGMA synchronous = NORMAL");
+                // The migration and schema go in as one transaction
+                connection.setAutoCommit(false);
+                migrate(statement);
+                for (String sql : SCHEMA) {
+                    statement.execute(sql);
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+        }
+        return connection;
+    }
+
+    // Older tables filled creator and created_at from the first save; keep that time as first_seen only
+    private static void migrate(Statement statement) throws SQLException {
+        boolean exists = false;
+        try (ResultSet columns = statement.executeQuery("PRAGMA table_info(maces)")) {
+            while (columns.next()) {
+                exists = true;
+                if ("first_seen".equals(columns.getString("name"))) return;
+            }
+        }
+        if (!exists) return;
+
+        statement.execute("ALTER TABLE maces RENAME TO maces_old");
+        statement.execute(SCHEMA[0]);
+        statement.execute("INSERT INTO maces (id, first_seen, status, holder, item_entity, last_seen, updated_at)"
+                + " SELECT id, created_at, status, holder, item_entity, last_seen, updated_at FROM maces_old");
+        // Takes the old indexes with it; the schema recreates them
+        statement.execute("DROP TABLE maces_old");
+    }
+
+    @Override
+    public String name() {
+        return SQLITE;
+    }
+
+    @Override
+    public MaceDataFile.Contents load() throws IOException {
+        try {
+            Connection db = connection();
+            long journalSegment;
+            try (Statement statement = db.createStatement();
+                 ResultSet meta = statement.executeQuery("SELECT value FROM meta WHERE key = 'journal_segment'")) {
+                if (!meta.next()) {
+                    return null;
+                }
+                journalSegment = Long.parseLong(meta.getString(1));
+            }
+
+            List<MaceTracker.MaceRecord> records = new ArrayList<>();
+            try (Statement statement = db.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT id, holder, status, item_entity, last_seen, creator,"
+                         + " created_at FROM maces WHERE status <> '" + DESTROYED + "'")) {
+                while (rows.next()) {
+                    records.add(new MaceTracker.MaceRecord(UUID.fromString(rows.getString(1)), uuid(rows.getString(2)),
+                            MaceTracker.MaceLocation.valueOf(rows.getString(3)), uuid(rows.getString(4)), rows.getLong(5),
+                            uuid(rows.getString(6)), rows.getLong(7)));
+                }
+            }
+            db.commit();
+
+            Map<UUID, MaceTracker.MaceRecord> loaded = new HashMap<>();
+            for (MaceTracker.MaceRecord record : records) {
+                loaded.put(record.maceId, record);
+            }
+            written = loaded;
+            return new MaceDataFile.Contents(journalSegment, records);
+        } catch (SQLException | IllegalArgumentException e) {
+            throw new IOException("SQLite read failed: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void write(TrackerSnapshot snapshot, long journalSegment) throws IOException {
+        long now = System.currentTimeMillis();
+        try {
+            Connection db = connection();
+            try (PreparedStatement upsertMace = db.prepareStatement(UPSERT_MACE);
+                 PreparedStatement destroyMace = db.prepareStatement(DESTROY_MACE);
+                 PreparedStatement closeHolder = db.prepareStatement(CLOSE_HOLDER);
+                 PreparedStatement openHolder = db.prepareStatement(OPEN_HOLDER);
+                 PreparedStatement upsertDrop = db.prepareStatement(UPSERT_DROP);
+                 PreparedStatement deleteDrop = db.prepareStatement(DELETE_DROP);
+                 PreparedStatement putMeta = db.prepareStatement(PUT_META)) {
+
+                for (MaceTracker.MaceRecord record : snapshot.getRecords()) {
+                    MaceTracker.MaceRecord previous = written.get(record.maceId);
+                    if (same(previous, record)) continue;
+
+                    String id = record.maceId.toString();
+                    upsertMace.setString(1, id);
+                    upsertMace.setString(2, string(record.creator));
+                    if (record.creator != null) {
+                        upsertMace.setLong(3, record.createdAt);
+                    } else {
+                        upsertMace.setNull(3, Types.INTEGER);
+                    }
+                    upsertMace.setLong(4, record.lastSeen);
+                    upsertMace.setString(5, record.location.name());
+                    upsertMace.setString(6, string(record.holder));
+                    upsertMace.setString(7, string(record.itemEntityId));
+                    upsertMace.setLong(8, record.lastSeen);
+                    upsertMace.setLong(9, now);
+                    upsertMace.addBatch();
+
+                    if (record.holder != null && (previous == null || !record.holder.equals(previous.holder))) {
+                        closeHolder.setLong(1, record.lastSeen);
+                        closeHolder.setString(2, id);
+                        closeHolder.addBatch();
+                        openHolder.setString(1, id);
+                        openHolder.setString(2, record.holder.toString());
+                        openHolder.setLong(3, record.lastSeen);
+                        openHolder.addBatch();
+                    }
+
+                    if (record.location == MaceTracker.MaceLocation.DROPPED) {
+                        MaceTracker.MaceDropInfo drop = record.itemEntityId != null
+                                ? snapshot.pendingDrops.get(record.itemEntityId) : null;
+                        upsertDrop.setString(1, id);
+                        upsertDrop.setString(2, string(record.itemEntityId));
+                        upsertDrop.setString(3, string(drop != null ? drop.originalHolder : record.holder));
+                        upsertDrop.setLong(4, drop != null ? drop.dropTime : record.lastSeen);
+                        upsertDrop.addBatch();
+                    } else if (previous != null && previous.location == MaceTracker.MaceLocation.DROPPED) {
+                        deleteDrop.setString(1, id);
+                        deleteDrop.addBatch();
+                    }
+                }
+
+                for (UUID maceId : written.keySet()) {
+                    if (snapshot.records.containsKey(maceId)) continue;
+                    String id = maceId.toString();
+                    destroyMace.setLong(1, now);
+                    destroyMace.setString(2, id);
+                    destroyMace.addBatch();
+                    closeHolder.setLong(1, now);
+                    closeHolder.setString(2, id);
+                    closeHolder.addBatch();
+                    deleteDrop.setString(1, id);
+                    deleteDrop.addBatch();
+                }
+
+                putMeta.setString(1, "journal_segment");
+                putMeta.setString(2, Long.toString(journalSegment));
+                putMeta.addBatch();
+                putMeta.setString(1, "saved_at");
+                putMeta.setString(2, Long.toString(now));
+                putMeta.addBatch();
+
+                // Holder periods are closed before new ones are opened
+                upsertMace.executeBatch();
+                destroyMace.executeBatch();
+                closeHolder.executeBatch();
+                openHolder.executeBatch();
+                upsertDrop.executeBatch();
+                deleteDrop.executeBatch();
+                putMeta.executeBatch();
+                db.commit();
+                written = snapshot.records;
+            } catch (SQLException e) {
+                db.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new IOException("SQLite write failed: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Error closing SQLite connection: " + e.getMessage());
+        }
+        connection = null;
+    }
+
+    private static boolean same(MaceTracker.MaceRecord a, MaceTracker.MaceRecord b) {
+        return a != null && a.location == b.location && a.lastSeen == b.lastSeen
+                && Objects.equals(a.holder, b.holder) && Objects.equals(a.itemEntityId, b.itemEntityId)
+                && Objects.equals(a.creator, b.creator);
+    }
+
+    private static String string(UUID id) {
+        return id != null ? id.toString() : null;
+    }
+
+    private static UUID uuid(String value) {
+        return value != null ? UUID.fromString(value) : null;
+    }
+}
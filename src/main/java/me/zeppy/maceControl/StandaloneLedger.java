@@ -0,0 +1,29 @@
+package me.zeppy.maceControl;
+
+/**
+ * Single server: the configured limit applies to this server's maces only
+ */
+final class StandaloneLedger implements GlobalLedger {
+
+    @Override
+    public int capacity(int limit) {
+        return limit;
+    }
+
+    @Override
+    public int networkCount(int localMaces) {
+        return localMaces;
+    }
+
+    @Override
+    public void requestSync() {
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,55 @@
+package me.zeppy.maceControl;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Immutable view of the tracker at a given epoch. Safe to share between
+ * threads and to hand out to other plugins without copying.
+ */
+public final class TrackerSnapshot {
+    public static final TrackerSnapshot EMPTY = new TrackerSnapshot(-1, Map.of(), Map.of());
+
+    public final long epoch;
+    public final Map<UUID, MaceTracker.MaceRecord> records;
+    public final Map<UUID, Integer> holders;
+    public final Map<UUID, UUID> maceIdToHolder;
+    public final Map<UUID, MaceTracker.MaceDropInfo> pendingDrops;
+    public final Map<UUID, UUID> pendingDropHolders;
+
+    TrackerSnapshot(long epoch,
+                    Map<UUID, MaceTracker.MaceRecord> records,
+                    Map<UUID, MaceTracker.MaceDropInfo> pendingDrops) {
+        this.epoch = epoch;
+        this.records = Map.copyOf(records);
+        this.pendingDrops = Map.copyOf(pendingDrops);
+
+        Map<UUID, Integer> holderCounts = new HashMap<>();
+        Map<UUID, UUID> idToHolder = new HashMap<>();
+        for (MaceTracker.MaceRecord record : this.records.values()) {
+            if (record.holder == null) continue;
+            idToHolder.put(record.maceId, record.holder);
+            if (record.location == MaceTracker.MaceLocation.INVENTORY) {
+                holderCounts.merge(record.holder, 1, Integer::sum);
+            }
+        }
+        this.holders = Map.copyOf(holderCounts);
+        this.maceIdToHolder = Map.copyOf(idToHolder);
+
+        Map<UUID, UUID> dropHolders = new HashMap<>();
+        for (Map.Entry<UUID, MaceTracker.MaceDropInfo> entry : this.pendingDrops.entrySet()) {
+            dropHolders.put(entry.getKey(), entry.getValue().originalHolder);
+        }
+        this.pendingDropHolders = Map.copyOf(dropHolders);
+    }
+
+    public int getMaceCount() {
+        return records.size();
+    }
+
+    public Collection<MaceTracker.MaceRecord> getRecords() {
+        return records.values();
+    }
+}
@@ -0,0 +1,146 @@
+package me.zeppy.maceControl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Lookups across many small segments, before and after a restart, with
+ * the sealed segments answered from their index files
+ */
+class CustodyHistoryTest {
+    private static final int SEGMENT_BYTES = 4096;
+    private static final int EVENTS = 5_000;
+
+    @TempDir
+    Path directory;
+
+    private final List<CustodyHistory> opened = new ArrayList<>();
+    private final UUID[] maces = ids(40, 1);
+    private final UUID[] players = ids(15, 2);
+    private final List<CustodyHistory.Event> written = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (CustodyHistory history : opened) {
+            history.close();
+        }
+    }
+
+    private static UUID[] ids(int count, long seed) {
+        Random random = new Random(seed);
+        UUID[] ids = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+        return ids;
+    }
+
+    private CustodyHistory open() {
+        Logger logger = Logger.getLogger("CustodyHistoryTest");
+        logger.setLevel(Level.OFF);
+        CustodyHistory history = new CustodyHistory(directory, SEGMENT_BYTES, logger);
+        history.start();
+        opened.add(history);
+        return history;
+    }
+
+    private void recordAll(CustodyHistory history) {
+        Random random = new Random(3);
+        CustodyHistory.Type[] types = CustodyHistory.Type.values();
+        for (int i = 0; i < EVENTS; i++) {
+            UUID player = i % 7 == 0 ? null : players[random.nextInt(players.length)];
+            CustodyHistory.Event event = new CustodyHistory.Event(maces[random.nextInt(maces.length)], player,
+                    types[i % types.length], i, "world", i, 64, -i, i % 3 == 0 ? "detail " + i : null);
+            history.record(event);
+            written.add(event);
+        }
+    }
+
+    private List<Long> expected(UUID id, boolean byPlayer, int limit) {
+        List<Long> times = new ArrayList<>();
+        for (CustodyHistory.Event event : written) {
+            if (id.equals(byPlayer ? event.playerId : event.maceId)) {
+                times.add(event.timestamp);
+            }
+        }
+        return times.subList(Math.max(0, times.size() - limit), times.size());
+    }
+
+    private static List<Long> times(List<CustodyHistory.Event> events) {
+        List<Long> times = new ArrayList<>();
+        for (CustodyHistory.Event event : events) {
+            times.add(event.timestamp);
+        }
+        return times;
+    }
+
+    private void assertLookups(CustodyHistory history) {
+        for (UUID mace : maces) {
+            for (int limit : new int[]{1, 15, 500}) {
+                assertEquals(expected(mace, false, limit), times(history.forMace(mace, limit).join()));
+            }
+        }
+        for (UUID player : players) {
+            assertEquals(expected(player, true, 300), times(history.forPlayer(player, 300).join()));
+        }
+        assertTrue(history.forMace(UUID.randomUUID(), 15).join().isEmpty());
+    }
+
+    private long sealedSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".idx")).count();
+        }
+    }
+
+    @Test
+    void findsEventsAcrossSealedSegments() throws IOException {
+        CustodyHistory history = open();
+        recordAll(history);
+        assertLookups(history);
+        assertTrue(sealedSegments() > 10, "expected many sealed segments, found " + sealedSegments());
+
+        CustodyHistory.Event event = history.forMace(maces[0], 1).join().get(0);
+        CustodyHistory.Event original = written.get((int) event.timestamp);
+        assertEquals(original.type, event.type);
+        assertEquals(original.playerId, event.playerId);
+        assertEquals(original.detail, event.detail);
+        assertEquals(original.x, event.x);
+    }
+
+    @Test
+    void findsEventsAfterRestart() throws IOException {
+        CustodyHistory history = open();
+        recordAll(history);
+        history.close();
+
+        assertLookups(open());
+    }
+
+    @Test
+    void rebuildsDamagedIndexes() throws IOException {
+        CustodyHistory history = open();
+        recordAll(history);
+        history.close();
+
+        Files.write(directory.resolve("history-1.idx"), new byte[]{1, 2, 3});
+        Files.delete(directory.resolve("history-2.idx"));
+
+        assertLookups(open());
+        assertTrue(Files.size(directory.resolve("history-1.idx")) > 3);
+        assertTrue(Files.exists(directory.resolve("history-2.idx")));
+    }
+}
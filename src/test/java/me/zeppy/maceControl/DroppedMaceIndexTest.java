@@ -0,0 +1,209 @@
+package me.zeppy.maceControl;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Item;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drop lookups on simulated regions. The fake items refuse to report their
+ * position to any thread but their own region, as Folia does.
+ */
+class DroppedMaceIndexTest {
+    private static final int REGIONS = 4;
+
+    private SimulatedRegionScheduler scheduler;
+    private DroppedMaceIndex index;
+    private World world;
+
+    @BeforeEach
+    void setUp() throws ReflectiveOperationException {
+        scheduler = new SimulatedRegionScheduler(REGIONS);
+        setScheduler(scheduler);
+        index = new DroppedMaceIndex();
+        world = world("world");
+    }
+
+    @AfterEach
+    void tearDown() throws ReflectiveOperationException {
+        scheduler.shutdown();
+        setScheduler(null);
+    }
+
+    private static void setScheduler(MaceScheduler scheduler) throws ReflectiveOperationException {
+        Field field = MaceControl.class.getDeclaredField("scheduler");
+        field.setAccessible(true);
+        field.set(null, scheduler);
+    }
+
+    @Test
+    void fakeItemsRejectOffRegionReads() {
+        FakeItem item = new FakeItem(world, 0, 64, 0);
+        assertThrows(IllegalStateException.class, () -> item.proxy.getLocation());
+    }
+
+    @Test
+    void collectsEveryDropOnItsOwnRegion() throws Exception {
+        Map<UUID, FakeItem> items = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            FakeItem item = drop(UUID.randomUUID(), i * 37 - 3000, 70, i * -53 + 1000);
+            items.put(item.maceId, item);
+        }
+
+        List<DroppedMaceIndex.IndexedDrop> drops = index.collectDrops().get(5, TimeUnit.SECONDS);
+        assertEquals(items.size(), drops.size());
+        for (DroppedMaceIndex.IndexedDrop drop : drops) {
+            FakeItem item = items.get(drop.maceId);
+            assertNotNull(item);
+            assertEquals(item.proxy.getUniqueId(), drop.entityId);
+            assertEquals(item.x, drop.x);
+            assertEquals(item.z, drop.z);
+            assertEquals("world", drop.worldName);
+        }
+    }
+
+    @Test
+    void nearbyDropsAreFilteredAndSortedByDistance() throws Exception {
+        UUID far = drop(UUID.randomUUID(), 500, 64, 500).maceId;
+        UUID middle = drop(UUID.randomUUID(), 30, 64, -30).maceId;
+        UUID nearest = drop(UUID.randomUUID(), 5, 64, 5).maceId;
+        drop(UUID.randomUUID(), 10, 64, 10);
+
+        World other = world("world_nether");
+        FakeItem elsewhere = new FakeItem(other, 5, 64, 5);
+        add(elsewhere);
+
+        List<DroppedMaceIndex.IndexedDrop> drops = index.collectDropsNear(new Location(world, 0, 64, 0), 50)
+                .get(5, TimeUnit.SECONDS);
+        assertEquals(3, drops.size());
+        assertEquals(nearest, drops.get(0).maceId);
+        assertEquals(middle, drops.get(2).maceId);
+        for (DroppedMaceIndex.IndexedDrop drop : drops) {
+            assertNotEquals(far, drop.maceId);
+            assertNotEquals(elsewhere.maceId, drop.maceId);
+        }
+    }
+
+    @Test
+    void removedDropsAreRetiredFromTheIndex() throws Exception {
+        FakeItem kept = drop(UUID.randomUUID(), 0, 64, 0);
+        FakeItem removed = drop(UUID.randomUUID(), 100, 64, 100);
+        removed.valid = false;
+
+        List<DroppedMaceIndex.IndexedDrop> drops = index.collectDrops().get(5, TimeUnit.SECONDS);
+        assertEquals(1, drops.size());
+        assertEquals(kept.maceId, drops.get(0).maceId);
+        assertEquals(1, index.size());
+        assertFalse(index.contains(removed.proxy.getUniqueId()));
+    }
+
+    @Test
+    void driftedDropsAreRefiled() throws Exception {
+        FakeItem item = drop(UUID.randomUUID(), 0, 64, 0);
+        // Carried by water well away from where it was indexed
+        item.x = 400;
+        item.z = -400;
+
+        index.collectDrops().get(5, TimeUnit.SECONDS);
+        assertTrue(index.collectDropsNear(new Location(world, 0, 64, 0), 50).get(5, TimeUnit.SECONDS).isEmpty());
+        List<DroppedMaceIndex.IndexedDrop> near = index.collectDropsNear(new Location(world, 400, 64, -400), 10)
+                .get(5, TimeUnit.SECONDS);
+        assertEquals(1, near.size());
+        assertEquals(item.maceId, near.get(0).maceId);
+    }
+
+    @Test
+    void findsOneDropByMaceId() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            drop(UUID.randomUUID(), i * 16, 64, 0);
+        }
+        FakeItem wanted = drop(UUID.randomUUID(), -250, 80, 310);
+
+        DroppedMaceIndex.IndexedDrop drop = index.findDrop(wanted.maceId).get(5, TimeUnit.SECONDS);
+        assertNotNull(drop);
+        assertEquals(wanted.proxy.getUniqueId(), drop.entityId);
+        assertEquals(-250.0, drop.x);
+        assertEquals(310.0, drop.z);
+
+        index.remove(wanted.proxy.getUniqueId());
+        assertNull(index.findDrop(wanted.maceId).get(5, TimeUnit.SECONDS));
+        assertNull(index.findDrop(UUID.randomUUID()).get(5, TimeUnit.SECONDS));
+    }
+
+    // Index a new item the way the spawn event does: on the item's own region
+    private FakeItem drop(UUID maceId, double x, double y, double z) {
+        FakeItem item = new FakeItem(world, x, y, z, maceId);
+        add(item);
+        return item;
+    }
+
+    private void add(FakeItem item) {
+        scheduler.runForEntity(item.proxy, () -> index.add(item.proxy, item.maceId), null, 0);
+        scheduler.awaitIdle();
+    }
+
+    private static World world(String name) {
+        UUID worldId = UUID.nameUUIDFromBytes(name.getBytes());
+        return (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getUID" -> worldId;
+                    case "getName", "toString" -> name;
+                    case "hashCode" -> worldId.hashCode();
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private final class FakeItem {
+        final UUID entityId = UUID.randomUUID();
+        final UUID maceId;
+        final World world;
+        final Item proxy;
+        volatile double x;
+        final double y;
+        volatile double z;
+        volatile boolean valid = true;
+
+        FakeItem(World world, double x, double y, double z) {
+            this(world, x, y, z, UUID.randomUUID());
+        }
+
+        FakeItem(World world, double x, double y, double z, UUID maceId) {
+            this.world = world;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.maceId = maceId;
+            this.proxy = (Item) Proxy.newProxyInstance(Item.class.getClassLoader(), new Class<?>[]{Item.class},
+                    (self, method, args) -> switch (method.getName()) {
+                        case "getUniqueId" -> entityId;
+                        case "isValid" -> valid;
+                        case "getLocation" -> location((Item) self);
+                        case "hashCode" -> entityId.hashCode();
+                        case "equals" -> self == args[0];
+                        case "toString" -> "FakeItem " + entityId;
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+
+        private Location location(Item self) {
+            if (!scheduler.ownsEntity(self)) {
+                throw new IllegalStateException("Position of " + entityId + " read off its region on "
+                        + Thread.currentThread().getName());
+            }
+            return new Location(world, x, y, z);
+        }
+    }
+}
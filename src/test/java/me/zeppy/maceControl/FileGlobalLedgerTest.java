@@ -0,0 +1,139 @@
+package me.zeppy.maceControl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two servers sharing one ledger file, each crafting against its own
+ * capacity the way the craft handler does
+ */
+class FileGlobalLedgerTest {
+    private static final int LIMIT = 6;
+    private static final int RESERVE = 2;
+
+    @TempDir
+    Path folder;
+
+    private final List<Server> servers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (Server server : servers) {
+            server.ledger.close();
+        }
+    }
+
+    private final class Server {
+        final AtomicInteger maces = new AtomicInteger();
+        final FileGlobalLedger ledger;
+
+        Server(String serverId, long reservationMillis) {
+            Logger logger = Logger.getLogger("FileGlobalLedgerTest");
+            logger.setLevel(Level.OFF);
+            ledger = new FileGlobalLedger(folder.resolve("network.dat"), serverId, RESERVE, reservationMillis,
+                    60_000, maces::get, () -> LIMIT, logger);
+            servers.add(this);
+        }
+
+        // The limit check in the craft handler: one craft at a time per server
+        synchronized boolean craft() {
+            if (maces.get() >= ledger.capacity(LIMIT)) {
+                return false;
+            }
+            maces.incrementAndGet();
+            return true;
+        }
+    }
+
+    @Test
+    void limitHoldsWhileBothServersCraft() throws Exception {
+        Server first = new Server("first", 60_000);
+        Server second = new Server("second", 60_000);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>();
+        for (Server server : List.of(first, second)) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < 200; i++) {
+                        server.craft();
+                        server.ledger.update(RESERVE);
+                        int total = first.maces.get() + second.maces.get();
+                        if (total > LIMIT) {
+                            throw new AssertionError(total + " maces crafted against a limit of " + LIMIT);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        // Once both have synced the network is full and neither can craft
+        first.ledger.update(RESERVE);
+        second.ledger.update(RESERVE);
+        assertEquals(LIMIT, first.maces.get() + second.maces.get());
+        assertFalse(first.craft());
+        assertFalse(second.craft());
+        assertEquals(LIMIT, first.ledger.networkCount(first.maces.get()));
+    }
+
+    @Test
+    void expiredReservationIsNotUsedLocally() throws IOException, InterruptedException {
+        Server stale = new Server("stale", 200);
+        Server live = new Server("live", 60_000);
+
+        stale.ledger.update(RESERVE);
+        assertTrue(stale.craft());
+        stale.ledger.update(RESERVE);
+        assertEquals(1 + RESERVE, stale.ledger.capacity(LIMIT));
+
+        // The stale server stops syncing; its reservation runs out on both sides
+        Thread.sleep(300);
+        assertEquals(1, stale.ledger.capacity(LIMIT));
+        assertFalse(stale.craft());
+
+        live.ledger.update(RESERVE);
+        while (live.craft()) {
+            live.ledger.update(RESERVE);
+        }
+        assertEquals(LIMIT - 1, live.maces.get());
+        assertTrue(stale.ledger.capacity(LIMIT) + live.ledger.capacity(LIMIT) <= LIMIT);
+
+        // A successful sync finds no room left for the stale server
+        stale.ledger.update(RESERVE);
+        assertFalse(stale.craft());
+        assertEquals(LIMIT, stale.maces.get() + live.maces.get());
+    }
+
+    @Test
+    void noSpareSlotsBeforeTheFirstSync() {
+        Server server = new Server("fresh", 60_000);
+        assertEquals(0, server.ledger.capacity(LIMIT));
+        assertFalse(server.craft());
+    }
+}
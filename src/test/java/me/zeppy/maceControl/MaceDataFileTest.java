@@ -0,0 +1,65 @@
+package me.zeppy.maceControl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Saving and loading the data file, with crafted maces keeping their crafter
+ * and found ones staying without
+ */
+class MaceDataFileTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void keepsWhoCraftedEachMace() throws IOException {
+        UUID crafter = UUID.randomUUID();
+        MaceTracker.MaceRecord crafted = new MaceTracker.MaceRecord(UUID.randomUUID(), UUID.randomUUID(),
+                MaceTracker.MaceLocation.INVENTORY, null, 2_000, crafter, 1_000);
+        MaceTracker.MaceRecord found = new MaceTracker.MaceRecord(UUID.randomUUID(), null,
+                MaceTracker.MaceLocation.DROPPED, UUID.randomUUID(), 3_000);
+        Map<UUID, MaceTracker.MaceRecord> records = new HashMap<>();
+        records.put(crafted.maceId, crafted);
+        records.put(found.maceId, found);
+
+        Path file = folder.resolve("maceData.dat");
+        MaceDataFile.write(file, new TrackerSnapshot(1, records, Map.of()), 7);
+        MaceDataFile.Contents contents = MaceDataFile.read(file);
+
+        assertEquals(7, contents.journalSegment);
+        assertEquals(2, contents.records.size());
+        for (MaceTracker.MaceRecord record : contents.records) {
+            MaceTracker.MaceRecord original = records.get(record.maceId);
+            assertEquals(original.holder, record.holder);
+            assertEquals(original.location, record.location);
+            assertEquals(original.itemEntityId, record.itemEntityId);
+            assertEquals(original.lastSeen, record.lastSeen);
+            assertEquals(original.creator, record.creator);
+            assertEquals(original.createdAt, record.createdAt);
+        }
+    }
+
+    @Test
+    void rejectsCorruptProvenance() throws IOException {
+        MaceTracker.MaceRecord crafted = new MaceTracker.MaceRecord(UUID.randomUUID(), UUID.randomUUID(),
+                MaceTracker.MaceLocation.INVENTORY, null, 2_000, UUID.randomUUID(), 1_000);
+        Path file = folder.resolve("maceData.dat");
+        MaceDataFile.write(file, new TrackerSnapshot(1, Map.of(crafted.maceId, crafted), Map.of()), 1);
+
+        byte[] bytes = Files.readAllBytes(file);
+        // Last byte of the crafter's ID, just before the section's created_at and checksum
+        bytes[bytes.length - 4 - 8 - 1] ^= 1;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> MaceDataFile.read(file));
+    }
+}
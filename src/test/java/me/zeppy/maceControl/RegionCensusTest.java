@@ -0,0 +1,178 @@
+package me.zeppy.maceControl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static me.zeppy.maceControl.RegionFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegionCensusTest {
+    @TempDir
+    Path world;
+
+    private RegionCensus.Report scan() {
+        RegionCensus census = new RegionCensus(Logger.getLogger("RegionCensusTest"));
+        return census.scan(Map.of("world", world.toFile()), KEY, 2);
+    }
+
+    private static RegionCensus.Finding find(RegionCensus.Report report, UUID maceId) {
+        for (RegionCensus.Finding finding : report.findings) {
+            if (finding.maceId.equals(maceId)) return finding;
+        }
+        fail("mace " + maceId + " not found");
+        return null;
+    }
+
+    private static void assertAt(RegionCensus.Finding finding, RegionCensus.Source source, int x, int y, int z) {
+        assertEquals("world", finding.world);
+        assertEquals(source, finding.source);
+        assertEquals(List.of(x, y, z), List.of(finding.x, finding.y, finding.z));
+    }
+
+    @Test
+    void readsZlibAndGzipChunks() throws IOException {
+        UUID zlib = UUID.randomUUID();
+        UUID gzip = UUID.randomUUID();
+        region(world.resolve("region/r.0.0.mca"))
+                .chunk(index(0, 0), ZLIB, chestChunk(5, 64, 7, zlib))
+                .chunk(index(1, 0), GZIP, chestChunk(20, -12, 3, gzip))
+                .write();
+
+        RegionCensus.Report report = scan();
+        assertEquals(1, report.regionFiles);
+        assertEquals(2, report.chunks);
+        assertEquals(2, report.findings.size());
+        assertAt(find(report, zlib), RegionCensus.Source.BLOCK_ENTITY, 5, 64, 7);
+        assertAt(find(report, gzip), RegionCensus.Source.BLOCK_ENTITY, 20, -12, 3);
+    }
+
+    @Test
+    void readsExternalChunksInNegativeRegions() throws IOException {
+        UUID maceId = UUID.randomUUID();
+        // Chunk (-3, -33) lives in region (-1, -2)
+        region(world.resolve("region/r.-1.-2.mca"))
+                .external(-3, -33, ZLIB, chestChunk(-41, 100, -520, maceId))
+                .write();
+
+        RegionCensus.Report report = scan();
+        assertEquals(0, report.failedChunks);
+        assertAt(find(report, maceId), RegionCensus.Source.BLOCK_ENTITY, -41, 100, -520);
+    }
+
+    @Test
+    void findsMaceNestedInShulkerBox() throws IOException {
+        UUID maceId = UUID.randomUUID();
+        byte[] chunk = Nbt.root().intTag("DataVersion", 4325)
+                .compoundList("block_entities", 1).element()
+                .string("id", "minecraft:chest").intTag("x", 8).intTag("y", 70).intTag("z", 9)
+                .compoundList("Items", 1).element()
+                .byteTag("Slot", 0).string("id", "minecraft:shulker_box").intTag("count", 1)
+                .compound("components").compoundList("minecraft:container", 1).element()
+                .intTag("slot", 4).compound("item").maceItem(maceId).end()
+                .end() // container element
+                .end() // components
+                .end() // Items element
+                .end() // chest
+                .end().bytes();
+        region(world.resolve("region/r.0.0.mca")).chunk(index(0, 0), ZLIB, chunk).write();
+
+        RegionCensus.Report report = scan();
+        assertEquals(1, report.findings.size());
+        // Reported where the chest is, not the shulker box slot
+        assertAt(find(report, maceId), RegionCensus.Source.BLOCK_ENTITY, 8, 70, 9);
+    }
+
+    @Test
+    void reportsDroppedItemPositions() throws IOException {
+        UUID binary = UUID.randomUUID();
+        UUID legacy = UUID.randomUUID();
+        byte[] chunk = Nbt.root().intTag("DataVersion", 4325).intArray("Position", 0, -1)
+                .compoundList("Entities", 2)
+                .element().string("id", "minecraft:item").pos(10.5, 70.0, -3.2)
+                .compound("Item").maceItem(binary).end()
+                .end()
+                .element().string("id", "minecraft:item").pos(-0.5, 64.9, -16.0)
+                .compound("Item").legacyMaceItem(legacy).end()
+                .end()
+                .end().bytes();
+        region(world.resolve("entities/r.0.-1.mca")).chunk(index(0, -1), GZIP, chunk).write();
+
+        RegionCensus.Report report = scan();
+        assertEquals(2, report.findings.size());
+        assertAt(find(report, binary), RegionCensus.Source.ENTITY, 10, 70, -4);
+        assertAt(find(report, legacy), RegionCensus.Source.ENTITY, -1, 64, -16);
+    }
+
+    @Test
+    void fallsBackToChunkCornerWithoutPosition() throws IOException {
+        UUID maceId = UUID.randomUUID();
+        byte[] chunk = Nbt.root().compoundList("block_entities", 1).element()
+                .string("id", "minecraft:chest").compoundList("Items", 1)
+                .element().maceItem(maceId).end()
+                .end().end().bytes();
+        region(world.resolve("region/r.1.0.mca")).chunk(index(33, 2), ZLIB, chunk).write();
+
+        assertAt(find(scan(), maceId), RegionCensus.Source.BLOCK_ENTITY, 33 * 16, 0, 2 * 16);
+    }
+
+    @Test
+    void countsLz4AndBrokenChunksWithoutStopping() throws IOException {
+        UUID maceId = UUID.randomUUID();
+        region(world.resolve("region/r.0.0.mca"))
+                .chunk(index(0, 0), LZ4, chestChunk(1, 2, 3, UUID.randomUUID()))
+                .dangling(index(1, 0))
+                .chunk(index(2, 0), ZLIB, new byte[]{10, 0, 0, 9}) // truncated NBT
+                .chunk(index(3, 0), 127, new byte[]{0})
+                .chunk(index(4, 0), ZLIB, chestChunk(70, 60, 5, maceId))
+                .write();
+
+        RegionCensus.Report report = scan();
+        assertEquals(5, report.chunks);
+        assertEquals(1, report.lz4Chunks);
+        assertEquals(1, report.unsupportedChunks);
+        assertEquals(2, report.failedChunks);
+        assertEquals(1, report.findings.size());
+        assertAt(find(report, maceId), RegionCensus.Source.BLOCK_ENTITY, 70, 60, 5);
+    }
+
+    @Test
+    void failsOnlyChunksPastTheEndOfATruncatedFile() throws IOException {
+        UUID kept = UUID.randomUUID();
+        Path file = world.resolve("region/r.0.0.mca");
+        region(file)
+                .chunk(index(0, 0), ZLIB, chestChunk(1, 64, 1, kept))
+                .chunk(index(1, 0), ZLIB, chestChunk(17, 64, 1, UUID.randomUUID()))
+                .write();
+        // Cut off in the middle of a save: the last chunk's sector is gone
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 4096);
+        }
+
+        RegionCensus.Report report = scan();
+        assertEquals(2, report.chunks);
+        assertEquals(1, report.failedChunks);
+        assertEquals(1, report.findings.size());
+        assertAt(find(report, kept), RegionCensus.Source.BLOCK_ENTITY, 1, 64, 1);
+    }
+
+    @Test
+    void scansNetherUnderDimensionFolder() throws IOException {
+        UUID maceId = UUID.randomUUID();
+        region(world.resolve("DIM-1/region/r.0.0.mca")).chunk(index(0, 0), ZLIB, chestChunk(0, 30, 0, maceId)).write();
+
+        RegionCensus.Report report = scan();
+        assertEquals(1, report.regionFiles);
+        assertAt(find(report, maceId), RegionCensus.Source.BLOCK_ENTITY, 0, 30, 0);
+    }
+}
@@ -0,0 +1,230 @@
+package me.zeppy.maceControl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generates small region files and the chunk NBT inside them, laid out the way
+ * the server writes them: an 8 KiB header of chunk locations and timestamps,
+ * then each chunk as length, compression byte and payload, padded to 4 KiB
+ * sectors.
+ */
+final class RegionFixtures {
+    static final String KEY = "macecontrol:mace_id";
+
+    static final int GZIP = 1;
+    static final int ZLIB = 2;
+    static final int LZ4 = 4;
+    static final int EXTERNAL = 128;
+
+    private static final int SECTOR_BYTES = 4096;
+
+    private RegionFixtures() {
+    }
+
+    /**
+     * Chunk slot of a chunk inside its region file
+     */
+    static int index(int chunkX, int chunkZ) {
+        return (chunkZ & 31) * 32 + (chunkX & 31);
+    }
+
+    static final class Region {
+        private final Path file;
+        // Chunk index -> bytes stored in its sectors, or null for a location pointing past the file
+        private final Map<Integer, byte[]> chunks = new LinkedHashMap<>();
+
+        Region(Path file) throws IOException {
+            this.file = file;
+            Files.createDirectories(file.getParent());
+        }
+
+        Region chunk(int index, int compression, byte[] nbt) throws IOException {
+            byte[] payload = compress(compression, nbt);
+            chunks.put(index, ByteBuffer.allocate(5 + payload.length)
+                    .putInt(payload.length + 1).put((byte) compression).put(payload).array());
+            return this;
+        }
+
+        /**
+         * An oversized chunk: only the compression byte in the region, the
+         * payload in {@code c.<x>.<z>.mcc} next to it
+         */
+        Region external(int chunkX, int chunkZ, int compression, byte[] nbt) throws IOException {
+            Files.write(file.resolveSibling("c." + chunkX + "." + chunkZ + ".mcc"), compress(compression, nbt));
+            chunks.put(index(chunkX, chunkZ), ByteBuffer.allocate(5)
+                    .putInt(1).put((byte) (compression | EXTERNAL)).array());
+            return this;
+        }
+
+        Region dangling(int index) {
+            chunks.put(index, null);
+            return this;
+        }
+
+        void write() throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(2 * SECTOR_BYTES);
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            int sector = 2;
+            for (Map.Entry<Integer, byte[]> chunk : chunks.entrySet()) {
+                byte[] bytes = chunk.getValue();
+                if (bytes == null) {
+                    header.putInt(chunk.getKey() * 4, (1000 << 8) | 1);
+                    continue;
+                }
+                int sectors = (bytes.length + SECTOR_BYTES - 1) / SECTOR_BYTES;
+                header.putInt(chunk.getKey() * 4, (sector << 8) | sectors);
+                body.write(bytes);
+                body.write(new byte[sectors * SECTOR_BYTES - bytes.length]);
+                sector += sectors;
+            }
+            try (OutputStream out = Files.newOutputStream(file)) {
+                out.write(header.array());
+                out.write(body.toByteArray());
+            }
+        }
+    }
+
+    static Region region(Path file) throws IOException {
+        return new Region(file);
+    }
+
+    private static byte[] compress(int compression, byte[] nbt) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = switch (compression) {
+            case GZIP -> new GZIPOutputStream(bytes);
+            case ZLIB -> new DeflaterOutputStream(bytes);
+            default -> bytes; // Stored as is; LZ4 payloads are never read
+        };
+        out.write(nbt);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Minimal NBT writer: named tags in, bytes out
+     */
+    static final class Nbt {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        static Nbt root() throws IOException {
+            return new Nbt().compound("");
+        }
+
+        Nbt compound(String name) throws IOException {
+            return tag(10, name);
+        }
+
+        // Compound element of a list: no type, no name
+        Nbt element() {
+            return this;
+        }
+
+        Nbt end() throws IOException {
+            out.writeByte(0);
+            return this;
+        }
+
+        Nbt list(String name, int elementType, int length) throws IOException {
+            tag(9, name);
+            out.writeByte(elementType);
+            out.writeInt(length);
+            return this;
+        }
+
+        Nbt compoundList(String name, int length) throws IOException {
+            return list(name, 10, length);
+        }
+
+        Nbt intTag(String name, int value) throws IOException {
+            tag(3, name);
+            out.writeInt(value);
+            return this;
+        }
+
+        Nbt byteTag(String name, int value) throws IOException {
+            tag(1, name);
+            out.writeByte(value);
+            return this;
+        }
+
+        Nbt string(String name, String value) throws IOException {
+            tag(8, name);
+            out.writeUTF(value);
+            return this;
+        }
+
+        Nbt intArray(String name, int... values) throws IOException {
+            tag(11, name);
+            out.writeInt(values.length);
+            for (int value : values) {
+                out.writeInt(value);
+            }
+            return this;
+        }
+
+        Nbt pos(double x, double y, double z) throws IOException {
+            list("Pos", 6, 3);
+            out.writeDouble(x);
+            out.writeDouble(y);
+            out.writeDouble(z);
+            return this;
+        }
+
+        /**
+         * Item fields of a mace tagged with {@code maceId}, as Bukkit stores it in custom data
+         */
+        Nbt maceItem(UUID maceId) throws IOException {
+            string("id", "minecraft:mace").intTag("count", 1).compound("components")
+                    .compound("minecraft:custom_data").compound("PublicBukkitValues");
+            tag(7, KEY);
+            out.writeInt(16);
+            out.write(ByteBuffer.allocate(16).putLong(maceId.getMostSignificantBits())
+                    .putLong(maceId.getLeastSignificantBits()).array());
+            return end().end().end();
+        }
+
+        // A mace from before the binary format, tagged with a string ID
+        Nbt legacyMaceItem(UUID maceId) throws IOException {
+            return string("id", "minecraft:mace").intTag("count", 1).compound("components")
+                    .compound("minecraft:custom_data").compound("PublicBukkitValues")
+                    .string(KEY, maceId.toString()).end().end().end();
+        }
+
+        byte[] bytes() throws IOException {
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        private Nbt tag(int type, String name) throws IOException {
+            out.writeByte(type);
+            out.writeUTF(name);
+            return this;
+        }
+    }
+
+    /**
+     * Region chunk with one chest at the given block holding the given maces
+     */
+    static byte[] chestChunk(int x, int y, int z, UUID... maces) throws IOException {
+        Nbt nbt = Nbt.root().intTag("DataVersion", 4325).intTag("xPos", x >> 4).intTag("zPos", z >> 4)
+                .compoundList("block_entities", 1).element()
+                .string("id", "minecraft:chest").intTag("x", x).intTag("y", y).intTag("z", z)
+                .compoundList("Items", maces.length);
+        for (int slot = 0; slot < maces.length; slot++) {
+            nbt.element().byteTag("Slot", slot).maceItem(maces[slot]).end();
+        }
+        return nbt.end().end().bytes();
+    }
+}
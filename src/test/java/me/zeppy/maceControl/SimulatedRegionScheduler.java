@@ -0,0 +1,151 @@
+package me.zeppy.maceControl;
+
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stand-in for Folia's schedulers on a plain JVM. Each simulated region is one
+ * thread; entities are assigned to a region by UUID and chunks by region
+ * section, so work for different regions really runs in parallel, like it
+ * does on Folia. A tick is shortened to {@link #TICK_MILLIS}.
+ * <p>
+ * Shared with the benchmarks through the test jar.
+ */
+final class SimulatedRegionScheduler implements MaceScheduler {
+    static final long TICK_MILLIS = 1;
+
+    private final ScheduledExecutorService global;
+    private final ScheduledExecutorService[] regions;
+    private final ThreadLocal<Integer> currentRegion = new ThreadLocal<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    SimulatedRegionScheduler(int regionCount) {
+        this.global = Executors.newSingleThreadScheduledExecutor(runnable -> thread(runnable, "Sim-Global", -1));
+        this.regions = new ScheduledExecutorService[regionCount];
+        for (int i = 0; i < regionCount; i++) {
+            int region = i;
+            regions[i] = Executors.newSingleThreadScheduledExecutor(runnable -> thread(runnable, "Sim-Region-" + region, region));
+        }
+    }
+
+    private Thread thread(Runnable runnable, String name, int region) {
+        Thread thread = new Thread(() -> {
+            currentRegion.set(region);
+            runnable.run();
+        }, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Wait until every task scheduled so far, and everything those tasks
+     * scheduled without a delay, has run
+     */
+    void awaitIdle() {
+        while (inFlight.get() > 0) {
+            Thread.onSpinWait();
+        }
+    }
+
+    void shutdown() {
+        global.shutdownNow();
+        for (ScheduledExecutorService region : regions) {
+            region.shutdownNow();
+        }
+    }
+
+    /**
+     * True when the calling thread is the region that owns {@code entity}
+     */
+    boolean ownsEntity(Entity entity) {
+        Integer current = currentRegion.get();
+        return current != null && current == entityRegion(entity);
+    }
+
+    /**
+     * True when the calling thread is the region that owns the chunk
+     */
+    boolean ownsChunk(int chunkX, int chunkZ) {
+        Integer current = currentRegion.get();
+        return current != null && current == chunkRegion(chunkX, chunkZ);
+    }
+
+    private int entityRegion(Entity entity) {
+        return regionOf(entity.getUniqueId().getMostSignificantBits());
+    }
+
+    private int chunkRegion(int chunkX, int chunkZ) {
+        return regionOf(DroppedMaceIndex.chunkKey(chunkX >> 4, chunkZ >> 4));
+    }
+
+    private int regionOf(long key) {
+        return (int) Math.floorMod(key ^ (key >>> 32), (long) regions.length);
+    }
+
+    private void submit(ScheduledExecutorService executor, int region, Runnable task, long delayTicks) {
+        Integer current = currentRegion.get();
+        if (delayTicks <= 0 && current != null && current == region) {
+            task.run();
+            return;
+        }
+        inFlight.incrementAndGet();
+        executor.schedule(() -> {
+            try {
+                task.run();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }, delayTicks * TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean isRegionized() {
+        return true;
+    }
+
+    @Override
+    public void runGlobal(Runnable task) {
+        submit(global, -1, task, 0);
+    }
+
+    @Override
+    public void runGlobalTimer(Runnable task, long delayTicks, long periodTicks) {
+        global.scheduleAtFixedRate(task, delayTicks * TICK_MILLIS, periodTicks * TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void runAsyncTimer(Runnable task, long delayTicks, long periodTicks) {
+        runGlobalTimer(task, delayTicks, periodTicks);
+    }
+
+    @Override
+    public void runForEntity(Entity entity, Runnable task, Runnable retired, long delayTicks) {
+        int region = entityRegion(entity);
+        submit(regions[region], region, () -> {
+            // Same rule as Folia's entity scheduler: dead players are still there to act on
+            boolean present = entity instanceof Player player ? player.isOnline() : entity.isValid();
+            if (present) {
+                task.run();
+            } else if (retired != null) {
+                retired.run();
+            }
+        }, delayTicks);
+    }
+
+    @Override
+    public void runAtChunk(World world, int chunkX, int chunkZ, Runnable task, long delayTicks) {
+        int region = chunkRegion(chunkX, chunkZ);
+        submit(regions[region], region, task, delayTicks);
+    }
+
+    @Override
+    public void cancelAll() {
+        shutdown();
+    }
+}